@@ -0,0 +1,110 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumented, JsonArrayResponse pull parses with android.util.JsonReader which local unit tests only have as a stub.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JsonArrayResponseTest {
+    private final List<Object> mElements = new ArrayList<>();
+    private HttpResponse mCompleted;
+
+    private final HttpManager.JsonArrayNetworkResponse mRecordingResponse = new HttpManager.JsonArrayNetworkResponse() {
+        @Override
+        public void onElement(Object element) {
+            mElements.add(element);
+        }
+
+        @Override
+        public void onComplete(HttpResponse response) {
+            mCompleted = response;
+        }
+
+        @Override
+        public void onError(HttpError error) {
+            fail("Unexpected error: " + error);
+        }
+    };
+
+    @Test
+    public void topLevelArrayElementsInOrder() throws Exception {
+        read(null, "[{\"id\":1,\"tags\":[\"a\",\"b\"]}, [1, 2], \"text\", 42, 1.5, 12345678901234567890, true, null]", "application/json");
+
+        assertEquals(8, mElements.size());
+        JSONObject first = (JSONObject) mElements.get(0);
+        assertEquals(1, first.getInt("id"));
+        assertEquals("b", first.optJSONArray("tags").getString(1));
+        assertEquals(2, ((JSONArray) mElements.get(1)).length());
+        assertEquals("text", mElements.get(2));
+        assertEquals(42L, mElements.get(3));
+        assertEquals(1.5, mElements.get(4));
+        assertTrue(mElements.get(5) instanceof Double); //Too large for a long.
+        assertEquals(Boolean.TRUE, mElements.get(6));
+        assertSame(JSONObject.NULL, mElements.get(7));
+        assertEquals(200, mCompleted.mCode);
+    }
+
+    @Test
+    public void arrayFieldSkipsOtherFields() throws Exception {
+        read("items", "{\"meta\":{\"items\":[\"not these\"]},\"count\":2,\"items\":[{\"id\":1},{\"id\":2}],\"after\":\"ignored\"}", "application/json");
+
+        assertEquals(2, mElements.size());
+        assertEquals(1, ((JSONObject) mElements.get(0)).getInt("id"));
+        assertEquals(2, ((JSONObject) mElements.get(1)).getInt("id"));
+        assertEquals(200, mCompleted.mCode);
+    }
+
+    @Test
+    public void missingArrayFieldFails() throws Exception {
+        try {
+            read("items", "{\"count\":0}", "application/json");
+            fail("Expected a missing field failure");
+        } catch (IllegalStateException expected) {
+            //Not a network failure, reported as CODE_PROCESSING_FAILED by HttpRequest.
+        }
+        assertNull(mCompleted);
+    }
+
+    @Test
+    public void malformedBodyFailsAfterElementsReadSoFar() throws Exception {
+        try {
+            read(null, "[{\"id\":1}, :]", "application/json");
+            fail("Expected a malformed body failure");
+        } catch (IllegalStateException expected) {
+            //Not a network failure, reported as CODE_PROCESSING_FAILED by HttpRequest.
+        }
+        assertEquals(1, mElements.size());
+        assertNull(mCompleted);
+    }
+
+    @Test
+    public void charsetComesFromContentType() throws Exception {
+        read(null, "[\"caf\u00e9\"]", "application/json; charset=ISO-8859-1");
+
+        assertEquals("caf\u00e9", mElements.get(0));
+    }
+
+    private void read(String arrayField, String body, String contentType) throws IOException {
+        String charset = HttpRequest.getCharset(contentType);
+        byte[] bytes = body.getBytes(charset == null ? "UTF-8" : charset);
+        ResponseBody responseBody = new ResponseBody(new ByteArrayInputStream(bytes), bytes.length, contentType);
+        new JsonArrayResponse(arrayField, mRecordingResponse).onResponse(new HttpResponse(200, (String) null, null), responseBody);
+    }
+}
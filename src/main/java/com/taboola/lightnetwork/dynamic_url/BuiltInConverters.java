@@ -0,0 +1,58 @@
+package com.taboola.lightnetwork.dynamic_url;
+
+import com.taboola.lightnetwork.protocols.http.HttpResponse;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.lang.reflect.Type;
+
+/**
+ * Converters for the types every {@link NetworkExecutable} handles: HttpResponse, String, byte[], JSONObject and JSONArray.
+ * Asked after the registered factories, so those can override any of them.
+ */
+class BuiltInConverters implements Converter.Factory {
+
+    @Override
+    public Converter<?> create(Type type) {
+        if (type == HttpResponse.class) {
+            return new Converter<HttpResponse>() {
+                @Override
+                public HttpResponse convert(HttpResponse response) {
+                    return response;
+                }
+            };
+        } else if (type == String.class) {
+            return new Converter<String>() {
+                @Override
+                public String convert(HttpResponse response) {
+                    return response.getMessage();
+                }
+            };
+        } else if (type == byte[].class) {
+            return new Converter<byte[]>() {
+                @Override
+                public byte[] convert(HttpResponse response) {
+                    return response.getBody();
+                }
+            };
+        } else if (type == JSONObject.class) {
+            return new Converter<JSONObject>() {
+                @Override
+                public JSONObject convert(HttpResponse response) throws Exception {
+                    String message = response.getMessage();
+                    return message == null ? null : new JSONObject(message);
+                }
+            };
+        } else if (type == JSONArray.class) {
+            return new Converter<JSONArray>() {
+                @Override
+                public JSONArray convert(HttpResponse response) throws Exception {
+                    String message = response.getMessage();
+                    return message == null ? null : new JSONArray(message);
+                }
+            };
+        }
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.taboola.lightnetwork.dynamic_url;
+
+import com.taboola.lightnetwork.protocols.http.HttpResponse;
+
+import java.lang.reflect.Type;
+
+/**
+ * Turns a response into a typed result. Runs on the network worker thread, so parsing never costs main thread time.
+ * Exceptions thrown fail the request with {@link com.taboola.lightnetwork.protocols.http.HttpError#CODE_PROCESSING_FAILED}.
+ *
+ * Usage example:
+ *      networkExecutable.addConverterFactory(new Converter.Factory() {
+ *          public Converter<?> create(Type type) {
+ *              return type == Feed.class ? new FeedConverter() : null;
+ *          }
+ *      });
+ *
+ *      public interface FeedApi {
+ *          @GET("feed")
+ *          TypedRequest<Feed> getFeed();
+ *      }
+ */
+public interface Converter<T> {
+    T convert(HttpResponse response) throws Exception;
+
+    /**
+     * Registered with {@link NetworkExecutable#addConverterFactory(Factory)}, asked for a converter for every {@link TypedRequest} result type.
+     */
+    interface Factory {
+        /**
+         * @param type - Result type declared by the interface method, e.g. Feed for TypedRequest&lt;Feed&gt;.
+         * @return - A converter producing type, null if this factory does not handle it.
+         */
+        Converter<?> create(Type type);
+    }
+}
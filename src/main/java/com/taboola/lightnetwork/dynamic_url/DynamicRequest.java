@@ -1,27 +1,21 @@
 package com.taboola.lightnetwork.dynamic_url;
 
-import android.text.TextUtils;
 import android.util.Log;
 
-import com.taboola.lightnetwork.dynamic_url.annotations.Body;
-import com.taboola.lightnetwork.dynamic_url.annotations.TrackHeader;
-import com.taboola.lightnetwork.dynamic_url.annotations.GET;
-import com.taboola.lightnetwork.dynamic_url.annotations.POST;
-import com.taboola.lightnetwork.dynamic_url.annotations.Path;
-import com.taboola.lightnetwork.dynamic_url.annotations.Query;
-import com.taboola.lightnetwork.dynamic_url.annotations.QueryMap;
+import com.taboola.lightnetwork.dynamic_url.annotations.Batch;
 import com.taboola.lightnetwork.dynamic_url.annotations.REQUEST_TYPE;
+import com.taboola.lightnetwork.protocols.http.Call;
+import com.taboola.lightnetwork.protocols.http.HttpError;
+import com.taboola.lightnetwork.protocols.http.HttpException;
 import com.taboola.lightnetwork.protocols.http.HttpManager;
+import com.taboola.lightnetwork.protocols.http.HttpResponse;
+import com.taboola.lightnetwork.protocols.http.NetworkFuture;
+import com.taboola.lightnetwork.protocols.http.RequestBody;
+import com.taboola.lightnetwork.protocols.http.RequestOptions;
 import com.taboola.lightnetwork.url_components.MutableUrl;
-import com.taboola.lightnetwork.url_components.PathParam;
-import com.taboola.lightnetwork.url_components.UrlParameter;
 
 import org.json.JSONObject;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Method;
-import java.util.Map;
-
 /**
  * Don't use this class directly, use {@link NetworkExecutable#create(Class)}.
  */
@@ -31,16 +25,26 @@ public class DynamicRequest {
     private String mUrlString;
     private int mRequestType;
     private JSONObject mJsonBody;
+    private RequestBody mRequestBody; //Set instead of mJsonBody when @Body is a RequestBody.
     private String mTrackHeaderByGroup; //If not empty, headers will be re-sent to server in annotated requests (grouped by TrackHeader value).
     private String mTrackHeadersKey; //The headers key to process group tracking
-    private String mBaseUrl;
+    private RequestOptions mRequestOptions; //Priority, deadline, retry, hedging and cache policies, body encoding. Shared, never modified.
+    private Batch mBatch; //If set, fire-and-forget POSTs are batched.
 
-    DynamicRequest(HttpManager httpManager, Method method, String baseUrl, Object[] args) {
+    /**
+     * @param serviceMethod - The parsed interface method, see {@link ServiceMethod}.
+     * @param args - Arguments of this call, bound to the method's annotated parameters.
+     */
+    DynamicRequest(HttpManager httpManager, ServiceMethod serviceMethod, Object[] args) {
         mHttpManager = httpManager;
-        mBaseUrl = baseUrl;
-
-        // Process DynamicUrl method
-        buildRequest(method, args);
+        mRequestType = serviceMethod.mRequestType;
+        mTrackHeaderByGroup = serviceMethod.mTrackHeaderByGroup;
+        mTrackHeadersKey = serviceMethod.mTrackHeadersKey;
+        mRequestOptions = serviceMethod.mRequestOptions;
+        mBatch = serviceMethod.mBatch;
+
+        // Process DynamicUrl method arguments
+        bindArguments(serviceMethod, args);
     }
 
     /**********
@@ -50,27 +54,78 @@ public class DynamicRequest {
     /**
      * Execute the network call associated with this DynamicRequest.
      * This will not return any callback.
+     * @return - A handle allowing to cancel the request, null if the request could not be made or was batched (see {@link Batch}).
      */
-    public void execute() {
-        execute(null);
+    public Call execute() {
+        return execute(null);
     }
 
     /**
      * Execute the network call associated with this DynamicRequest.
      * This will return an asynchronous response callback on the thread the request was called from.
+     * @return - A handle allowing to cancel the request, null if the request could not be made or was batched (see {@link Batch}).
      */
-    public void execute(HttpManager.NetworkResponse networkResponse) {
+    public Call execute(HttpManager.NetworkResponse networkResponse) {
         switch (mRequestType) {
             case REQUEST_TYPE.GET:
-                mHttpManager.get(mUrlString, mTrackHeadersKey, mTrackHeaderByGroup, networkResponse);
-                break;
+                return mHttpManager.get(mUrlString, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions, networkResponse);
 
             case REQUEST_TYPE.POST:
-                mHttpManager.post(mUrlString, mJsonBody, mTrackHeadersKey, mTrackHeaderByGroup, networkResponse);
-                break;
+                if (mRequestBody != null) {
+                    return mHttpManager.post(mUrlString, mRequestBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions, networkResponse);
+                }
+                if (mBatch != null && networkResponse == null) {
+                    mHttpManager.postBatched(mUrlString, mJsonBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mBatch.maxSize(), mBatch.maxAgeMillis(), mRequestOptions.isGzipBody());
+                    return null;
+                }
+                return mHttpManager.post(mUrlString, mJsonBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions, networkResponse);
 
             default:
                 Log.e(TAG, "Error processing method, methodType unrecognized");
+                return null;
+        }
+    }
+
+    /**
+     * Execute the network call associated with this DynamicRequest, returning a composable future.
+     * See {@link NetworkFuture} for running requests in parallel and combining their results.
+     * @return - A future completed on the network worker thread. Canceling it cancels the request.
+     */
+    public NetworkFuture<HttpResponse> executeAsync() {
+        switch (mRequestType) {
+            case REQUEST_TYPE.GET:
+                return mHttpManager.getAsync(mUrlString, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions);
+
+            case REQUEST_TYPE.POST:
+                if (mRequestBody != null) {
+                    return mHttpManager.postAsync(mUrlString, mRequestBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions);
+                }
+                return mHttpManager.postAsync(mUrlString, mJsonBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions);
+
+            default:
+                return NetworkFuture.failed(new HttpError("Error processing method, methodType unrecognized"));
+        }
+    }
+
+    /**
+     * Execute the network call associated with this DynamicRequest, blocking the calling thread until it completes.
+     * Must not be called from the main thread.
+     * @return - The server response, returned directly on the calling thread.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse executeSync() throws HttpException {
+        switch (mRequestType) {
+            case REQUEST_TYPE.GET:
+                return mHttpManager.getSync(mUrlString, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions);
+
+            case REQUEST_TYPE.POST:
+                if (mRequestBody != null) {
+                    return mHttpManager.postSync(mUrlString, mRequestBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions);
+                }
+                return mHttpManager.postSync(mUrlString, mJsonBody, null, mTrackHeadersKey, mTrackHeaderByGroup, mRequestOptions);
+
+            default:
+                throw new HttpException(new HttpError("Error processing method, methodType unrecognized"));
         }
     }
 
@@ -89,134 +144,43 @@ public class DynamicRequest {
         return mJsonBody;
     }
 
+    /**
+     * @return - The request body if @Body was given a {@link RequestBody}, null otherwise.
+     */
+    public RequestBody getRequestBody() {
+        return mRequestBody;
+    }
+
     /***********
      * Private *
      ***********/
 
-    private void buildRequest(Method method, Object[] args) {
-        mRequestType = getRequestType(method);
-        String baseUrl = getBaseUrl(method);
-        parseAnnotations(baseUrl, method, args);
-        determineHeaderTracking(method);
-    }
-
-    private void determineHeaderTracking(Method method) {
-        TrackHeader trackHeaderAnnotation = method.getAnnotation(TrackHeader.class);
-        if (trackHeaderAnnotation != null) {
-            mTrackHeaderByGroup = trackHeaderAnnotation.group();
-            mTrackHeadersKey = trackHeaderAnnotation.headerReadKey();
-        }
-    }
-
-
-    private void parseAnnotations(String baseUrl, Method method, Object[] args) {
+    private void bindArguments(ServiceMethod serviceMethod, Object[] args) {
         //Define a mutable Url
-        MutableUrl mutableUrl = new MutableUrl(baseUrl);
-
-        //Parse annotations by type
-        //First [] is the different parameters. Second [] is the Annotations group for each parameter.
-        Annotation[][] perParametersAnnotations = method.getParameterAnnotations();
-
-        if (perParametersAnnotations != null) {
-            for (int parameter = 0; parameter < perParametersAnnotations.length; parameter++) { //for every parameter
-                for (int annotation = 0; annotation < perParametersAnnotations[parameter].length; annotation++) {
-
-                    //tmpAnnotation iterates over all annotations that belong to a specific parameter
-                    Annotation tmpAnnotation = perParametersAnnotations[parameter][annotation];
-
-                    //Handle every parameter that has an annotation, according to its type
-                    if (tmpAnnotation instanceof Path) {
-                        handlePathAnnotation(args[parameter], mutableUrl, tmpAnnotation);
-                    } else if (tmpAnnotation instanceof Query) {
-                        handleQueryAnnotation(args[parameter], mutableUrl, tmpAnnotation);
-                    } else if (tmpAnnotation instanceof QueryMap) {
-                        handleQueryMapAnnotation(args[parameter], mutableUrl);
-                    } else if (tmpAnnotation instanceof Body) {
-                        handleBodyAnnotation(args[parameter]);
-                    } else {
-                        Log.e(TAG, "Annotation not recognized: " + tmpAnnotation.annotationType());
-                    }
+        MutableUrl mutableUrl = new MutableUrl(serviceMethod.mUrlTemplate);
 
-                }
-            }
+        for (ServiceMethod.ParameterHandler parameterHandler : serviceMethod.mParameterHandlers) {
+            parameterHandler.apply(this, mutableUrl, args[parameterHandler.mParameterIndex]);
         }
 
         //Extract final url
         mUrlString = mutableUrl.getUrl();
-        Log.d(TAG, "parseAnnotation | finalUrl = " + mUrlString);
-    }
-
-    private void handlePathAnnotation(Object arg, MutableUrl mutableUrl, Annotation tmpAnnotation) {
-        String pathKey = ((Path)tmpAnnotation).value();
-        Object pathVal = arg;
-
-        mutableUrl.addPathParam(new PathParam(pathKey, String.valueOf(pathVal)));
-    }
-
-    private void handleQueryAnnotation(Object arg, MutableUrl mutableUrl, Annotation tmpAnnotation) {
-        String queryKey = ((Query)tmpAnnotation).value();
-        Object queryVal = arg;
-
-        mutableUrl.addQueryParameter(new UrlParameter(queryKey, queryVal));
-    }
-
-    private void handleQueryMapAnnotation(Object arg, MutableUrl mutableUrl) {
-        if (! (arg instanceof Map)) {
-            throw new RuntimeException("DynamicRequest | parseAnnotation | @QueryMap parameter type must be Map.");
-        }
-
-        //noinspection unchecked
-        Map<Object, Object> parameterMap = (Map<Object, Object>) arg;
-
-        for (Map.Entry<Object, Object> mapParameter : parameterMap.entrySet()){
-            String queryMapParamKey = String.valueOf(mapParameter.getKey());
-            String queryMapParamValue = String.valueOf(mapParameter.getValue());
-
-            mutableUrl.addQueryParameter(new UrlParameter(queryMapParamKey, queryMapParamValue));
-        }
-    }
-
-    private void handleBodyAnnotation(Object arg) {
-        if (! (arg instanceof JSONObject)) {
-            throw new RuntimeException("DynamicRequest | parseAnnotation | @Body parameter type must be of type org.json.JSONObject.");
-        }
-
-        mJsonBody = (JSONObject) arg;
+        Log.d(TAG, "bindArguments | finalUrl = " + mUrlString);
     }
 
     /**
-     *
-     * @param method - The interface method of which annotation is examined.
-     * @return - Returned value corresponds to available set in {@link REQUEST_TYPE}
+     * Called for the @Body parameter.
      */
-    private int getRequestType(Method method) {
-        if (method.getAnnotation(GET.class) != null) {
-            return REQUEST_TYPE.GET;
-        } else if (method.getAnnotation(POST.class) != null) {
-            return REQUEST_TYPE.POST;
+    void setBody(Object arg) {
+        if (arg instanceof RequestBody) {
+            mRequestBody = (RequestBody) arg;
+            return;
         }
 
-        throw new RuntimeException("DynamicRequest | getRequestType | Request interface must declare a known Http method (See REQUEST_TYPE) in method annotation.");
-    }
-
-    private String getBaseUrl(Method method) {
-        //Start with global base url or empty String if required.
-        StringBuilder urlBuilder = new StringBuilder(TextUtils.isEmpty(mBaseUrl)? "" : mBaseUrl);
-
-        switch (mRequestType){
-            case REQUEST_TYPE.GET:
-                urlBuilder.append(method.getAnnotation(GET.class).value());
-                break;
-            case REQUEST_TYPE.POST:
-                urlBuilder.append(method.getAnnotation(POST.class).value());
-                break;
-            default:
-                throw new RuntimeException("DynamicRequest | getBaseUrl | Request interface must declare a known Http method (See REQUEST_TYPE) in method annotation.");
+        if (! (arg instanceof JSONObject)) {
+            throw new RuntimeException("DynamicRequest | parseAnnotation | @Body parameter type must be of type org.json.JSONObject or RequestBody.");
         }
 
-        return urlBuilder.toString();
+        mJsonBody = (JSONObject) arg;
     }
-
-
-
 }
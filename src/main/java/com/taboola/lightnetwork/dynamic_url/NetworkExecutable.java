@@ -1,10 +1,17 @@
 package com.taboola.lightnetwork.dynamic_url;
 
+import android.util.Log;
+
 import com.taboola.lightnetwork.protocols.http.HttpManager;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Cheap imitation of Retrofit.
@@ -22,17 +29,24 @@ import java.lang.reflect.Proxy;
  *
  *            // Access network API using a NetworkResponse callback
  *            sampleNetworkApi.sampleNetworkRequest2.execute(new NetworkResponse(){..});
+ *
+ *            // Get a typed result, converted on the network worker thread (see Converter)
+ *            sampleNetworkApi.sampleNetworkRequest3.execute(new TypedRequest.TypedNetworkResponse<JSONObject>(){..});
  *    }
  *
  *    public interface SampleNetworkApi {
  *        DynamicRequest sampleNetworkRequest1();
  *        DynamicRequest sampleNetworkRequest2();
+ *        TypedRequest<JSONObject> sampleNetworkRequest3();
  *    }
  */
 public class NetworkExecutable {
     private static final String TAG = NetworkExecutable.class.getSimpleName();
     private HttpManager mHttpManager;
     private String mBaseUrl;
+    private final List<Converter.Factory> mConverterFactories = new CopyOnWriteArrayList<>();
+    private final Converter.Factory mBuiltInConverters = new BuiltInConverters();
+    private final ConcurrentHashMap<Method, ServiceMethod> mServiceMethods = new ConcurrentHashMap<>(); //Each interface method parsed once.
 
     public NetworkExecutable(final HttpManager httpManager) {
         this(httpManager, null);
@@ -43,6 +57,32 @@ public class NetworkExecutable {
         mBaseUrl = baseUrl;
     }
 
+    /**
+     * Open a connection to the base url host in the background, so the first request made through this instance
+     * does not pay for connection setup. See {@link HttpManager#prewarm(String)}.
+     */
+    public void prewarm() {
+        if (mBaseUrl == null) {
+            Log.e(TAG, "prewarm | No base url, nothing to prewarm.");
+            return;
+        }
+
+        mHttpManager.prewarm(mBaseUrl);
+    }
+
+    /**
+     * Register a converter factory for {@link TypedRequest} results. Factories are asked in registration order,
+     * before the built in ones (HttpResponse, String, byte[], JSONObject and JSONArray).
+     */
+    public void addConverterFactory(Converter.Factory converterFactory) {
+        if (converterFactory == null) {
+            throw new IllegalArgumentException("NetworkExecutable | addConverterFactory | converterFactory cannot be null.");
+        }
+
+        mConverterFactories.add(converterFactory);
+        mServiceMethods.clear(); //Methods parsed so far may resolve to a different converter now.
+    }
+
     /**
      * A Factory method that "Proxy"s objects from given Interface classes.
      *
@@ -51,6 +91,23 @@ public class NetworkExecutable {
      * - The invoke method returns the network request object itself, which allows executing the network call.
      */
     public <T> T create(final Class<T> interfaceClass) {
+        return create(interfaceClass, false);
+    }
+
+    /**
+     * Same as {@link #create(Class)}, optionally parsing all interface methods right away instead of on their first call.
+     * @param eager - True to pay for annotation parsing now, e.g. off the main thread at startup. An invalid method
+     *                declaration (no Http method, no converter for a TypedRequest result) then throws here.
+     */
+    public <T> T create(final Class<T> interfaceClass, boolean eager) {
+        if (eager) {
+            for (Method method : interfaceClass.getMethods()) {
+                if (method.getDeclaringClass() != Object.class) {
+                    getServiceMethod(method);
+                }
+            }
+        }
+
         //noinspection unchecked
         return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(), new Class<?>[]{interfaceClass}, new InvocationHandler() {
             @Override
@@ -61,10 +118,56 @@ public class NetworkExecutable {
                 }
 
                 //Return executable networking interface object.
-                return new DynamicRequest(mHttpManager, method, mBaseUrl, args);
+                ServiceMethod serviceMethod = getServiceMethod(method);
+                DynamicRequest dynamicRequest = new DynamicRequest(mHttpManager, serviceMethod, args);
+                if (serviceMethod.mConverter != null) {
+                    return new TypedRequest<>(mHttpManager, dynamicRequest, serviceMethod.mConverter);
+                }
+                return dynamicRequest;
             }
         });
 
     }
 
+    /***********
+     * Private *
+     ***********/
+
+    /**
+     * @return - The parsed method, parsed now on its first call. Two threads racing on a first call may both parse it, one result is kept.
+     */
+    private ServiceMethod getServiceMethod(Method method) {
+        ServiceMethod serviceMethod = mServiceMethods.get(method);
+        if (serviceMethod != null) {
+            return serviceMethod;
+        }
+
+        Converter<Object> converter = method.getReturnType() == TypedRequest.class ? getConverter(method) : null;
+        serviceMethod = ServiceMethod.parse(method, mBaseUrl, converter);
+        ServiceMethod existing = mServiceMethods.putIfAbsent(method, serviceMethod);
+        return existing != null ? existing : serviceMethod;
+    }
+
+    private Converter<Object> getConverter(Method method) {
+        Type returnType = method.getGenericReturnType();
+        if (!(returnType instanceof ParameterizedType)) {
+            throw new IllegalArgumentException("NetworkExecutable | getConverter | TypedRequest must declare its result type, e.g. TypedRequest<JSONObject>. Method: " + method.getName());
+        }
+
+        Type resultType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+        for (Converter.Factory converterFactory : mConverterFactories) {
+            Converter<?> converter = converterFactory.create(resultType);
+            if (converter != null) {
+                //noinspection unchecked
+                return (Converter<Object>) converter;
+            }
+        }
+
+        Converter<?> converter = mBuiltInConverters.create(resultType);
+        if (converter == null) {
+            throw new IllegalArgumentException("NetworkExecutable | getConverter | No converter for " + resultType + ", register one with addConverterFactory(). Method: " + method.getName());
+        }
+        //noinspection unchecked
+        return (Converter<Object>) converter;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+package com.taboola.lightnetwork.dynamic_url;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.taboola.lightnetwork.dynamic_url.annotations.Batch;
+import com.taboola.lightnetwork.dynamic_url.annotations.Body;
+import com.taboola.lightnetwork.dynamic_url.annotations.Cache;
+import com.taboola.lightnetwork.dynamic_url.annotations.Deadline;
+import com.taboola.lightnetwork.dynamic_url.annotations.GET;
+import com.taboola.lightnetwork.dynamic_url.annotations.Gzip;
+import com.taboola.lightnetwork.dynamic_url.annotations.Hedge;
+import com.taboola.lightnetwork.dynamic_url.annotations.POST;
+import com.taboola.lightnetwork.dynamic_url.annotations.Path;
+import com.taboola.lightnetwork.dynamic_url.annotations.Priority;
+import com.taboola.lightnetwork.dynamic_url.annotations.Query;
+import com.taboola.lightnetwork.dynamic_url.annotations.QueryMap;
+import com.taboola.lightnetwork.dynamic_url.annotations.REQUEST_TYPE;
+import com.taboola.lightnetwork.dynamic_url.annotations.Retry;
+import com.taboola.lightnetwork.dynamic_url.annotations.TrackHeader;
+import com.taboola.lightnetwork.protocols.http.CachePolicy;
+import com.taboola.lightnetwork.protocols.http.HedgingPolicy;
+import com.taboola.lightnetwork.protocols.http.RequestOptions;
+import com.taboola.lightnetwork.protocols.http.RetryPolicy;
+import com.taboola.lightnetwork.url_components.MutableUrl;
+import com.taboola.lightnetwork.url_components.PathParam;
+import com.taboola.lightnetwork.url_components.UrlParameter;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything known about an interface method before it is called: Http method, url template, what to do with each
+ * annotated parameter, header tracking and request options. Parsed once per Method by {@link NetworkExecutable},
+ * each call then only binds its arguments, see {@link DynamicRequest}.
+ *
+ * Immutable once built, shared by all calls of the method on any thread.
+ */
+final class ServiceMethod {
+    private static final String TAG = ServiceMethod.class.getSimpleName();
+
+    final int mRequestType; //See REQUEST_TYPE.
+    final String mUrlTemplate; //Base url followed by the method's GET / POST value, path params not replaced yet.
+    final ParameterHandler[] mParameterHandlers; //In parameter order, only annotated parameters.
+    final String mTrackHeaderByGroup; //Null if the method has no @TrackHeader.
+    final String mTrackHeadersKey;
+    final RequestOptions mRequestOptions; //Never modified once built.
+    final Batch mBatch; //Null if not batched.
+    final Converter<Object> mConverter; //Null unless the method returns a TypedRequest.
+
+    private ServiceMethod(int requestType, String urlTemplate, ParameterHandler[] parameterHandlers, TrackHeader trackHeader,
+                          RequestOptions requestOptions, Batch batch, Converter<Object> converter) {
+        mRequestType = requestType;
+        mUrlTemplate = urlTemplate;
+        mParameterHandlers = parameterHandlers;
+        mTrackHeaderByGroup = trackHeader != null ? trackHeader.group() : null;
+        mTrackHeadersKey = trackHeader != null ? trackHeader.headerReadKey() : null;
+        mRequestOptions = requestOptions;
+        mBatch = batch;
+        mConverter = converter;
+    }
+
+    /**
+     * @param baseUrl - Prepended to the GET / POST value, can be null.
+     * @param converter - Converter of the TypedRequest result, null if the method returns a DynamicRequest.
+     * @throws RuntimeException - The method declares no known Http method.
+     */
+    static ServiceMethod parse(Method method, String baseUrl, Converter<Object> converter) {
+        int requestType = getRequestType(method);
+        return new ServiceMethod(requestType,
+                getUrlTemplate(method, requestType, baseUrl),
+                getParameterHandlers(method),
+                method.getAnnotation(TrackHeader.class),
+                getRequestOptions(method),
+                method.getAnnotation(Batch.class),
+                converter);
+    }
+
+    /**
+     * What a single annotated parameter contributes to the request.
+     */
+    abstract static class ParameterHandler {
+        final int mParameterIndex;
+
+        ParameterHandler(int parameterIndex) {
+            mParameterIndex = parameterIndex;
+        }
+
+        abstract void apply(DynamicRequest request, MutableUrl mutableUrl, Object arg);
+    }
+
+    /***********
+     * Private *
+     ***********/
+
+    /**
+     * @return - Returned value corresponds to available set in {@link REQUEST_TYPE}
+     */
+    private static int getRequestType(Method method) {
+        if (method.getAnnotation(GET.class) != null) {
+            return REQUEST_TYPE.GET;
+        } else if (method.getAnnotation(POST.class) != null) {
+            return REQUEST_TYPE.POST;
+        }
+
+        throw new RuntimeException("ServiceMethod | getRequestType | Request interface must declare a known Http method (See REQUEST_TYPE) in method annotation.");
+    }
+
+    private static String getUrlTemplate(Method method, int requestType, String baseUrl) {
+        //Start with global base url or empty String if required.
+        StringBuilder urlBuilder = new StringBuilder(TextUtils.isEmpty(baseUrl) ? "" : baseUrl);
+
+        switch (requestType) {
+            case REQUEST_TYPE.GET:
+                urlBuilder.append(method.getAnnotation(GET.class).value());
+                break;
+            case REQUEST_TYPE.POST:
+                urlBuilder.append(method.getAnnotation(POST.class).value());
+                break;
+            default:
+                throw new RuntimeException("ServiceMethod | getUrlTemplate | Request interface must declare a known Http method (See REQUEST_TYPE) in method annotation.");
+        }
+
+        return urlBuilder.toString();
+    }
+
+    private static ParameterHandler[] getParameterHandlers(Method method) {
+        List<ParameterHandler> parameterHandlers = new ArrayList<>();
+
+        //First [] is the different parameters. Second [] is the Annotations group for each parameter.
+        Annotation[][] perParametersAnnotations = method.getParameterAnnotations();
+        for (int parameter = 0; parameter < perParametersAnnotations.length; parameter++) {
+            for (Annotation annotation : perParametersAnnotations[parameter]) {
+                if (annotation instanceof Path) {
+                    parameterHandlers.add(new PathHandler(parameter, ((Path) annotation).value()));
+                } else if (annotation instanceof Query) {
+                    parameterHandlers.add(new QueryHandler(parameter, ((Query) annotation).value()));
+                } else if (annotation instanceof QueryMap) {
+                    parameterHandlers.add(new QueryMapHandler(parameter));
+                } else if (annotation instanceof Body) {
+                    parameterHandlers.add(new BodyHandler(parameter));
+                } else {
+                    Log.e(TAG, "Annotation not recognized: " + annotation.annotationType());
+                }
+            }
+        }
+
+        return parameterHandlers.toArray(new ParameterHandler[parameterHandlers.size()]);
+    }
+
+    private static RequestOptions getRequestOptions(Method method) {
+        RequestOptions requestOptions = new RequestOptions();
+
+        Priority priorityAnnotation = method.getAnnotation(Priority.class);
+        if (priorityAnnotation != null) {
+            requestOptions.setPriority(priorityAnnotation.value());
+        }
+
+        Deadline deadlineAnnotation = method.getAnnotation(Deadline.class);
+        if (deadlineAnnotation != null) {
+            requestOptions.setDeadlineMillis(deadlineAnnotation.value());
+        }
+
+        Retry retryAnnotation = method.getAnnotation(Retry.class);
+        if (retryAnnotation != null) {
+            requestOptions.setRetryPolicy(new RetryPolicy()
+                    .setMaxRetries(retryAnnotation.maxRetries())
+                    .setBaseDelayMillis(retryAnnotation.baseDelayMillis())
+                    .setMaxDelayMillis(retryAnnotation.maxDelayMillis())
+                    .setRetryNonIdempotent(retryAnnotation.retryNonIdempotent()));
+        }
+
+        Hedge hedgeAnnotation = method.getAnnotation(Hedge.class);
+        if (hedgeAnnotation != null) {
+            requestOptions.setHedgingPolicy(new HedgingPolicy()
+                    .setPercentile(hedgeAnnotation.percentile())
+                    .setMinDelayMillis(hedgeAnnotation.minDelayMillis())
+                    .setInitialDelayMillis(hedgeAnnotation.initialDelayMillis()));
+        }
+
+        Cache cacheAnnotation = method.getAnnotation(Cache.class);
+        if (cacheAnnotation != null) {
+            requestOptions.setCachePolicy(new CachePolicy()
+                    .setMaxAgeSeconds(cacheAnnotation.maxAgeSeconds())
+                    .setNoStore(cacheAnnotation.noStore())
+                    .setOnlyIfCached(cacheAnnotation.onlyIfCached())
+                    .setStaleWhileRevalidateSeconds(cacheAnnotation.staleWhileRevalidateSeconds()));
+        }
+
+        if (method.getAnnotation(Gzip.class) != null) {
+            requestOptions.setGzipBody(true);
+        }
+
+        return requestOptions;
+    }
+
+    private static class PathHandler extends ParameterHandler {
+        private final String mPathKey;
+
+        PathHandler(int parameterIndex, String pathKey) {
+            super(parameterIndex);
+            mPathKey = pathKey;
+        }
+
+        @Override
+        void apply(DynamicRequest request, MutableUrl mutableUrl, Object arg) {
+            mutableUrl.addPathParam(new PathParam(mPathKey, String.valueOf(arg)));
+        }
+    }
+
+    private static class QueryHandler extends ParameterHandler {
+        private final String mQueryKey;
+
+        QueryHandler(int parameterIndex, String queryKey) {
+            super(parameterIndex);
+            mQueryKey = queryKey;
+        }
+
+        @Override
+        void apply(DynamicRequest request, MutableUrl mutableUrl, Object arg) {
+            mutableUrl.addQueryParameter(new UrlParameter(mQueryKey, arg));
+        }
+    }
+
+    private static class QueryMapHandler extends ParameterHandler {
+        QueryMapHandler(int parameterIndex) {
+            super(parameterIndex);
+        }
+
+        @Override
+        void apply(DynamicRequest request, MutableUrl mutableUrl, Object arg) {
+            if (! (arg instanceof Map)) {
+                throw new RuntimeException("DynamicRequest | parseAnnotation | @QueryMap parameter type must be Map.");
+            }
+
+            //noinspection unchecked
+            Map<Object, Object> parameterMap = (Map<Object, Object>) arg;
+
+            for (Map.Entry<Object, Object> mapParameter : parameterMap.entrySet()) {
+                String queryMapParamKey = String.valueOf(mapParameter.getKey());
+                String queryMapParamValue = String.valueOf(mapParameter.getValue());
+
+                mutableUrl.addQueryParameter(new UrlParameter(queryMapParamKey, queryMapParamValue));
+            }
+        }
+    }
+
+    private static class BodyHandler extends ParameterHandler {
+        BodyHandler(int parameterIndex) {
+            super(parameterIndex);
+        }
+
+        @Override
+        void apply(DynamicRequest request, MutableUrl mutableUrl, Object arg) {
+            request.setBody(arg);
+        }
+    }
+}
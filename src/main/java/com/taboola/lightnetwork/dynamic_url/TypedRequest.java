@@ -0,0 +1,91 @@
+package com.taboola.lightnetwork.dynamic_url;
+
+import com.taboola.lightnetwork.protocols.http.HttpError;
+import com.taboola.lightnetwork.protocols.http.HttpException;
+import com.taboola.lightnetwork.protocols.http.HttpManager;
+import com.taboola.lightnetwork.protocols.http.HttpResponse;
+import com.taboola.lightnetwork.protocols.http.NetworkFuture;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link DynamicRequest} whose response is converted to T on the network worker thread, by the {@link Converter}
+ * {@link NetworkExecutable} picked for T. Declare it as the interface method return type, e.g. TypedRequest&lt;Feed&gt;.
+ */
+public class TypedRequest<T> {
+
+    public interface TypedNetworkResponse<T> {
+        void onResponse(T result);
+        void onError(HttpError error);
+    }
+
+    private final HttpManager mHttpManager;
+    private final DynamicRequest mDynamicRequest;
+    private final Converter<T> mConverter;
+
+    TypedRequest(HttpManager httpManager, DynamicRequest dynamicRequest, Converter<T> converter) {
+        mHttpManager = httpManager;
+        mDynamicRequest = dynamicRequest;
+        mConverter = converter;
+    }
+
+    /**********
+     * Public *
+     **********/
+
+    /**
+     * Execute the network call, the response is converted on the network worker thread.
+     * The callback runs where {@link HttpManager} callbacks run, by default on the thread the request was called from.
+     * @return - A future of the converted result, canceling it cancels the request.
+     */
+    public NetworkFuture<T> execute(final TypedNetworkResponse<T> typedNetworkResponse) {
+        Executor callbackExecutor = mHttpManager.getCallbackExecutor();
+        NetworkFuture<T> future = executeAsync();
+        future.addListener(new NetworkFuture.Listener<T>() {
+            @Override
+            public void onSuccess(T result) {
+                typedNetworkResponse.onResponse(result);
+            }
+
+            @Override
+            public void onFailure(HttpError error) {
+                typedNetworkResponse.onError(error);
+            }
+        }, callbackExecutor);
+        return future;
+    }
+
+    /**
+     * Execute the network call, see {@link DynamicRequest#executeAsync()}.
+     * @return - A future completed on the network worker thread with the converted result.
+     */
+    public NetworkFuture<T> executeAsync() {
+        return mDynamicRequest.executeAsync().thenApply(new NetworkFuture.Function<HttpResponse, T>() {
+            @Override
+            public T apply(HttpResponse response) throws Exception {
+                return mConverter.convert(response);
+            }
+        });
+    }
+
+    /**
+     * Execute the network call blocking the calling thread, see {@link DynamicRequest#executeSync()}. Must not be called from the main thread.
+     * @return - The converted result.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request or the conversion failed.
+     */
+    public T executeSync() throws HttpException {
+        HttpResponse response = mDynamicRequest.executeSync();
+        try {
+            return mConverter.convert(response);
+        } catch (Exception e) {
+            throw new HttpException(new HttpError(HttpError.CODE_PROCESSING_FAILED, e.getClass().getSimpleName() + ": " + e.getLocalizedMessage()));
+        }
+    }
+
+    /**
+     * @return - The underlying request, e.g. to read its final url.
+     */
+    public DynamicRequest getDynamicRequest() {
+        return mDynamicRequest;
+    }
+}
@@ -0,0 +1,19 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation batches fire-and-forget POST requests: bodies sent to the same url are buffered and sent together
+ * as a single json array body, once maxSize bodies are buffered or maxAgeMillis after the first one, whichever comes first.
+ * Only applies when the request is executed without a callback.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Batch {
+    int maxSize() default 20;
+    long maxAgeMillis() default 5000;
+}
@@ -7,7 +7,9 @@ import static java.lang.annotation.ElementType.PARAMETER;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
 /**
- * This annotation allows adding a JSONObject body to a POST request.
+ * This annotation allows adding a body to a POST request. The parameter must be a JSONObject, or a
+ * {@link com.taboola.lightnetwork.protocols.http.RequestBody} for content already serialized (bytes, text, file or a streaming writer).
+ * RequestBody bodies are not batched, see {@link Batch}.
  */
 @Retention(RUNTIME)
 @Target(PARAMETER)
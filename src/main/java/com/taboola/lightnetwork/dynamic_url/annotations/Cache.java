@@ -0,0 +1,23 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import com.taboola.lightnetwork.protocols.http.CachePolicy;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation sets how a GET request uses the response cache, see {@link CachePolicy}.
+ * e.g. @Cache(maxAgeSeconds = 60, staleWhileRevalidateSeconds = 600) returns a cached response up to 10 minutes
+ * past its freshness immediately, and refreshes it in the background.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Cache {
+    int maxAgeSeconds() default CachePolicy.NOT_SET;
+    boolean noStore() default false;
+    boolean onlyIfCached() default false;
+    int staleWhileRevalidateSeconds() default CachePolicy.NOT_SET;
+}
@@ -0,0 +1,17 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation sets an overall time limit, in milliseconds, for the request including queueing and redirects.
+ * See {@link com.taboola.lightnetwork.protocols.http.RequestOptions#setDeadlineMillis(long)}.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Deadline {
+    long value();
+}
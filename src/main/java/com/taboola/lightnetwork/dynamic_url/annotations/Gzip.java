@@ -0,0 +1,16 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation sends the POST body gzipped, with a "Content-Encoding: gzip" header. Worth it for large bodies,
+ * e.g. event batches. The server must accept compressed request bodies.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Gzip {
+}
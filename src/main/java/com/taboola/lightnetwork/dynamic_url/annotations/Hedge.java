@@ -0,0 +1,21 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import com.taboola.lightnetwork.protocols.http.HedgingPolicy;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation hedges a GET request: a duplicate is sent if no response arrived within the percentile of the host's
+ * recent latency, the first response wins. See {@link HedgingPolicy}.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Hedge {
+    int percentile() default HedgingPolicy.DEFAULT_PERCENTILE;
+    long minDelayMillis() default HedgingPolicy.DEFAULT_MIN_DELAY_MILLIS;
+    long initialDelayMillis() default HedgingPolicy.DEFAULT_INITIAL_DELAY_MILLIS;
+}
@@ -0,0 +1,19 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import com.taboola.lightnetwork.protocols.http.RequestPriority;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation sets the dispatch priority of the request, see {@link RequestPriority} for available values.
+ * Requests without this annotation run with {@link RequestPriority#NORMAL}.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Priority {
+    int value() default RequestPriority.NORMAL;
+}
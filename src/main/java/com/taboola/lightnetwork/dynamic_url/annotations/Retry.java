@@ -0,0 +1,22 @@
+package com.taboola.lightnetwork.dynamic_url.annotations;
+
+import com.taboola.lightnetwork.protocols.http.RetryPolicy;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * This annotation sets the retry policy of the request, overriding the HttpManager default. See {@link RetryPolicy}.
+ * Use maxRetries = 0 to never retry the request.
+ */
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Retry {
+    int maxRetries() default RetryPolicy.DEFAULT_MAX_RETRIES;
+    long baseDelayMillis() default RetryPolicy.DEFAULT_BASE_DELAY_MILLIS;
+    long maxDelayMillis() default RetryPolicy.DEFAULT_MAX_DELAY_MILLIS;
+    boolean retryNonIdempotent() default false;
+}
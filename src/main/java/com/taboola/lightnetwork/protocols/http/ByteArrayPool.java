@@ -0,0 +1,39 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.util.ArrayDeque;
+
+/**
+ * Reusable read buffers, so reading a response body does not allocate a new buffer every time.
+ * Holds at most MAX_POOLED_BUFFERS idle buffers, one per concurrently reading worker is enough.
+ */
+class ByteArrayPool {
+    static final int BUFFER_SIZE_BYTES = 8 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    private static final ArrayDeque<byte[]> sBuffers = new ArrayDeque<>();
+
+    /**
+     * @return - A buffer of BUFFER_SIZE_BYTES, must be given back with {@link #release(byte[])} once done.
+     */
+    static byte[] acquire() {
+        synchronized (sBuffers) {
+            byte[] buffer = sBuffers.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[BUFFER_SIZE_BYTES];
+    }
+
+    static void release(byte[] buffer) {
+        if (buffer == null || buffer.length != BUFFER_SIZE_BYTES) {
+            return;
+        }
+
+        synchronized (sBuffers) {
+            if (sBuffers.size() < MAX_POOLED_BUFFERS) {
+                sBuffers.push(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * How a GET request uses the {@link HttpManager} response cache, sent as a "Cache-Control" request header.
+ * Responses are stored according to the server's own caching headers, the policy only decides which stored responses
+ * the request accepts. Revalidating a stored response (If-None-Match / If-Modified-Since, answered by a 304) is done by the cache.
+ *
+ * With stale-while-revalidate, a stored response up to that many seconds past its freshness is returned right away,
+ * without waiting for the network, and revalidated in the background so the next request gets a fresh one.
+ *
+ * Usage example:
+ *      new RequestOptions().setCachePolicy(new CachePolicy().setMaxAgeSeconds(60).setStaleWhileRevalidateSeconds(600))
+ */
+public class CachePolicy {
+    public static final int NOT_SET = -1;
+
+    private int mMaxAgeSeconds = NOT_SET;
+    private boolean mNoStore;
+    private boolean mOnlyIfCached;
+    private int mStaleWhileRevalidateSeconds = NOT_SET;
+
+    /**
+     * @param maxAgeSeconds - Don't accept stored responses older than this, 0 to always revalidate. {@link #NOT_SET} to leave it to the server headers.
+     */
+    public CachePolicy setMaxAgeSeconds(int maxAgeSeconds) {
+        if (maxAgeSeconds < NOT_SET) {
+            throw new IllegalArgumentException("CachePolicy | setMaxAgeSeconds | maxAgeSeconds cannot be negative, got: " + maxAgeSeconds);
+        }
+
+        mMaxAgeSeconds = maxAgeSeconds;
+        return this;
+    }
+
+    public int getMaxAgeSeconds() {
+        return mMaxAgeSeconds;
+    }
+
+    /**
+     * @param noStore - True to neither read nor store the response in the cache, e.g. for personal or one-off data.
+     */
+    public CachePolicy setNoStore(boolean noStore) {
+        mNoStore = noStore;
+        return this;
+    }
+
+    public boolean isNoStore() {
+        return mNoStore;
+    }
+
+    /**
+     * @param onlyIfCached - True to never touch the network. Without a usable stored response the request fails with 504.
+     */
+    public CachePolicy setOnlyIfCached(boolean onlyIfCached) {
+        mOnlyIfCached = onlyIfCached;
+        return this;
+    }
+
+    public boolean isOnlyIfCached() {
+        return mOnlyIfCached;
+    }
+
+    /**
+     * @param staleWhileRevalidateSeconds - How long past its freshness a stored response is still returned immediately,
+     *                                      while revalidated in the background. {@link #NOT_SET} to wait for the network instead.
+     */
+    public CachePolicy setStaleWhileRevalidateSeconds(int staleWhileRevalidateSeconds) {
+        if (staleWhileRevalidateSeconds < NOT_SET) {
+            throw new IllegalArgumentException("CachePolicy | setStaleWhileRevalidateSeconds | staleWhileRevalidateSeconds cannot be negative, got: " + staleWhileRevalidateSeconds);
+        }
+
+        mStaleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+        return this;
+    }
+
+    public int getStaleWhileRevalidateSeconds() {
+        return mStaleWhileRevalidateSeconds;
+    }
+
+    /**
+     * @return - True if a stored response may be returned before asking the network.
+     */
+    boolean isStaleWhileRevalidate() {
+        return mStaleWhileRevalidateSeconds > 0 && !mNoStore && !mOnlyIfCached;
+    }
+
+    /**
+     * @return - The "Cache-Control" request header value, null if the policy sets nothing.
+     */
+    String getCacheControl() {
+        StringBuilder cacheControl = new StringBuilder();
+        if (mNoStore) {
+            append(cacheControl, "no-store");
+        }
+        if (mMaxAgeSeconds != NOT_SET) {
+            append(cacheControl, "max-age=" + mMaxAgeSeconds);
+        }
+        if (mOnlyIfCached) {
+            append(cacheControl, "only-if-cached");
+        }
+        return cacheControl.length() == 0 ? null : cacheControl.toString();
+    }
+
+    /**
+     * @return - The "Cache-Control" request header value asking only for a stored response, fresh or stale within stale-while-revalidate.
+     */
+    String getStaleCacheControl() {
+        String staleCacheControl = "only-if-cached, max-stale=" + mStaleWhileRevalidateSeconds;
+        return mMaxAgeSeconds == NOT_SET ? staleCacheControl : "max-age=" + mMaxAgeSeconds + ", " + staleCacheControl;
+    }
+
+    private static void append(StringBuilder cacheControl, String directive) {
+        if (cacheControl.length() > 0) {
+            cacheControl.append(", ");
+        }
+        cacheControl.append(directive);
+    }
+}
@@ -0,0 +1,35 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * A handle to an asynchronous request, returned when the request is made.
+ */
+public class Call {
+    private final HttpRequest mRequest;
+
+    Call(HttpRequest request) {
+        mRequest = request;
+    }
+
+    /**
+     * Cancel the request. Its callback will not be called, even if the response is already on its way to the callback thread.
+     * A request waiting in queue is removed from it, a running request has its connection closed and frees its
+     * {@link Dispatcher} slot immediately. Cancelling a request that already completed has no effect.
+     */
+    public void cancel() {
+        mRequest.cancel();
+    }
+
+    /**
+     * @return - True if {@link #cancel()} was called before the request completed, or before its callback started running.
+     */
+    public boolean isCanceled() {
+        return mRequest.mCanceled;
+    }
+
+    /**
+     * @return - The url the request was made with.
+     */
+    public String getUrl() {
+        return mRequest.mOriginalUrl;
+    }
+}
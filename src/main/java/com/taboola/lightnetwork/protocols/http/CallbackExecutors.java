@@ -0,0 +1,135 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Ready made callback Executors for {@link HttpManager#setCallbackExecutor(Executor)}.
+ * Any other Executor can be supplied as well, callbacks are then run wherever it runs them.
+ */
+public class CallbackExecutors {
+    private static final String TAG = CallbackExecutors.class.getSimpleName();
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private static MainThreadExecutor sMainThreadExecutor;
+
+    /**
+     * Callbacks run on the network worker thread as soon as the request completes.
+     * Callbacks must be quick and thread safe, a slow callback holds a Dispatcher slot.
+     */
+    public static Executor direct() {
+        return DIRECT;
+    }
+
+    /**
+     * Callbacks run on the main thread.
+     * Callbacks completing before the main thread gets to run them are batched into a single Handler post,
+     * so a burst of responses does not flood the main thread message queue.
+     */
+    public static synchronized Executor mainThread() {
+        if (sMainThreadExecutor == null) {
+            sMainThreadExecutor = new MainThreadExecutor();
+        }
+        return sMainThreadExecutor;
+    }
+
+    /**
+     * Default behaviour. Callbacks run on the Looper of the thread that made the request.
+     * If that thread has no Looper, or it is the main thread, callbacks run as in {@link #mainThread()}.
+     */
+    static Executor callingThread() {
+        Looper looper = Looper.myLooper();
+        if (looper == null || looper == Looper.getMainLooper()) {
+            return mainThread();
+        }
+        return new LooperExecutor(looper);
+    }
+
+    /**
+     * Collects callbacks and runs all those pending in a single main thread message.
+     */
+    private static class MainThreadExecutor implements Executor {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final Object mLock = new Object();
+        private List<Runnable> mPending = new ArrayList<>();
+        private boolean mDrainScheduled;
+
+        private final Runnable mDrain = new Runnable() {
+            @Override
+            public void run() {
+                List<Runnable> batch;
+                synchronized (mLock) {
+                    batch = mPending;
+                    mPending = new ArrayList<>();
+                    mDrainScheduled = false;
+                }
+
+                for (Runnable runnable : batch) {
+                    try {
+                        runnable.run();
+                    } catch (RuntimeException e) {
+                        //Do not let one failing callback drop the rest of the batch, crash after they ran.
+                        rethrowLater(e);
+                    }
+                }
+            }
+        };
+
+        @Override
+        public void execute(Runnable runnable) {
+            synchronized (mLock) {
+                mPending.add(runnable);
+                if (mDrainScheduled) {
+                    return;
+                }
+                mDrainScheduled = true;
+            }
+            mHandler.post(mDrain);
+        }
+
+        private void rethrowLater(final RuntimeException e) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    throw e;
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs callbacks on a specific (non main) thread Looper.
+     * Note: If looper/calling thread is no longer available, returning to main thread.
+     */
+    private static class LooperExecutor implements Executor {
+        private final WeakReference<Looper> mLooper;
+
+        LooperExecutor(Looper looper) {
+            mLooper = new WeakReference<>(looper);
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            Looper looper = mLooper.get();
+            if (looper == null) {
+                Log.e(TAG, "Network cannot return response callback on calling Thread. Is calling Thread still alive? Returning callback on main Thread.");
+                mainThread().execute(runnable);
+                return;
+            }
+
+            new Handler(looper).post(runnable);
+        }
+    }
+}
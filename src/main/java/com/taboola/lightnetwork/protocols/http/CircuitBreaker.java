@@ -0,0 +1,154 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stops sending requests to a host that keeps failing, so callers fail fast instead of each waiting out a full timeout.
+ *
+ * Per host state:
+ * - CLOSED: Requests go through. Opens once at least MIN_CALLS_IN_WINDOW of the last WINDOW_SIZE calls were made
+ *   and FAILURE_RATE_TO_OPEN_PERCENT of them failed (IO failure, including timeouts, or a 5xx response).
+ * - OPEN: Requests fail with {@link HttpError#CODE_CIRCUIT_OPEN} without touching the network, for OPEN_DURATION_MILLIS.
+ * - HALF_OPEN: A single probe request is let through. Its success closes the circuit, its failure opens it again.
+ *
+ * Only the MAX_HOSTS most recently used hosts are tracked, a host seen again after being dropped starts CLOSED.
+ */
+class CircuitBreaker {
+    private static final String TAG = CircuitBreaker.class.getSimpleName();
+    private static final int WINDOW_SIZE = 20;
+    private static final int MIN_CALLS_IN_WINDOW = 10;
+    private static final int FAILURE_RATE_TO_OPEN_PERCENT = 50;
+    private static final long OPEN_DURATION_MILLIS = 30000;
+    private static final int MAX_HOSTS = 64;
+
+    private static final int STATE_CLOSED = 0;
+    private static final int STATE_OPEN = 1;
+    private static final int STATE_HALF_OPEN = 2;
+
+    private final LinkedHashMap<String, HostCircuit> mCircuits = new LinkedHashMap<String, HostCircuit>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HostCircuit> eldest) {
+            return size() > MAX_HOSTS;
+        }
+    };
+
+    /**
+     * Must be followed by exactly one call to {@link #onSuccess(String)}, {@link #onFailure(String)} or {@link #onIgnored(String)}
+     * when it returns true.
+     * @return - False if host's circuit is open and the request must fail fast.
+     */
+    synchronized boolean allowRequest(String host) {
+        HostCircuit circuit = getCircuit(host);
+
+        switch (circuit.mState) {
+            case STATE_OPEN:
+                if (SystemClock.elapsedRealtime() < circuit.mOpenUntilMillis) {
+                    return false;
+                }
+                circuit.mState = STATE_HALF_OPEN;
+                Log.d(TAG, "allowRequest | Probing host: " + host);
+                //Fall through, this request is the probe.
+            case STATE_HALF_OPEN:
+                if (circuit.mProbeInFlight) {
+                    return false;
+                }
+                circuit.mProbeInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Host answered, whatever the answer (below 500).
+     */
+    synchronized void onSuccess(String host) {
+        HostCircuit circuit = getCircuit(host);
+        if (circuit.mState == STATE_HALF_OPEN) {
+            Log.d(TAG, "onSuccess | Host recovered, closing circuit: " + host);
+            circuit.reset();
+            return;
+        }
+        circuit.record(false);
+    }
+
+    /**
+     * Host could not be reached, timed out or answered with a 5xx.
+     */
+    synchronized void onFailure(String host) {
+        HostCircuit circuit = getCircuit(host);
+        if (circuit.mState == STATE_HALF_OPEN) {
+            open(host, circuit);
+            return;
+        }
+
+        circuit.record(true);
+        if (circuit.mCalls >= MIN_CALLS_IN_WINDOW && circuit.mFailures * 100 >= circuit.mCalls * FAILURE_RATE_TO_OPEN_PERCENT) {
+            open(host, circuit);
+        }
+    }
+
+    /**
+     * Request ended without telling anything about the host, e.g. canceled. Frees the probe slot if it was the probe.
+     */
+    synchronized void onIgnored(String host) {
+        HostCircuit circuit = getCircuit(host);
+        if (circuit.mState == STATE_HALF_OPEN) {
+            circuit.mProbeInFlight = false;
+        }
+    }
+
+    private void open(String host, HostCircuit circuit) {
+        Log.e(TAG, "open | Host failing, requests fail fast for " + OPEN_DURATION_MILLIS + "ms: " + host);
+        circuit.reset();
+        circuit.mState = STATE_OPEN;
+        circuit.mOpenUntilMillis = SystemClock.elapsedRealtime() + OPEN_DURATION_MILLIS;
+    }
+
+    private HostCircuit getCircuit(String host) {
+        HostCircuit circuit = mCircuits.get(host);
+        if (circuit == null) {
+            circuit = new HostCircuit();
+            mCircuits.put(host, circuit);
+        }
+        return circuit;
+    }
+
+    /**
+     * State of a single host. Outcomes of the last WINDOW_SIZE calls are kept in a ring buffer.
+     */
+    private static class HostCircuit {
+        final boolean[] mWindow = new boolean[WINDOW_SIZE]; //True for a failure.
+        int mNextSlot;
+        int mCalls; //Calls in window, up to WINDOW_SIZE.
+        int mFailures; //Failures in window.
+        int mState = STATE_CLOSED;
+        long mOpenUntilMillis; //On the SystemClock.elapsedRealtime() clock.
+        boolean mProbeInFlight;
+
+        void record(boolean failure) {
+            if (mCalls == WINDOW_SIZE && mWindow[mNextSlot]) {
+                mFailures--; //Oldest outcome leaves the window.
+            }
+
+            mWindow[mNextSlot] = failure;
+            mNextSlot = (mNextSlot + 1) % WINDOW_SIZE;
+            mCalls = Math.min(WINDOW_SIZE, mCalls + 1);
+            if (failure) {
+                mFailures++;
+            }
+        }
+
+        void reset() {
+            mNextSlot = 0;
+            mCalls = 0;
+            mFailures = 0;
+            mState = STATE_CLOSED;
+            mProbeInFlight = false;
+        }
+    }
+}
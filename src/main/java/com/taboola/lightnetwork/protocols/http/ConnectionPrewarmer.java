@@ -0,0 +1,77 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opens connections ahead of time, so the first real request to a host skips DNS, TCP and TLS handshakes.
+ * A HEAD request is sent and its (empty) response fully read, which leaves the socket in the platform keep-alive pool,
+ * where the next HttpURLConnection to the same host picks it up.
+ *
+ * HttpURLConnection does not tell whether a pooled socket was reused, so hits are estimated: the first request to a warmed host
+ * counts as a hit if its connect() returned within REUSED_CONNECT_MAX_MILLIS, which a new handshake cannot.
+ * Requests writing a body connect while writing it, they use up the warm connection without counting as a hit or a miss.
+ */
+class ConnectionPrewarmer {
+    static final long UNKNOWN_CONNECT_MILLIS = -1;
+    private static final String TAG = ConnectionPrewarmer.class.getSimpleName();
+    private static final long WARM_WINDOW_MILLIS = 60000; //Well within the platform keep-alive duration (5 minutes).
+    private static final long REUSED_CONNECT_MAX_MILLIS = 5;
+
+    private final Map<String, Long> mWarmHosts = new HashMap<>(); //Warmed host to warm time, until the next request to it.
+    private final Set<String> mWarmingHosts = new HashSet<>(); //Prewarm HEAD in flight.
+    private int mPrewarmedCount;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Must be followed by {@link #onPrewarmed(String)} or {@link #onPrewarmFailed(String)} when it returns true.
+     * @return - False if host is already warm or being warmed and there is no need to prewarm it again.
+     */
+    synchronized boolean startPrewarm(String host) {
+        Long warmAtMillis = mWarmHosts.get(host);
+        if (mWarmingHosts.contains(host) || (warmAtMillis != null && SystemClock.elapsedRealtime() - warmAtMillis <= WARM_WINDOW_MILLIS)) {
+            return false;
+        }
+
+        mWarmingHosts.add(host);
+        return true;
+    }
+
+    synchronized void onPrewarmed(String host) {
+        mWarmingHosts.remove(host);
+        mWarmHosts.put(host, SystemClock.elapsedRealtime());
+        mPrewarmedCount++;
+    }
+
+    synchronized void onPrewarmFailed(String host) {
+        mWarmingHosts.remove(host);
+    }
+
+    /**
+     * Called after every connect(), with the time it took.
+     * @param connectMillis - UNKNOWN_CONNECT_MILLIS if the connection was opened before connect(), by a body write.
+     */
+    synchronized void onConnected(String host, long connectMillis) {
+        Long warmAtMillis = mWarmHosts.remove(host);
+        if (warmAtMillis == null || SystemClock.elapsedRealtime() - warmAtMillis > WARM_WINDOW_MILLIS || connectMillis == UNKNOWN_CONNECT_MILLIS) {
+            return;
+        }
+
+        if (connectMillis <= REUSED_CONNECT_MAX_MILLIS) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+            Log.d(TAG, "onConnected | Warm connection was not reused, host: " + host + ", connect took " + connectMillis + "ms");
+        }
+    }
+
+    synchronized PrewarmStats getStats() {
+        return new PrewarmStats(mPrewarmedCount, mHitCount, mMissCount);
+    }
+}
@@ -0,0 +1,355 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.os.Build;
+import android.util.Log;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs all Http requests of an {@link HttpManager} on a shared, bounded pool of worker threads.
+ *
+ * - At most {@link #getMaxRequests()} requests are handed to the pool at once, the rest wait in queue. A request is only
+ *   handed over when a worker thread is free for it, so waiting always happens in the priority lanes, never in the pool.
+ * - Waiting requests are kept in lanes by {@link RequestPriority}, higher lanes are always started first, FIFO within a lane.
+ * - At most {@link #getMaxRequestsPerHost()} requests run against the same host, so a single slow host cannot take all slots.
+ * - The pool never grows above {@link #getMaxThreads()} threads.
+ * - Idle worker threads are reaped after {@link #getKeepAliveMillis()}, so an idle app holds no network threads.
+ */
+public class Dispatcher {
+    private static final String TAG = Dispatcher.class.getSimpleName();
+    private static final int DEFAULT_MAX_REQUESTS = 8;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+    private static final int DEFAULT_MAX_THREADS = DEFAULT_MAX_REQUESTS;
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+
+    private final ThreadPoolExecutor mExecutorService;
+    private static ScheduledThreadPoolExecutor sScheduler; //Timers (deadlines, timeouts), shared by all managers, never runs network itself.
+    private final ArrayDeque<HttpRequest>[] mReadyLanes; //Waiting for an in-flight slot, indexed by RequestPriority.
+    private final Set<HttpRequest> mRunningRequests = new HashSet<>(); //Handed to the pool, running or about to run.
+    private int mBusyThreads; //Worker threads given a request that did not return yet, canceled ones included.
+    private final Map<String, Integer> mRunningRequestsPerHost = new HashMap<>();
+    private final Map<String, Integer> mMaxRequestsForHost = new HashMap<>(); //Per host overrides of mMaxRequestsPerHost.
+    private int mMaxRequests = DEFAULT_MAX_REQUESTS;
+    private int mMaxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+
+    Dispatcher() {
+        //noinspection unchecked
+        mReadyLanes = new ArrayDeque[RequestPriority.HIGH + 1];
+        for (int lane = 0; lane < mReadyLanes.length; lane++) {
+            mReadyLanes[lane] = new ArrayDeque<>();
+        }
+
+        mExecutorService = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+                DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DispatcherThreadFactory("LightNetwork Dispatcher #"));
+        mExecutorService.allowCoreThreadTimeOut(true);
+    }
+
+    /**********
+     * PUBLIC *
+     **********/
+
+    /**
+     * @param maxRequests - Max number of requests in flight at once, never more than {@link #getMaxThreads()}. Extra requests wait in queue. Must be at least 1.
+     */
+    public void setMaxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("Dispatcher | setMaxRequests | maxRequests must be at least 1, got: " + maxRequests);
+        }
+
+        synchronized (this) {
+            mMaxRequests = maxRequests;
+        }
+        promoteRequests();
+    }
+
+    public synchronized int getMaxRequests() {
+        return mMaxRequests;
+    }
+
+    /**
+     * @param maxRequestsPerHost - Max number of requests in flight against a single host. Must be at least 1.
+     */
+    public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Dispatcher | setMaxRequestsPerHost | maxRequestsPerHost must be at least 1, got: " + maxRequestsPerHost);
+        }
+
+        synchronized (this) {
+            mMaxRequestsPerHost = maxRequestsPerHost;
+        }
+        promoteRequests();
+    }
+
+    public synchronized int getMaxRequestsPerHost() {
+        return mMaxRequestsPerHost;
+    }
+
+    /**
+     * Override {@link #setMaxRequestsPerHost(int)} for a specific host.
+     * @param host - Host name as it appears in the url, e.g. "www.example.com".
+     * @param maxRequests - Max number of requests in flight against this host. Must be at least 1.
+     */
+    public void setMaxRequestsForHost(String host, int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("Dispatcher | setMaxRequestsForHost | maxRequests must be at least 1, got: " + maxRequests);
+        }
+
+        synchronized (this) {
+            mMaxRequestsForHost.put(host.toLowerCase(), maxRequests);
+        }
+        promoteRequests();
+    }
+
+    /**
+     * @param maxThreads - Max number of worker threads. Must be at least 1.
+     */
+    public void setMaxThreads(int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("Dispatcher | setMaxThreads | maxThreads must be at least 1, got: " + maxThreads);
+        }
+
+        synchronized (this) {
+            //ThreadPoolExecutor requires core <= max at all times, order the updates accordingly.
+            if (maxThreads > mExecutorService.getMaximumPoolSize()) {
+                mExecutorService.setMaximumPoolSize(maxThreads);
+                mExecutorService.setCorePoolSize(maxThreads);
+            } else {
+                mExecutorService.setCorePoolSize(maxThreads);
+                mExecutorService.setMaximumPoolSize(maxThreads);
+            }
+        }
+        promoteRequests();
+    }
+
+    public synchronized int getMaxThreads() {
+        return mExecutorService.getMaximumPoolSize();
+    }
+
+    /**
+     * @param keepAliveMillis - How long an idle worker thread is kept before being reaped. Must be positive.
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        if (keepAliveMillis <= 0) {
+            throw new IllegalArgumentException("Dispatcher | setKeepAliveMillis | keepAliveMillis must be positive, got: " + keepAliveMillis);
+        }
+
+        mExecutorService.setKeepAliveTime(keepAliveMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long getKeepAliveMillis() {
+        return mExecutorService.getKeepAliveTime(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return - Number of requests waiting for an in-flight slot.
+     */
+    public synchronized int getQueuedRequestsCount() {
+        int queued = 0;
+        for (ArrayDeque<HttpRequest> lane : mReadyLanes) {
+            queued += lane.size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return - Number of requests currently in flight.
+     */
+    public synchronized int getRunningRequestsCount() {
+        return mRunningRequests.size();
+    }
+
+    /************
+     * INTERNAL *
+     ************/
+
+    void enqueue(HttpRequest request) {
+        request.mDispatchHost = getHost(request.mUrl);
+
+        synchronized (this) {
+            mReadyLanes[getLane(request.mPriority)].add(request);
+        }
+        promoteRequests();
+    }
+
+    /**
+     * Remove a canceled request from its lane, or free its in-flight slot if already handed to the pool.
+     */
+    void cancel(HttpRequest request) {
+        synchronized (this) {
+            for (ArrayDeque<HttpRequest> lane : mReadyLanes) {
+                if (lane.remove(request)) {
+                    return;
+                }
+            }
+        }
+        finished(request);
+    }
+
+    /**
+     * Run a task after a delay on the shared timer thread. Tasks must be short, they all share a single thread.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        synchronized (Dispatcher.class) {
+            if (sScheduler == null) {
+                sScheduler = new ScheduledThreadPoolExecutor(1, new DispatcherThreadFactory("LightNetwork Scheduler #"));
+                sScheduler.setKeepAliveTime(DEFAULT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+                sScheduler.allowCoreThreadTimeOut(true); //No timer thread held while nothing is scheduled.
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    sScheduler.setRemoveOnCancelPolicy(true); //Canceled deadlines must not keep their request reachable until they expire.
+                }
+            }
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+                sScheduler.purge(); //Same, without setRemoveOnCancelPolicy.
+            }
+        }
+        return sScheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Move as many ready requests as allowed into the worker pool, highest lane first.
+     * Requests whose host is at its limit are skipped and keep their place in their lane.
+     * Execution happens outside of the lock, so a rejected or synchronous executor cannot deadlock the Dispatcher.
+     */
+    private void promoteRequests() {
+        ArrayDeque<HttpRequest> toExecute = new ArrayDeque<>();
+
+        synchronized (this) {
+            for (int lane = mReadyLanes.length - 1; lane >= 0 && canPromote(); lane--) {
+                Iterator<HttpRequest> iterator = mReadyLanes[lane].iterator();
+
+                while (iterator.hasNext() && canPromote()) {
+                    HttpRequest request = iterator.next();
+                    String host = request.mDispatchHost;
+
+                    if (getRunningRequestsForHost(host) >= getMaxRequestsForHost(host)) {
+                        continue;
+                    }
+
+                    iterator.remove();
+                    mRunningRequests.add(request);
+                    mBusyThreads++;
+                    mRunningRequestsPerHost.put(host, getRunningRequestsForHost(host) + 1);
+                    toExecute.add(request);
+                }
+            }
+        }
+
+        for (HttpRequest request : toExecute) {
+            mExecutorService.execute(new DispatchedRequest(request));
+        }
+    }
+
+    private void finished(HttpRequest request) {
+        synchronized (this) {
+            if (mRunningRequests.remove(request)) {
+                String host = request.mDispatchHost;
+                int runningForHost = getRunningRequestsForHost(host) - 1;
+                if (runningForHost > 0) {
+                    mRunningRequestsPerHost.put(host, runningForHost);
+                } else {
+                    mRunningRequestsPerHost.remove(host);
+                }
+            } else if (!request.mAborted) { //Aborted requests free their slot early, once canceled.
+                Log.e(TAG, "finished | Request was not in flight: " + request.mUrl);
+            }
+        }
+        promoteRequests();
+    }
+
+    /**
+     * @return - True if a request may be handed to the pool now: below the in-flight limit, and a worker thread is free to run it.
+     *           Must hold the lock.
+     */
+    private boolean canPromote() {
+        return mRunningRequests.size() < mMaxRequests && mBusyThreads < mExecutorService.getMaximumPoolSize();
+    }
+
+    private int getRunningRequestsForHost(String host) {
+        Integer running = mRunningRequestsPerHost.get(host);
+        return running == null ? 0 : running;
+    }
+
+    private int getMaxRequestsForHost(String host) {
+        Integer max = mMaxRequestsForHost.get(host);
+        return max == null ? mMaxRequestsPerHost : max;
+    }
+
+    private static int getLane(int priority) {
+        return Math.max(RequestPriority.LOW, Math.min(RequestPriority.HIGH, priority));
+    }
+
+    /**
+     * @return - Lower cased host of the url, or an empty String for urls that cannot be parsed (those fail later anyway).
+     */
+    static String getHost(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host == null ? "" : host.toLowerCase();
+        } catch (MalformedURLException e) {
+            return "";
+        } catch (NullPointerException e) {
+            return "";
+        }
+    }
+
+    /**********
+     * COMMON *
+     **********/
+
+    /**
+     * Runs a request on a worker thread and frees its in-flight slot once done, whatever the outcome.
+     */
+    private class DispatchedRequest implements Runnable {
+        private final HttpRequest mRequest;
+
+        DispatchedRequest(HttpRequest request) {
+            mRequest = request;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mRequest.run();
+            } finally {
+                synchronized (Dispatcher.this) {
+                    mBusyThreads--;
+                }
+                finished(mRequest);
+            }
+
+            //Only once the slot is free, so a retry never counts twice against the limits.
+            mRequest.scheduleRetryIfPending();
+        }
+    }
+
+    static class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger();
+        private final String mNamePrefix;
+
+        DispatcherThreadFactory(String namePrefix) {
+            mNamePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, mNamePrefix + mThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
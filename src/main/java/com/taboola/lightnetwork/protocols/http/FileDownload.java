@@ -0,0 +1,208 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams a response body straight to a file, through a pooled buffer.
+ *
+ * Bytes go to "destination.part" first, renamed to destination once complete. The response validator (a strong ETag,
+ * or Last-Modified) is kept next to it, in "destination.part.validator". When both exist, the next download of the same
+ * file asks only for the missing bytes with Range, and If-Range makes the server send the whole file instead if it changed meanwhile.
+ */
+class FileDownload implements HttpManager.StreamingNetworkResponse {
+    private static final String TAG = FileDownload.class.getSimpleName();
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String VALIDATOR_SUFFIX = ".part.validator";
+    private static final long PROGRESS_INTERVAL_BYTES = 64 * 1024;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416; //No constant in HttpURLConnection.
+    private static final String CONTENT_RANGE_PREFIX = "bytes ";
+    private static final String WEAK_ETAG_PREFIX = "W/"; //Weak ETags cannot be used with If-Range.
+
+    private final File mDestination;
+    private final File mPartialFile;
+    private final File mValidatorFile;
+    private final HttpManager.DownloadNetworkResponse mDownloadResponse;
+    private final String mValidator; //Null if the download cannot be resumed.
+    private final long mResumeFromBytes; //0 for a download from scratch.
+
+    /**
+     * Reads the partial download state, if any, on the calling thread. Only two file stats and a few bytes.
+     */
+    FileDownload(File destination, HttpManager.DownloadNetworkResponse downloadResponse) {
+        mDestination = destination;
+        mPartialFile = new File(destination.getPath() + PARTIAL_SUFFIX);
+        mValidatorFile = new File(destination.getPath() + VALIDATOR_SUFFIX);
+        mDownloadResponse = downloadResponse;
+
+        String validator = readValidator();
+        long partialBytes = mPartialFile.length(); //0 if missing.
+        mValidator = partialBytes > 0 ? validator : null;
+        mResumeFromBytes = mValidator != null ? partialBytes : 0;
+    }
+
+    /**
+     * @param requestHeaders - Caller headers, can be null. Not modified.
+     * @return - The headers to send, with the Range headers needed to resume.
+     */
+    Map<String, String> buildRequestHeaders(Map<String, String> requestHeaders) {
+        Map<String, String> headers = requestHeaders == null ? new HashMap<String, String>() : new HashMap<>(requestHeaders);
+        headers.put("Accept-Encoding", "identity"); //Ranges must count file bytes, not bytes of a compressed encoding.
+        headers.put("Cache-Control", "no-store"); //Large files would evict everything else from the response cache.
+        if (mResumeFromBytes > 0) {
+            headers.put("Range", "bytes=" + mResumeFromBytes + "-");
+            headers.put("If-Range", mValidator);
+            Log.d(TAG, "buildRequestHeaders | Resuming " + mDestination.getName() + " from byte " + mResumeFromBytes);
+        }
+        return headers;
+    }
+
+    @Override
+    public void onResponse(HttpResponse response, ResponseBody body) throws IOException {
+        boolean append;
+        long totalBytes;
+        if (response.mCode == HttpURLConnection.HTTP_PARTIAL) {
+            String contentRange = response.getHeader("Content-Range");
+            if (mResumeFromBytes == 0 || contentRange == null || !contentRange.startsWith(CONTENT_RANGE_PREFIX + mResumeFromBytes + "-")) {
+                deletePartial();
+                throw new IllegalStateException("Unexpected Content-Range: " + contentRange + ", expected start: " + mResumeFromBytes);
+            }
+            append = true;
+            totalBytes = parseTotalBytes(contentRange);
+        } else {
+            //Whole file, either a first download or the file changed on the server since the partial one (If-Range did not match).
+            append = false;
+            totalBytes = body.getContentLength();
+            writeValidator(getValidator(response));
+        }
+
+        long downloadedBytes = append ? mResumeFromBytes : 0;
+        mDownloadResponse.onProgress(downloadedBytes, totalBytes);
+
+        InputStream inputStream = body.getByteStream();
+        FileOutputStream outputStream = new FileOutputStream(mPartialFile, append);
+        byte[] buffer = ByteArrayPool.acquire();
+        try {
+            long nextProgressBytes = downloadedBytes + PROGRESS_INTERVAL_BYTES;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+                downloadedBytes += read;
+                if (downloadedBytes >= nextProgressBytes) {
+                    mDownloadResponse.onProgress(downloadedBytes, totalBytes);
+                    nextProgressBytes = downloadedBytes + PROGRESS_INTERVAL_BYTES;
+                }
+            }
+            outputStream.getFD().sync(); //Partial file must survive a crash before the rename.
+        } finally {
+            ByteArrayPool.release(buffer);
+            outputStream.close();
+        }
+
+        if (totalBytes != ResponseBody.UNKNOWN_LENGTH && downloadedBytes != totalBytes) {
+            //Kept, the next download resumes from here.
+            throw new IOException("Body ended early, got " + downloadedBytes + " of " + totalBytes + " bytes");
+        }
+        mDownloadResponse.onProgress(downloadedBytes, totalBytes);
+
+        if (mDestination.exists() && !mDestination.delete()) {
+            throw new IOException("Could not replace " + mDestination);
+        }
+        if (!mPartialFile.renameTo(mDestination)) {
+            throw new IOException("Could not move " + mPartialFile + " to " + mDestination);
+        }
+        //noinspection ResultOfMethodCallIgnored
+        mValidatorFile.delete();
+        mDownloadResponse.onComplete(mDestination, response);
+    }
+
+    @Override
+    public void onError(HttpError error) {
+        if (error.mCode == HTTP_RANGE_NOT_SATISFIABLE) {
+            //Partial file does not match the server file, next download starts over.
+            deletePartial();
+        }
+        mDownloadResponse.onError(error);
+    }
+
+    /***********
+     * PRIVATE *
+     ***********/
+
+    private void deletePartial() {
+        //noinspection ResultOfMethodCallIgnored
+        mPartialFile.delete();
+        //noinspection ResultOfMethodCallIgnored
+        mValidatorFile.delete();
+    }
+
+    private String readValidator() {
+        if (!mValidatorFile.exists()) {
+            return null;
+        }
+
+        try {
+            InputStream inputStream = new FileInputStream(mValidatorFile);
+            try {
+                byte[] validator = new byte[(int) mValidatorFile.length()];
+                int length = 0;
+                int read;
+                while (length < validator.length && (read = inputStream.read(validator, length, validator.length - length)) != -1) {
+                    length += read;
+                }
+                return length == 0 ? null : new String(validator, 0, length, "UTF-8");
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "readValidator | Could not read " + mValidatorFile + ", download starts over. " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param validator - Null if the response has none, the download then cannot be resumed.
+     */
+    private void writeValidator(String validator) throws IOException {
+        if (validator == null) {
+            //noinspection ResultOfMethodCallIgnored
+            mValidatorFile.delete();
+            return;
+        }
+
+        FileOutputStream outputStream = new FileOutputStream(mValidatorFile);
+        try {
+            outputStream.write(validator.getBytes("UTF-8"));
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static String getValidator(HttpResponse response) {
+        String eTag = response.getHeader("ETag");
+        if (eTag != null && !eTag.startsWith(WEAK_ETAG_PREFIX)) {
+            return eTag;
+        }
+        return response.getHeader("Last-Modified");
+    }
+
+    /**
+     * @param contentRange - e.g. "bytes 100-999/1000".
+     * @return - 1000 in the example, {@link ResponseBody#UNKNOWN_LENGTH} if the server did not say ("bytes 100-999/*").
+     */
+    private static long parseTotalBytes(String contentRange) {
+        int slash = contentRange.indexOf('/');
+        if (slash == -1) {
+            return ResponseBody.UNKNOWN_LENGTH;
+        }
+        return ResponseBody.parseContentLength(contentRange.substring(slash + 1).trim());
+    }
+}
@@ -0,0 +1,85 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Cuts tail latency of GET requests: if a request got no response yet after a delay, a duplicate (hedge) is sent.
+ * The first response wins, the other request is canceled and its connection closed. At most one hedge per request.
+ *
+ * The delay is a percentile of the recent time to first byte of the same host, so only the slowest requests are hedged,
+ * e.g. the 95th percentile adds about 5% extra requests. Until enough requests to a host completed, {@link #getInitialDelayMillis()} is used.
+ *
+ * Note: Only idempotent requests (GET) are hedged, the policy is ignored for other requests.
+ *
+ * Usage example:
+ *      httpManager.setHedgingPolicy(new HedgingPolicy().setPercentile(90));
+ */
+public class HedgingPolicy {
+    public static final int DEFAULT_PERCENTILE = 95;
+    public static final long DEFAULT_MIN_DELAY_MILLIS = 50;
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 1000;
+
+    private int mPercentile = DEFAULT_PERCENTILE;
+    private long mMinDelayMillis = DEFAULT_MIN_DELAY_MILLIS;
+    private long mInitialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+
+    /**
+     * @param percentile - Percentile of recent time to first byte after which a hedge is sent, between 1 and 99.
+     */
+    public HedgingPolicy setPercentile(int percentile) {
+        if (percentile < 1 || percentile > 99) {
+            throw new IllegalArgumentException("HedgingPolicy | setPercentile | percentile must be between 1 and 99, got: " + percentile);
+        }
+
+        mPercentile = percentile;
+        return this;
+    }
+
+    public int getPercentile() {
+        return mPercentile;
+    }
+
+    /**
+     * @param minDelayMillis - Never hedge sooner than this, even for a very fast host. Must be positive.
+     */
+    public HedgingPolicy setMinDelayMillis(long minDelayMillis) {
+        if (minDelayMillis <= 0) {
+            throw new IllegalArgumentException("HedgingPolicy | setMinDelayMillis | minDelayMillis must be positive, got: " + minDelayMillis);
+        }
+
+        mMinDelayMillis = minDelayMillis;
+        return this;
+    }
+
+    public long getMinDelayMillis() {
+        return mMinDelayMillis;
+    }
+
+    /**
+     * @param initialDelayMillis - Delay used while there is too little latency history for the host. Must be positive.
+     */
+    public HedgingPolicy setInitialDelayMillis(long initialDelayMillis) {
+        if (initialDelayMillis <= 0) {
+            throw new IllegalArgumentException("HedgingPolicy | setInitialDelayMillis | initialDelayMillis must be positive, got: " + initialDelayMillis);
+        }
+
+        mInitialDelayMillis = initialDelayMillis;
+        return this;
+    }
+
+    public long getInitialDelayMillis() {
+        return mInitialDelayMillis;
+    }
+
+    /************
+     * INTERNAL *
+     ************/
+
+    /**
+     * @param percentileMillis - Time to first byte percentile of the host, {@link LatencyTracker#NOT_ENOUGH_SAMPLES} if unknown.
+     */
+    long getHedgeDelayMillis(long percentileMillis) {
+        if (percentileMillis == LatencyTracker.NOT_ENOUGH_SAMPLES) {
+            return mInitialDelayMillis;
+        }
+        return Math.max(mMinDelayMillis, percentileMillis);
+    }
+}
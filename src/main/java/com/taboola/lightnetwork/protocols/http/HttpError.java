@@ -3,6 +3,14 @@ package com.taboola.lightnetwork.protocols.http;
 public class HttpError {
     private static final int NO_CODE = -1;
 
+    //Errors that did not come from the server use negative codes.
+    public static final int CODE_CANCELED = -2; //Request was canceled by caller.
+    public static final int CODE_DEADLINE_EXCEEDED = -3; //Request did not complete within its deadline.
+    public static final int CODE_PROCESSING_FAILED = -4; //Response arrived, but code processing it threw an exception.
+    public static final int CODE_IO_FAILURE = -5; //Connection failed or broke (IOException), request may not have reached the server.
+    public static final int CODE_CIRCUIT_OPEN = -6; //Host keeps failing, request failed fast without being sent. See HttpManager.setCircuitBreakerEnabled().
+    public static final int CODE_TOO_MANY_REDIRECTS = -7; //Redirect chain longer than HttpManager.setMaxRedirects() allows, e.g. a redirect loop.
+
     public int mCode;
     public String mMessage;
 
@@ -0,0 +1,18 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Thrown by synchronous requests, carries the same {@link HttpError} an asynchronous request returns in
+ * {@link HttpManager.NetworkResponse#onError(HttpError)}.
+ */
+public class HttpException extends Exception {
+    private final HttpError mError;
+
+    public HttpException(HttpError error) {
+        super(error.toString());
+        mError = error;
+    }
+
+    public HttpError getError() {
+        return mError;
+    }
+}
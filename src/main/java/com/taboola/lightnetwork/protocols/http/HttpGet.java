@@ -3,29 +3,99 @@ package com.taboola.lightnetwork.protocols.http;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 class HttpGet extends HttpRequest {
 
-    public HttpGet(HeadersManager headersManager, CookiesTracker cookiesTracker, int configuredTimeout) {
-        super(configuredTimeout, headersManager, cookiesTracker);
+    private static final String METHOD = "GET";
+
+    public HttpGet(HeadersManager headersManager, CookiesTracker cookiesTracker, Dispatcher dispatcher, Executor callbackExecutor, RequestCoalescer coalescer, int configuredTimeout) {
+        super(configuredTimeout, headersManager, cookiesTracker, dispatcher, callbackExecutor);
+        mCoalescer = coalescer; //GET is safe and idempotent, identical in-flight requests can share a response.
     }
 
     /**
      * Wrapper method for networking, protection for NetworkOnMainUI thread.
      * @param url - The end point for the request.
      * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @param options - Per request settings, can be null.
      * @param networkResponse - A callback listener for the response.
+     * @return - A handle allowing to cancel the request.
+     */
+    Call get(final String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, final HttpManager.NetworkResponse networkResponse) {
+        mUrl = url;
+        mRequestHeaders = requestHeaders;
+        mTrackHeadersByGroup = trackHeadersByGroup;
+        mTrackHeadersKey = trackHeadersKey;
+        applyOptions(options);
+        return performRequsetOnBackgroundThread(networkResponse);
+    }
+
+    /**
+     * Same as {@link #get(String, Map, String, String, RequestOptions, HttpManager.NetworkResponse)} but blocks the calling thread.
+     * @return - The server response.
+     * @throws HttpException - Describing why the request failed.
      */
-    void get(final String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, final HttpManager.NetworkResponse networkResponse) {
+    HttpResponse getSync(final String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) throws HttpException {
         mUrl = url;
         mRequestHeaders = requestHeaders;
         mTrackHeadersByGroup = trackHeadersByGroup;
         mTrackHeadersKey = trackHeadersKey;
-        performRequsetOnBackgroundThread(networkResponse);
+        applyOptions(options);
+        return performRequestSync();
+    }
+
+    @Override
+    boolean isIdempotent() {
+        return true;
+    }
+
+    @Override
+    HttpRequest createHedge() {
+        //Not coalesced and not retried, the hedge lives and dies with this request.
+        HttpGet hedge = new HttpGet(mHeadersManager, mCookiesTracker, mDispatcher, CallbackExecutors.direct(), null, mConfiguredTimeout);
+        hedge.mUrl = mOriginalUrl;
+        hedge.mRequestHeaders = mRequestHeaders;
+        hedge.mTrackHeadersByGroup = mTrackHeadersByGroup;
+        hedge.mTrackHeadersKey = mTrackHeadersKey;
+        hedge.mPriority = mPriority;
+        hedge.mCircuitBreaker = mCircuitBreaker;
+        hedge.mLatencyTracker = mLatencyTracker;
+        hedge.mPrewarmer = mPrewarmer;
+        hedge.mMaxRedirects = mMaxRedirects;
+        hedge.mRedirectCache = mRedirectCache;
+        hedge.mCachePolicy = mCachePolicy;
+        hedge.mCacheChecked = true; //This request already looked in the cache.
+        hedge.mMemoryCache = mMemoryCache;
+        return hedge;
+    }
+
+    @Override
+    HttpRequest createRevalidation() {
+        //Not coalesced, an identical request in flight could be the one returning the stale response.
+        HttpGet revalidation = new HttpGet(mHeadersManager, mCookiesTracker, mDispatcher, CallbackExecutors.direct(), null, mConfiguredTimeout);
+        revalidation.mUrl = mUrl;
+        revalidation.mRequestHeaders = mRequestHeaders;
+        revalidation.mTrackHeadersByGroup = mTrackHeadersByGroup;
+        revalidation.mTrackHeadersKey = mTrackHeadersKey;
+        revalidation.mPriority = RequestPriority.LOW;
+        revalidation.mCircuitBreaker = mCircuitBreaker;
+        revalidation.mLatencyTracker = mLatencyTracker;
+        revalidation.mPrewarmer = mPrewarmer;
+        revalidation.mMaxRedirects = mMaxRedirects;
+        revalidation.mRedirectCache = mRedirectCache;
+        revalidation.mRevalidation = true;
+        revalidation.mMemoryCache = mMemoryCache;
+        return revalidation;
+    }
+
+    @Override
+    String getCoalescingKey() {
+        return RequestCoalescer.buildKey(METHOD, mUrl, mRequestHeaders, mTrackHeadersKey, mTrackHeadersByGroup, mCachePolicy);
     }
 
     void protocolSpecificConnectionSetup(HttpURLConnection httpUrlConnection) throws IOException {
-        httpUrlConnection.setRequestMethod("GET");
+        httpUrlConnection.setRequestMethod(METHOD);
         httpUrlConnection.setRequestProperty("Accept", "application/json");
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Executor;
+
+/**
+ * HEAD request, used to open a connection to a host ahead of time. Response has headers only.
+ */
+class HttpHead extends HttpRequest {
+
+    private static final String METHOD = "HEAD";
+
+    public HttpHead(HeadersManager headersManager, CookiesTracker cookiesTracker, Dispatcher dispatcher, Executor callbackExecutor, int configuredTimeout) {
+        super(configuredTimeout, headersManager, cookiesTracker, dispatcher, callbackExecutor);
+    }
+
+    /**
+     * @param url - The end point for the request.
+     * @param options - Per request settings, can be null.
+     * @param networkResponse - A callback listener for the response, can be null.
+     * @return - A handle allowing to cancel the request.
+     */
+    Call head(final String url, RequestOptions options, final HttpManager.NetworkResponse networkResponse) {
+        mUrl = url;
+        applyOptions(options);
+        return performRequsetOnBackgroundThread(networkResponse);
+    }
+
+    @Override
+    boolean isIdempotent() {
+        return true;
+    }
+
+    void protocolSpecificConnectionSetup(HttpURLConnection httpUrlConnection) throws IOException {
+        httpUrlConnection.setRequestMethod(METHOD);
+    }
+}
@@ -4,12 +4,16 @@ import android.content.Context;
 import android.net.http.HttpResponseCache;
 import android.util.Log;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * This component is in charge of providing basic Http network functionality.
@@ -18,12 +22,44 @@ public class HttpManager {
     private static final String TAG = HttpManager.class.getSimpleName();
     private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
     private static final int MAX_HTTP_RESPONSE_CACHE_SIZE_MB = 10;
+    private static final long DEFAULT_PERSISTENT_POST_QUEUE_MAX_BYTES = 512 * 1024;
+    private Context mContext;
     private HeadersManager mHeadersManager;
     private CookiesTracker mCookiesTracker;
+    private Dispatcher mDispatcher;
+    private RequestCoalescer mRequestCoalescer;
+    private Executor mCallbackExecutor; //Null for the default, calling thread delivery.
+    private PostBatcher mPostBatcher;
+    private volatile PersistentPostQueue mPersistentPostQueue; //Null unless enabled.
+    private RetryPolicy mRetryPolicy; //Null for no retries.
+    private RetryBudget mRetryBudget = new RetryBudget();
+    private CircuitBreaker mCircuitBreaker; //Null when disabled.
+    private HedgingPolicy mHedgingPolicy; //Null for no hedging.
+    private LatencyTracker mLatencyTracker = new LatencyTracker();
+    private ConnectionPrewarmer mConnectionPrewarmer = new ConnectionPrewarmer();
+    private int mMaxRedirects = HttpRequest.DEFAULT_MAX_REDIRECTS;
+    private final RedirectCache mRedirectCache = new RedirectCache();
+    private MemoryCache mMemoryCache; //Null when disabled.
 
     public HttpManager(Context context) {
+        mContext = context;
         mHeadersManager = new HeadersManager();
         mCookiesTracker = new CookiesTracker(context);
+        mDispatcher = new Dispatcher();
+        mRequestCoalescer = new RequestCoalescer();
+        mPostBatcher = new PostBatcher(new PostBatcher.BatchSender() {
+            @Override
+            public void send(String url, JSONArray jsonArrayBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, boolean gzipBody) {
+                //Batches are fire-and-forget by definition, let them give way to requests someone waits for.
+                RequestOptions options = new RequestOptions().setPriority(RequestPriority.LOW).setGzipBody(gzipBody);
+                PersistentPostQueue persistentPostQueue = mPersistentPostQueue;
+                if (persistentPostQueue != null) {
+                    persistentPostQueue.post(new PersistentPostQueue.OutboundPost(url, jsonArrayBody.toString(), true, requestHeaders, trackHeadersKey, trackHeadersByGroup, gzipBody), options);
+                    return;
+                }
+                newHttpPost().post(url, jsonArrayBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, null);
+            }
+        });
         setupCache(context);
     }
 
@@ -31,21 +67,83 @@ public class HttpManager {
      * PUBLIC *
      **********/
 
+    /**
+     * Download url straight to a file, through a small buffer, so large files never sit on the heap.
+     * If a previous download of the same file was interrupted, only the missing bytes are requested (Range / If-Range),
+     * the server sends the whole file instead if it changed meanwhile. Call again after an error to resume.
+     * Concurrent downloads to the same file are not supported.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param destination - File to download to. Replaced once the download completes.
+     * @param downloadResponse - Runs on the network worker thread, see {@link DownloadNetworkResponse}.
+     * @return - A handle allowing to cancel the request. The partial file is kept, a later download resumes it.
+     */
+    public Call download(String url, File destination, DownloadNetworkResponse downloadResponse) {
+        return download(url, null, null, null, null, destination, downloadResponse);
+    }
+
+    /**
+     * Same as {@link #download(String, File, DownloadNetworkResponse)} with request headers, header tracking and per request settings.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null. A deadline must leave time for the whole download.
+     * @param destination - File to download to. Replaced once the download completes.
+     * @param downloadResponse - Runs on the network worker thread, see {@link DownloadNetworkResponse}.
+     * @return - A handle allowing to cancel the request. The partial file is kept, a later download resumes it.
+     */
+    public Call download(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, File destination, DownloadNetworkResponse downloadResponse) {
+        if (destination == null) {
+            throw new IllegalArgumentException("HttpManager | download | destination cannot be null.");
+        }
+
+        FileDownload fileDownload = new FileDownload(destination, downloadResponse);
+        return getStreaming(url, fileDownload.buildRequestHeaders(requestHeaders), trackHeadersKey, trackHeadersByGroup, options, fileDownload);
+    }
+
+    /**
+     * Same as {@link #get(String, NetworkResponse)} for a body that is a json array. Elements are parsed and handed to the
+     * callback one by one as they arrive, so the first ones can be used before the download completes, and neither the
+     * whole body nor a DOM of the whole array is ever held on the heap.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param jsonArrayResponse - Runs on the network worker thread, see {@link JsonArrayNetworkResponse}.
+     * @return - A handle allowing to cancel the request, also while the body is being read.
+     */
+    public Call getJsonArray(String url, JsonArrayNetworkResponse jsonArrayResponse) {
+        return getJsonArray(url, null, null, null, null, null, jsonArrayResponse);
+    }
+
+    /**
+     * Same as {@link #getJsonArray(String, JsonArrayNetworkResponse)} with request headers, header tracking, per request settings
+     * and an array nested in the body.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @param arrayField - Name of the top level field holding the array, e.g. "items" for {"items": [..]}. Null if the body is the array itself.
+     * @param jsonArrayResponse - Runs on the network worker thread, see {@link JsonArrayNetworkResponse}.
+     * @return - A handle allowing to cancel the request, also while the body is being read.
+     */
+    public Call getJsonArray(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, String arrayField, JsonArrayNetworkResponse jsonArrayResponse) {
+        return getStreaming(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, new JsonArrayResponse(arrayField, jsonArrayResponse));
+    }
+
     /**
      * Same as {@link #get(String, HttpManager.NetworkResponse)} without expecting a callback.
      * @param url - The end point for the request.
+     * @return - A handle allowing to cancel the request.
      */
-    public void get(final String url) {
-        new HttpGet(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).get(url, null, null, null, null);
+    public Call get(final String url) {
+        return newHttpGet().get(url, null, null, null, null, null);
     }
 
     /**
      * Use this to get a Network response.
      * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
      * @param networkResponse - A callback interface returning either the server response or an error event.
+     * @return - A handle allowing to cancel the request.
      */
-    public void get(String url, HttpManager.NetworkResponse networkResponse) {
-        new HttpGet(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).get(url, null, null, null, networkResponse);
+    public Call get(String url, HttpManager.NetworkResponse networkResponse) {
+        return newHttpGet().get(url, null, null, null, null, networkResponse);
     }
 
     /**
@@ -53,9 +151,10 @@ public class HttpManager {
      * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
      * @param networkResponse - A callback interface returning either the server response or an error event.
      * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @return - A handle allowing to cancel the request.
      */
-    public void get(String url, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
-        new HttpGet(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).get(url, null, trackHeadersKey, trackHeadersByGroup, networkResponse);
+    public Call get(String url, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
+        return newHttpGet().get(url, null, trackHeadersKey, trackHeadersByGroup, null, networkResponse);
     }
 
     /**
@@ -64,18 +163,114 @@ public class HttpManager {
      * @param requestHeaders - Headers map. Will be attached to request.
      * @param networkResponse - A callback interface returning either the server response or an error event.
      * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @return - A handle allowing to cancel the request.
+     */
+    public Call get(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
+        return get(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, null, networkResponse);
+    }
+
+    /**
+     * Same as {@link #get(String, Map, String, String, NetworkResponse)} but allows setting the dispatch priority.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request.
+     * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @param priority - Dispatch priority, see {@link RequestPriority}.
+     * @param networkResponse - A callback interface returning either the server response or an error event.
+     * @return - A handle allowing to cancel the request.
+     */
+    public Call get(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, int priority, HttpManager.NetworkResponse networkResponse) {
+        return get(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, new RequestOptions().setPriority(priority), networkResponse);
+    }
+
+    /**
+     * Same as {@link #get(String, Map, String, String, NetworkResponse)} but allows per request settings, such as priority and deadline.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request.
+     * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @param options - Per request settings, can be null.
+     * @param networkResponse - A callback interface returning either the server response or an error event.
+     * @return - A handle allowing to cancel the request.
      */
-    public void get(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
-        new HttpGet(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).get(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, networkResponse);
+    public Call get(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, HttpManager.NetworkResponse networkResponse) {
+        return newHttpGet().get(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, networkResponse);
+    }
+
+    /**
+     * Same as {@link #get(String, NetworkResponse)} but the body is not read into memory ({@link HttpResponse#getMessage()}),
+     * it is handed to the callback as a stream instead. Use for large payloads, so they never sit on the heap as a whole.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param streamingResponse - Runs on the network worker thread, see {@link StreamingNetworkResponse}.
+     * @return - A handle allowing to cancel the request, also while the body is being read.
+     */
+    public Call getStreaming(String url, StreamingNetworkResponse streamingResponse) {
+        return getStreaming(url, null, null, null, null, streamingResponse);
+    }
+
+    /**
+     * Same as {@link #getStreaming(String, StreamingNetworkResponse)} with request headers, header tracking and per request settings.
+     * Streaming requests are never coalesced or hedged, and not retried once their body reached the callback.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @param streamingResponse - Runs on the network worker thread, see {@link StreamingNetworkResponse}.
+     * @return - A handle allowing to cancel the request, also while the body is being read.
+     */
+    public Call getStreaming(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, final StreamingNetworkResponse streamingResponse) {
+        HttpGet httpGet = newHttpGet(CallbackExecutors.direct());
+        httpGet.mCoalescer = null; //Followers would get the response without its body.
+        httpGet.mStreamingResponse = streamingResponse;
+        return httpGet.get(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, new NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                //Body already went to streamingResponse.onResponse().
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                streamingResponse.onError(error);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #get(String, NetworkResponse)} but the body is handed to the callback in chunks as it arrives,
+     * so large feeds can be processed incrementally with only one chunk on the heap at a time.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param chunkSizeBytes - Max size of each chunk. Must be positive.
+     * @param chunkedResponse - Runs on the network worker thread, see {@link ChunkedNetworkResponse}.
+     * @return - A handle allowing to cancel the request, also while the body is being read.
+     */
+    public Call getChunked(String url, int chunkSizeBytes, ChunkedNetworkResponse chunkedResponse) {
+        return getChunked(url, null, null, null, null, chunkSizeBytes, chunkedResponse);
+    }
+
+    /**
+     * Same as {@link #getChunked(String, int, ChunkedNetworkResponse)} with request headers, header tracking and per request settings.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @param chunkSizeBytes - Max size of each chunk. Must be positive.
+     * @param chunkedResponse - Runs on the network worker thread, see {@link ChunkedNetworkResponse}.
+     * @return - A handle allowing to cancel the request, also while the body is being read.
+     */
+    public Call getChunked(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, int chunkSizeBytes, ChunkedNetworkResponse chunkedResponse) {
+        if (chunkSizeBytes <= 0) {
+            throw new IllegalArgumentException("HttpManager | getChunked | chunkSizeBytes must be positive, got: " + chunkSizeBytes);
+        }
+
+        return getStreaming(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, new ChunkingResponse(chunkSizeBytes, chunkedResponse));
     }
 
     /**
      * Same as {@link #get(String, HttpManager.NetworkResponse)} without expecting a callback.
      * @param url - The end point for the request.
      * @param jsonBody - Json body (optional)
+     * @return - A handle allowing to cancel the request.
      */
-    public void post(final String url, final JSONObject jsonBody) {
-        new HttpPost(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).post(url, jsonBody, null, null, null, null);
+    public Call post(final String url, final JSONObject jsonBody) {
+        return post(url, jsonBody, null, null, null, null, null);
     }
 
     /**
@@ -83,9 +278,10 @@ public class HttpManager {
      * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
      * @param networkResponse - A callback interface returning either the server response or an error event.
      * @param jsonBody - Json body (optional)
+     * @return - A handle allowing to cancel the request.
      */
-    public void post(String url, final JSONObject jsonBody, HttpManager.NetworkResponse networkResponse) {
-        new HttpPost(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).post(url, jsonBody, null, null, null, networkResponse);
+    public Call post(String url, final JSONObject jsonBody, HttpManager.NetworkResponse networkResponse) {
+        return post(url, jsonBody, null, null, null, null, networkResponse);
     }
 
     /**
@@ -94,9 +290,10 @@ public class HttpManager {
      * @param networkResponse - A callback interface returning either the server response or an error event.
      * @param jsonBody - Json body (optional)
      * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @return - A handle allowing to cancel the request.
      */
-    public void post(String url, final JSONObject jsonBody, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
-        new HttpPost(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).post(url, jsonBody, null, trackHeadersKey, trackHeadersByGroup, networkResponse);
+    public Call post(String url, final JSONObject jsonBody, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
+        return post(url, jsonBody, null, trackHeadersKey, trackHeadersByGroup, null, networkResponse);
     }
 
     /**
@@ -106,15 +303,513 @@ public class HttpManager {
      * @param requestHeaders - Headers map. Will be attached to request. Can be null.
      * @param networkResponse - A callback interface returning either the server response or an error event. Can be null.
      * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @return - A handle allowing to cancel the request.
+     */
+    public Call post(String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
+        return post(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, null, networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, Map, String, String, NetworkResponse)} but allows setting the dispatch priority.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body (optional)
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param priority - Dispatch priority, see {@link RequestPriority}.
+     * @param networkResponse - A callback interface returning either the server response or an error event. Can be null.
+     * @return - A handle allowing to cancel the request.
+     */
+    public Call post(String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, int priority, HttpManager.NetworkResponse networkResponse) {
+        return post(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, new RequestOptions().setPriority(priority), networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, Map, String, String, NetworkResponse)} but allows per request settings, such as priority and deadline.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body (optional)
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @param networkResponse - A callback interface returning either the server response or an error event. Can be null.
+     * @return - A handle allowing to cancel the request. Null if there is no callback and the persistent POST queue took the request,
+     *           see {@link #enablePersistentPostQueue()}.
+     */
+    public Call post(String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, HttpManager.NetworkResponse networkResponse) {
+        PersistentPostQueue persistentPostQueue = mPersistentPostQueue;
+        if (networkResponse == null && persistentPostQueue != null) {
+            String body = jsonBody == null ? null : jsonBody.toString();
+            persistentPostQueue.post(new PersistentPostQueue.OutboundPost(url, body, false, requestHeaders, trackHeadersKey, trackHeadersByGroup, options != null && options.isGzipBody()), options);
+            return null;
+        }
+
+        return newHttpPost().post(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, NetworkResponse)} with a body that is already serialized, or a file.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param requestBody - Request body, written straight to the connection. See {@link RequestBody}.
+     * @param networkResponse - A callback interface returning either the server response or an error event. Can be null.
+     * @return - A handle allowing to cancel the request.
+     */
+    public Call post(String url, RequestBody requestBody, HttpManager.NetworkResponse networkResponse) {
+        return post(url, requestBody, null, null, null, null, networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, Map, String, String, RequestOptions, NetworkResponse)} with a {@link RequestBody}.
+     * Unlike json bodies, these are not journaled by the persistent POST queue.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param requestBody - Request body, written straight to the connection. See {@link RequestBody}.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @param networkResponse - A callback interface returning either the server response or an error event. Can be null.
+     * @return - A handle allowing to cancel the request.
+     */
+    public Call post(String url, RequestBody requestBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, HttpManager.NetworkResponse networkResponse) {
+        return newHttpPost().post(url, requestBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, networkResponse);
+    }
+
+    /**
+     * Fire-and-forget POST, buffered and sent together with other bodies for the same url as a single json array body.
+     * Use for chatty event streams, to pay one round trip per batch instead of one per event.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body, sent as one of the elements of the batch json array.
+     * @param maxBatchSize - Batch is sent once it holds this many bodies.
+     * @param maxBatchAgeMillis - Batch is sent at the latest this long after its first body was added.
+     */
+    public void postBatched(String url, JSONObject jsonBody, int maxBatchSize, long maxBatchAgeMillis) {
+        postBatched(url, jsonBody, null, null, null, maxBatchSize, maxBatchAgeMillis);
+    }
+
+    /**
+     * Same as {@link #postBatched(String, JSONObject, int, long)} but allows adding request headers and header tracking.
+     * Only bodies with the same url, headers and header tracking are batched together.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body, sent as one of the elements of the batch json array.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param maxBatchSize - Batch is sent once it holds this many bodies.
+     * @param maxBatchAgeMillis - Batch is sent at the latest this long after its first body was added.
+     */
+    public void postBatched(String url, JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, int maxBatchSize, long maxBatchAgeMillis) {
+        postBatched(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, maxBatchSize, maxBatchAgeMillis, false);
+    }
+
+    /**
+     * Same as {@link #postBatched(String, JSONObject, Map, String, String, int, long)}, optionally sending the batch gzipped.
+     * @param gzipBody - True to send the batch body with "Content-Encoding: gzip", see {@link RequestOptions#setGzipBody(boolean)}.
+     */
+    public void postBatched(String url, JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, int maxBatchSize, long maxBatchAgeMillis, boolean gzipBody) {
+        mPostBatcher.add(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, gzipBody, maxBatchSize, maxBatchAgeMillis);
+    }
+
+    /**
+     * Send all pending batched POSTs now, e.g. when the app goes to background.
+     */
+    public void flushBatchedPosts() {
+        mPostBatcher.flushAll();
+    }
+
+    /**
+     * Future based version of {@link #get(String, NetworkResponse)}, see {@link NetworkFuture} for composing requests.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @return - A future completed on the network worker thread. Canceling it cancels the request.
+     */
+    public NetworkFuture<HttpResponse> getAsync(String url) {
+        return getAsync(url, null, null, null, null);
+    }
+
+    /**
+     * Future based version of {@link #get(String, Map, String, String, RequestOptions, NetworkResponse)}, see {@link NetworkFuture} for composing requests.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @return - A future completed on the network worker thread. Canceling it cancels the request.
+     */
+    public NetworkFuture<HttpResponse> getAsync(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) {
+        NetworkFuture<HttpResponse> future = new NetworkFuture<>();
+        Call call = newHttpGet(CallbackExecutors.direct()).get(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, new FutureResponse(future));
+        future.setCancelAction(new CancelCall(call));
+        return future;
+    }
+
+    /**
+     * Future based version of {@link #post(String, JSONObject, NetworkResponse)}, see {@link NetworkFuture} for composing requests.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body (optional)
+     * @return - A future completed on the network worker thread. Canceling it cancels the request.
+     */
+    public NetworkFuture<HttpResponse> postAsync(String url, JSONObject jsonBody) {
+        return postAsync(url, jsonBody, null, null, null, null);
+    }
+
+    /**
+     * Future based version of {@link #post(String, JSONObject, Map, String, String, RequestOptions, NetworkResponse)}, see {@link NetworkFuture} for composing requests.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body (optional)
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @return - A future completed on the network worker thread. Canceling it cancels the request.
+     */
+    public NetworkFuture<HttpResponse> postAsync(String url, JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) {
+        NetworkFuture<HttpResponse> future = new NetworkFuture<>();
+        Call call = newHttpPost(CallbackExecutors.direct()).post(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, new FutureResponse(future));
+        future.setCancelAction(new CancelCall(call));
+        return future;
+    }
+
+    /**
+     * Future based version of {@link #post(String, RequestBody, Map, String, String, RequestOptions, NetworkResponse)}, see {@link NetworkFuture} for composing requests.
+     * @return - A future completed on the network worker thread. Canceling it cancels the request.
+     */
+    public NetworkFuture<HttpResponse> postAsync(String url, RequestBody requestBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) {
+        NetworkFuture<HttpResponse> future = new NetworkFuture<>();
+        Call call = newHttpPost(CallbackExecutors.direct()).post(url, requestBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, new FutureResponse(future));
+        future.setCancelAction(new CancelCall(call));
+        return future;
+    }
+
+    /**
+     * Blocking version of {@link #get(String, NetworkResponse)}. Runs on the calling thread, bypassing the {@link Dispatcher}.
+     * Must not be called from the main thread.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse getSync(String url) throws HttpException {
+        return getSync(url, null, null, null);
+    }
+
+    /**
+     * Blocking version of {@link #get(String, Map, String, String, NetworkResponse)}. Runs on the calling thread, bypassing the {@link Dispatcher}.
+     * Must not be called from the main thread.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse getSync(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup) throws HttpException {
+        return getSync(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, null);
+    }
+
+    /**
+     * Blocking version of {@link #get(String, Map, String, String, RequestOptions, NetworkResponse)}. Runs on the calling thread, bypassing the {@link Dispatcher},
+     * so the priority does not apply. The deadline caps connection timeouts and retry delays instead of aborting the blocked call.
+     * Must not be called from the main thread.
+     * @param url - The full url for the get request. Url must begin with http:// or https:// prefix.
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @param options - Per request settings, can be null.
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
      */
-    public void post(String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, HttpManager.NetworkResponse networkResponse) {
-        new HttpPost(mHeadersManager, mCookiesTracker, DEFAULT_TIMEOUT_MILLIS).post(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, networkResponse);
+    public HttpResponse getSync(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) throws HttpException {
+        return newHttpGet().getSync(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, options);
+    }
+
+    /**
+     * Blocking version of {@link #post(String, JSONObject, NetworkResponse)}. Runs on the calling thread, bypassing the {@link Dispatcher}.
+     * Must not be called from the main thread.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body (optional)
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse postSync(String url, JSONObject jsonBody) throws HttpException {
+        return postSync(url, jsonBody, null, null, null);
+    }
+
+    /**
+     * Blocking version of {@link #post(String, JSONObject, Map, String, String, NetworkResponse)}. Runs on the calling thread, bypassing the {@link Dispatcher}.
+     * Must not be called from the main thread.
+     * @param url - The full url for the post request. Url must begin with http:// or https:// prefix.
+     * @param jsonBody - Json body (optional)
+     * @param requestHeaders - Headers map. Will be attached to request. Can be null.
+     * @param trackHeadersByGroup - Headers handled according to this grouping. Can be null.
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse postSync(String url, JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup) throws HttpException {
+        return postSync(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, null);
+    }
+
+    /**
+     * Blocking version of {@link #post(String, JSONObject, Map, String, String, RequestOptions, NetworkResponse)}, see {@link #getSync(String, Map, String, String, RequestOptions)}.
+     * Never goes through the persistent POST queue. Must not be called from the main thread.
+     * @param options - Per request settings, can be null.
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse postSync(String url, JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) throws HttpException {
+        return newHttpPost().postSync(url, jsonBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options);
+    }
+
+    /**
+     * Blocking version of {@link #post(String, RequestBody, Map, String, String, RequestOptions, NetworkResponse)}, see {@link #getSync(String, Map, String, String, RequestOptions)}.
+     * Must not be called from the main thread.
+     * @param options - Per request settings, can be null.
+     * @return - The server response.
+     * @throws HttpException - Carrying the {@link HttpError} describing why the request failed.
+     */
+    public HttpResponse postSync(String url, RequestBody requestBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) throws HttpException {
+        return newHttpPost().postSync(url, requestBody, requestHeaders, trackHeadersKey, trackHeadersByGroup, options);
+    }
+
+    /**
+     * @return - The Dispatcher running all requests of this manager. Use it to tune concurrency or read queue stats.
+     */
+    public Dispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    /**
+     * Set where NetworkResponse callbacks of following requests run. See {@link CallbackExecutors} for the common choices:
+     * - {@link CallbackExecutors#direct()} - On the network worker thread, no thread hop at all.
+     * - {@link CallbackExecutors#mainThread()} - On the main thread, bursts of responses are batched into a single Handler post.
+     * - Any caller supplied Executor.
+     * @param callbackExecutor - Null restores the default: the Looper of the calling thread, main thread if it has none.
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * @return - Where callbacks of a request made now, from the calling thread, run. See {@link #setCallbackExecutor(Executor)}.
+     */
+    public Executor getCallbackExecutor() {
+        Executor callbackExecutor = mCallbackExecutor;
+        return callbackExecutor != null ? callbackExecutor : CallbackExecutors.callingThread();
+    }
+
+    /**
+     * Identical GET requests (same url, headers and header tracking group) made while one of them is in flight
+     * share its single network call, every callback receives the same response. Enabled by default.
+     * @param enabled - False to always open a separate connection per GET request.
+     */
+    public void setRequestCoalescingEnabled(boolean enabled) {
+        mRequestCoalescer.setEnabled(enabled);
+    }
+
+    /**
+     * Retry failed requests of this manager according to retryPolicy. Can be overridden per request, see {@link RequestOptions#setRetryPolicy(RetryPolicy)}.
+     * @param retryPolicy - Null to disable retries (default).
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * Limit retries of all requests of this manager to a share of its traffic, so a failing server is not flooded by retries.
+     * @param retryRatio - Retries earned by each request, e.g. 0.1 allows about one retry per 10 requests. Default 0.1.
+     * @param maxRetryBurst - Max retries that can be saved up while things go well. Default 10.
+     */
+    public void setRetryBudget(double retryRatio, int maxRetryBurst) {
+        mRetryBudget.configure(retryRatio, maxRetryBurst);
+    }
+
+    /**
+     * Track failures per host. Once most recent requests to a host fail (IO failures, timeouts or 5xx responses),
+     * requests to it fail fast with {@link HttpError#CODE_CIRCUIT_OPEN} for a while instead of each waiting out its timeout.
+     * A single probe request is then let through, its success resumes normal traffic. Disabled by default.
+     * @param enabled - True to enable for following requests.
+     */
+    public synchronized void setCircuitBreakerEnabled(boolean enabled) {
+        if (!enabled) {
+            mCircuitBreaker = null;
+        } else if (mCircuitBreaker == null) {
+            mCircuitBreaker = new CircuitBreaker();
+        }
+    }
+
+    /**
+     * Hedge slow GET requests of this manager: a duplicate is sent if there is no response after a delay based on the host's
+     * recent latency, the first response wins. Can be overridden per request, see {@link RequestOptions#setHedgingPolicy(HedgingPolicy)}.
+     * @param hedgingPolicy - Null to disable hedging (default).
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        mHedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Redirects are followed by this client, up to maxRedirects hops per request, after which the request fails with
+     * {@link HttpError#CODE_TOO_MANY_REDIRECTS}. Permanent redirects (301, 308) are remembered in memory, later requests
+     * to a moved url go straight to its new location.
+     * @param maxRedirects - Max redirects followed per request, 0 to fail on any redirect. Default is 10.
+     */
+    public void setMaxRedirects(int maxRedirects) {
+        if (maxRedirects < 0) {
+            throw new IllegalArgumentException("HttpManager | setMaxRedirects | maxRedirects cannot be negative, got: " + maxRedirects);
+        }
+
+        mMaxRedirects = maxRedirects;
+    }
+
+    /**
+     * Replace the response cache installed by the constructor (10MB in the app cache directory). Per request use of the
+     * cache is set by {@link RequestOptions#setCachePolicy(CachePolicy)}.
+     * Note: The cache is process wide, it serves all HttpManager instances and any other HttpURLConnection user of the app.
+     * @param directory - Where responses are stored, should be private to the app, e.g. under {@link Context#getCacheDir()}.
+     * @param maxSizeBytes - Least recently used responses are evicted above this size.
+     * @return - False if the cache could not be installed, requests then go to the network only.
+     */
+    public boolean setCache(File directory, long maxSizeBytes) {
+        if (directory == null || maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("HttpManager | setCache | directory cannot be null and maxSizeBytes must be positive, got: " + maxSizeBytes);
+        }
+
+        return installCache(directory, maxSizeBytes);
+    }
+
+    /**
+     * Keep recent fresh GET responses in memory, in front of the disk cache, so repeated requests for them are answered
+     * without a connection, disk read or queueing. Only 200 responses the server declared fresh (Cache-Control max-age or Expires)
+     * are kept, keyed by their final url, and only while fresh. Disabled by default.
+     * Note: Responses are shared by all callers of the same url, their body must not be modified.
+     * @param maxBytes - Estimated memory the cache may hold, 0 to disable it. Replacing the size starts an empty cache.
+     */
+    public synchronized void setMemoryCacheMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("HttpManager | setMemoryCacheMaxBytes | maxBytes cannot be negative, got: " + maxBytes);
+        }
+
+        mMemoryCache = maxBytes == 0 ? null : new MemoryCache(maxBytes);
+    }
+
+    /**
+     * @return - Hits, misses and evictions of the memory cache, see {@link #setMemoryCacheMaxBytes(long)}. Null when disabled.
+     */
+    public synchronized MemoryCacheStats getMemoryCacheStats() {
+        return mMemoryCache != null ? mMemoryCache.getStats() : null;
+    }
+
+    /**
+     * Open a keep-alive connection to the host of url in the background, so the next request to it skips DNS, TCP and TLS handshakes.
+     * Sent as a low priority HEAD request, hosts already warm or being warmed are skipped. See {@link #getPrewarmStats()} for whether it paid off.
+     * @param url - Any url of the host, e.g. the base url of an api. Url must begin with http:// or https:// prefix.
+     */
+    public void prewarm(String url) {
+        final String host = Dispatcher.getHost(url);
+        if (!mConnectionPrewarmer.startPrewarm(host)) {
+            return;
+        }
+
+        HttpHead httpHead = new HttpHead(mHeadersManager, mCookiesTracker, mDispatcher, CallbackExecutors.direct(), DEFAULT_TIMEOUT_MILLIS);
+        httpHead.mCircuitBreaker = mCircuitBreaker;
+        httpHead.mLatencyTracker = mLatencyTracker;
+        httpHead.head(url, new RequestOptions().setPriority(RequestPriority.LOW), new NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                mConnectionPrewarmer.onPrewarmed(host);
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                //Server answered with an error, the connection is open nonetheless.
+                if (error.mCode > 0) {
+                    mConnectionPrewarmer.onPrewarmed(host);
+                } else {
+                    mConnectionPrewarmer.onPrewarmFailed(host);
+                    Log.d(TAG, "prewarm | Failed opening connection to " + host + ", " + error);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return - How many prewarmed connections were opened, and how many were reused by a following request.
+     */
+    public PrewarmStats getPrewarmStats() {
+        return mConnectionPrewarmer.getStats();
+    }
+
+    /**
+     * Fire-and-forget POSTs (no callback, batched ones included) that fail to reach the server are kept in a journal file
+     * and replayed once the device is connected. While offline they are journaled without trying the network at all.
+     * Delivery is at-least-once and may differ from call order, a POST whose response was lost is sent again.
+     * Disabled by default. Replay uses ACCESS_NETWORK_STATE to detect connectivity when granted.
+     * Note: Fire-and-forget POSTs then return no {@link Call}, they cannot be canceled.
+     */
+    public void enablePersistentPostQueue() {
+        enablePersistentPostQueue(DEFAULT_PERSISTENT_POST_QUEUE_MAX_BYTES);
+    }
+
+    /**
+     * Same as {@link #enablePersistentPostQueue()} with a custom journal size.
+     * @param maxJournalBytes - Max size of the journal file. Once full, the oldest POSTs are dropped. Must be positive.
+     */
+    public synchronized void enablePersistentPostQueue(long maxJournalBytes) {
+        if (maxJournalBytes <= 0) {
+            throw new IllegalArgumentException("HttpManager | enablePersistentPostQueue | maxJournalBytes must be positive, got: " + maxJournalBytes);
+        }
+
+        if (mPersistentPostQueue != null) {
+            Log.e(TAG, "enablePersistentPostQueue | Already enabled, ignoring.");
+            return;
+        }
+
+        mPersistentPostQueue = new PersistentPostQueue(mContext, maxJournalBytes, new PersistentPostQueue.PostSender() {
+            @Override
+            public void send(PersistentPostQueue.OutboundPost post, RequestOptions options, NetworkResponse networkResponse) {
+                //Outcome is handled by the queue itself, on the worker thread.
+                HttpPost httpPost = newHttpPost(CallbackExecutors.direct());
+                httpPost.setGzipBody(post.mGzipBody);
+                try {
+                    if (post.mBody == null) {
+                        httpPost.post(post.mUrl, (JSONObject) null, post.mRequestHeaders, post.mTrackHeadersKey, post.mTrackHeadersByGroup, options, networkResponse);
+                    } else if (post.mIsJsonArrayBody) {
+                        httpPost.post(post.mUrl, new JSONArray(post.mBody), post.mRequestHeaders, post.mTrackHeadersKey, post.mTrackHeadersByGroup, options, networkResponse);
+                    } else {
+                        httpPost.post(post.mUrl, new JSONObject(post.mBody), post.mRequestHeaders, post.mTrackHeadersKey, post.mTrackHeadersByGroup, options, networkResponse);
+                    }
+                } catch (JSONException e) {
+                    networkResponse.onError(new HttpError(HttpError.CODE_PROCESSING_FAILED, "Cannot parse journaled body: " + e.getLocalizedMessage()));
+                }
+            }
+        });
     }
 
     /***********
      * PRIVATE *
      ***********/
 
+    private HttpGet newHttpGet() {
+        return newHttpGet(mCallbackExecutor);
+    }
+
+    private HttpGet newHttpGet(Executor callbackExecutor) {
+        HttpGet httpGet = new HttpGet(mHeadersManager, mCookiesTracker, mDispatcher, callbackExecutor, mRequestCoalescer, DEFAULT_TIMEOUT_MILLIS);
+        httpGet.mRetryPolicy = mRetryPolicy;
+        httpGet.mRetryBudget = mRetryBudget;
+        httpGet.mCircuitBreaker = mCircuitBreaker;
+        httpGet.mHedgingPolicy = mHedgingPolicy;
+        httpGet.mLatencyTracker = mLatencyTracker;
+        httpGet.mPrewarmer = mConnectionPrewarmer;
+        httpGet.mMaxRedirects = mMaxRedirects;
+        httpGet.mRedirectCache = mRedirectCache;
+        httpGet.mMemoryCache = mMemoryCache;
+        return httpGet;
+    }
+
+    private HttpPost newHttpPost() {
+        return newHttpPost(mCallbackExecutor);
+    }
+
+    private HttpPost newHttpPost(Executor callbackExecutor) {
+        HttpPost httpPost = new HttpPost(mHeadersManager, mCookiesTracker, mDispatcher, callbackExecutor, DEFAULT_TIMEOUT_MILLIS);
+        httpPost.mRetryPolicy = mRetryPolicy;
+        httpPost.mRetryBudget = mRetryBudget;
+        httpPost.mCircuitBreaker = mCircuitBreaker;
+        httpPost.mPrewarmer = mConnectionPrewarmer;
+        httpPost.mMaxRedirects = mMaxRedirects;
+        httpPost.mRedirectCache = mRedirectCache;
+        return httpPost;
+    }
+
     /**
      * Allow automatic caching of HTTP requests.
      * Note: Adding cache after max size reached will override oldest cache.
@@ -125,13 +820,19 @@ public class HttpManager {
      */
     private void setupCache(Context context) {
         try {
-            File httpCacheDir = new File(context.getCacheDir(), "http");
-            long httpCacheSize = MAX_HTTP_RESPONSE_CACHE_SIZE_MB * 1024 * 1024;
-            HttpResponseCache.install(httpCacheDir, httpCacheSize);
+            installCache(new File(context.getCacheDir(), "http"), MAX_HTTP_RESPONSE_CACHE_SIZE_MB * 1024 * 1024);
         } catch (NullPointerException npe) {
             Log.e(TAG, "Cannot define cache size: " + npe.getLocalizedMessage());
+        }
+    }
+
+    private boolean installCache(File directory, long maxSizeBytes) {
+        try {
+            HttpResponseCache.install(directory, maxSizeBytes);
+            return true;
         } catch (IOException e) {
             Log.e(TAG, "HTTP response cache installation failed:" + e);
+            return false;
         }
     }
 
@@ -144,4 +845,156 @@ public class HttpManager {
         void onError(HttpError error);
     }
 
+    /**
+     * Callbacks run on the network worker thread, holding a {@link Dispatcher} slot while the body is read.
+     */
+    public interface StreamingNetworkResponse {
+        /**
+         * Read the body here, it is closed once this method returns.
+         * @param response - Status code and headers, getMessage() is null.
+         * @throws IOException - Reading the body failed, onError() follows with {@link HttpError#CODE_IO_FAILURE}.
+         */
+        void onResponse(HttpResponse response, ResponseBody body) throws IOException;
+
+        /**
+         * Request failed, or reading the body failed. May run on another thread than onResponse() if the deadline passes while reading.
+         */
+        void onError(HttpError error);
+    }
+
+    /**
+     * Callbacks run on the network worker thread, holding a {@link Dispatcher} slot while the body is read.
+     */
+    public interface ChunkedNetworkResponse {
+        /**
+         * @param chunk - Body bytes, valid only during this call, the buffer is reused for the next chunk.
+         * @param length - Number of valid bytes in chunk.
+         */
+        void onChunk(byte[] chunk, int length);
+
+        /**
+         * Whole body was handed to onChunk().
+         * @param response - Status code and headers, getMessage() is null.
+         */
+        void onComplete(HttpResponse response);
+
+        void onError(HttpError error);
+    }
+
+    /**
+     * Callbacks run on the network worker thread, holding a {@link Dispatcher} slot while the file is downloaded.
+     */
+    public interface DownloadNetworkResponse {
+        /**
+         * Called when the body starts, about every 64KB, and once all bytes were written.
+         * @param downloadedBytes - Bytes in the file so far, including those of a resumed partial download.
+         * @param totalBytes - Size of the whole file, {@link ResponseBody#UNKNOWN_LENGTH} if the server did not send it.
+         */
+        void onProgress(long downloadedBytes, long totalBytes);
+
+        /**
+         * @param file - The downloaded file.
+         * @param response - Status code and headers, getMessage() is null.
+         */
+        void onComplete(File file, HttpResponse response);
+
+        /**
+         * @param error - {@link HttpError#CODE_IO_FAILURE} if the connection broke, the download can then be resumed.
+         */
+        void onError(HttpError error);
+    }
+
+    /**
+     * Callbacks run on the network worker thread, holding a {@link Dispatcher} slot while the body is read.
+     * An invalid body fails the request with {@link HttpError#CODE_PROCESSING_FAILED}, possibly after some elements were delivered.
+     */
+    public interface JsonArrayNetworkResponse {
+        /**
+         * @param element - Next array element: JSONObject, JSONArray, String, Boolean, Long, Double or JSONObject.NULL.
+         */
+        void onElement(Object element);
+
+        /**
+         * All array elements were handed to onElement().
+         * @param response - Status code and headers, getMessage() is null.
+         */
+        void onComplete(HttpResponse response);
+
+        void onError(HttpError error);
+    }
+
+    /**
+     * Completes a NetworkFuture with the outcome of a request.
+     */
+    private static class FutureResponse implements NetworkResponse {
+        private final NetworkFuture<HttpResponse> mFuture;
+
+        FutureResponse(NetworkFuture<HttpResponse> future) {
+            mFuture = future;
+        }
+
+        @Override
+        public void onResponse(HttpResponse response) {
+            mFuture.complete(response);
+        }
+
+        @Override
+        public void onError(HttpError error) {
+            mFuture.fail(error);
+        }
+    }
+
+    /**
+     * Reads a streamed body into a single reused chunk buffer.
+     */
+    private static class ChunkingResponse implements StreamingNetworkResponse {
+        private final int mChunkSizeBytes;
+        private final ChunkedNetworkResponse mChunkedResponse;
+
+        ChunkingResponse(int chunkSizeBytes, ChunkedNetworkResponse chunkedResponse) {
+            mChunkSizeBytes = chunkSizeBytes;
+            mChunkedResponse = chunkedResponse;
+        }
+
+        @Override
+        public void onResponse(HttpResponse response, ResponseBody body) throws IOException {
+            InputStream inputStream = body.getByteStream();
+            byte[] chunk = new byte[mChunkSizeBytes];
+            int length = 0;
+            int read;
+
+            //Fill whole chunks, streams may return a few bytes at a time.
+            while ((read = inputStream.read(chunk, length, mChunkSizeBytes - length)) != -1) {
+                length += read;
+                if (length == mChunkSizeBytes) {
+                    mChunkedResponse.onChunk(chunk, length);
+                    length = 0;
+                }
+            }
+
+            if (length > 0) {
+                mChunkedResponse.onChunk(chunk, length);
+            }
+            mChunkedResponse.onComplete(response);
+        }
+
+        @Override
+        public void onError(HttpError error) {
+            mChunkedResponse.onError(error);
+        }
+    }
+
+    private static class CancelCall implements Runnable {
+        private final Call mCall;
+
+        CancelCall(Call call) {
+            mCall = call;
+        }
+
+        @Override
+        public void run() {
+            mCall.cancel();
+        }
+    }
+
 }
\ No newline at end of file
@@ -1,18 +1,31 @@
 package com.taboola.lightnetwork.protocols.http;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
 
 
 class HttpPost extends HttpRequest {
+    private static final String CONTENT_TYPE_PROPERTY = "Content-Type";
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+    private static final String CONTENT_ENCODING_PROPERTY = "Content-Encoding";
+    private static final String GZIP_ENCODING = "gzip";
+
     private JSONObject mJsonBody;
+    private JSONArray mJsonArrayBody; //Used instead of mJsonBody for batched bodies.
+    private RequestBody mRequestBody; //Used instead of json bodies for content already serialized.
+    private boolean mGzipBody;
+    private byte[] mEncodedBody; //Body as sent, encoded once and reused by retries.
 
-    public HttpPost(HeadersManager headersManager, CookiesTracker cookiesTracker, int configuredTimeout) {
-        super(configuredTimeout, headersManager, cookiesTracker);
+    public HttpPost(HeadersManager headersManager, CookiesTracker cookiesTracker, Dispatcher dispatcher, Executor callbackExecutor, int configuredTimeout) {
+        super(configuredTimeout, headersManager, cookiesTracker, dispatcher, callbackExecutor);
     }
 
     /**
@@ -20,32 +33,183 @@ class HttpPost extends HttpRequest {
      * @param url - The end point for the request.
      * @param jsonBody - Json body (optional)
      * @param trackHeadersByGroup - Headers handled according to this grouping.
+     * @param options - Per request settings, can be null.
      * @param networkResponse - A callback listener for the response.
+     * @return - A handle allowing to cancel the request.
      */
-    void post(final String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, final HttpManager.NetworkResponse networkResponse) {
+    Call post(final String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, final HttpManager.NetworkResponse networkResponse) {
         mUrl = url;
         mJsonBody = jsonBody;
         mRequestHeaders = requestHeaders;
         mTrackHeadersByGroup = trackHeadersByGroup;
         mTrackHeadersKey = trackHeadersKey;
-        performRequsetOnBackgroundThread(networkResponse);
+        applyOptions(options);
+        return performRequsetOnBackgroundThread(networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, Map, String, String, RequestOptions, HttpManager.NetworkResponse)} with a json array body.
+     */
+    Call post(final String url, final JSONArray jsonArrayBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, final HttpManager.NetworkResponse networkResponse) {
+        mJsonArrayBody = jsonArrayBody;
+        return post(url, (JSONObject) null, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, Map, String, String, RequestOptions, HttpManager.NetworkResponse)} with a {@link RequestBody}.
+     */
+    Call post(final String url, final RequestBody requestBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options, final HttpManager.NetworkResponse networkResponse) {
+        mRequestBody = requestBody;
+        return post(url, (JSONObject) null, requestHeaders, trackHeadersKey, trackHeadersByGroup, options, networkResponse);
+    }
+
+    /**
+     * Same as {@link #post(String, JSONObject, Map, String, String, RequestOptions, HttpManager.NetworkResponse)} but blocks the calling thread.
+     * @return - The server response.
+     * @throws HttpException - Describing why the request failed.
+     */
+    HttpResponse postSync(final String url, final JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) throws HttpException {
+        mUrl = url;
+        mJsonBody = jsonBody;
+        mRequestHeaders = requestHeaders;
+        mTrackHeadersByGroup = trackHeadersByGroup;
+        mTrackHeadersKey = trackHeadersKey;
+        applyOptions(options);
+        return performRequestSync();
+    }
+
+    /**
+     * Same as {@link #postSync(String, JSONObject, Map, String, String, RequestOptions)} with a {@link RequestBody}.
+     */
+    HttpResponse postSync(final String url, final RequestBody requestBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, RequestOptions options) throws HttpException {
+        mRequestBody = requestBody;
+        return postSync(url, (JSONObject) null, requestHeaders, trackHeadersKey, trackHeadersByGroup, options);
+    }
+
+    /**
+     * @param gzipBody - True to send the body compressed, with "Content-Encoding: gzip". The server must support it.
+     */
+    void setGzipBody(boolean gzipBody) {
+        mGzipBody = gzipBody;
+    }
+
+    @Override
+    void applyOptions(RequestOptions options) {
+        super.applyOptions(options);
+        if (options != null && options.isGzipBody()) {
+            mGzipBody = true;
+        }
+    }
+
+    @Override
+    boolean sendsBody() {
+        return !mRedirectedToGet;
     }
 
     void protocolSpecificConnectionSetup(HttpURLConnection httpUrlConnection) throws IOException {
+        if (mRedirectedToGet) { //Body was for the original url only.
+            httpUrlConnection.setRequestMethod("GET");
+            return;
+        }
+
         httpUrlConnection.setRequestMethod("POST");
         httpUrlConnection.setDoInput(true);
         httpUrlConnection.setDoOutput(true);
 
-        //Add json body to request
-        addJsonBody(httpUrlConnection);
+        //Add body to request
+        if (mRequestBody != null) {
+            addRequestBody(httpUrlConnection);
+        } else {
+            addJsonBody(httpUrlConnection);
+        }
     }
 
     private void addJsonBody(HttpURLConnection httpUrlConnection) throws IOException {
+        byte[] body = getEncodedBody();
+        if (body == null) {
+            return;
+        }
+
+        if (httpUrlConnection.getRequestProperty(CONTENT_TYPE_PROPERTY) == null) {
+            httpUrlConnection.setRequestProperty(CONTENT_TYPE_PROPERTY, JSON_CONTENT_TYPE);
+        }
+        if (mGzipBody) {
+            httpUrlConnection.setRequestProperty(CONTENT_ENCODING_PROPERTY, GZIP_ENCODING);
+        }
+
+        //Length is known up front, so the body is streamed as is instead of being buffered again by the connection.
+        httpUrlConnection.setFixedLengthStreamingMode(body.length);
+        OutputStream outputStream = httpUrlConnection.getOutputStream();
+        try {
+            outputStream.write(body);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Writes mRequestBody straight to the connection. Gzipped or unknown length bodies are sent chunked,
+     * so they are never held in memory as a whole.
+     */
+    private void addRequestBody(HttpURLConnection httpUrlConnection) throws IOException {
+        String contentType = mRequestBody.getContentType();
+        if (contentType != null && httpUrlConnection.getRequestProperty(CONTENT_TYPE_PROPERTY) == null) {
+            httpUrlConnection.setRequestProperty(CONTENT_TYPE_PROPERTY, contentType);
+        }
+
+        long contentLength = mRequestBody.getContentLength();
+        if (mGzipBody) {
+            httpUrlConnection.setRequestProperty(CONTENT_ENCODING_PROPERTY, GZIP_ENCODING);
+            httpUrlConnection.setChunkedStreamingMode(0);
+        } else if (contentLength == RequestBody.UNKNOWN_LENGTH || contentLength > Integer.MAX_VALUE) { //Long lengths need API 19.
+            httpUrlConnection.setChunkedStreamingMode(0);
+        } else {
+            httpUrlConnection.setFixedLengthStreamingMode((int) contentLength);
+        }
+
+        OutputStream outputStream = httpUrlConnection.getOutputStream();
+        if (mGzipBody) {
+            outputStream = new GZIPOutputStream(outputStream, ByteArrayPool.BUFFER_SIZE_BYTES);
+        }
+        try {
+            mRequestBody.writeTo(outputStream);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * @return - The body as UTF-8 bytes, gzipped if required. Null if there is no body.
+     */
+    private byte[] getEncodedBody() throws IOException {
+        if (mEncodedBody != null) {
+            return mEncodedBody;
+        }
+
+        String body = null;
         if (mJsonBody != null && mJsonBody.length() > 0) {
-            DataOutputStream writer = new DataOutputStream(httpUrlConnection.getOutputStream());
-            writer.writeBytes(mJsonBody.toString());
-            writer.flush();
-            writer.close();
+            body = mJsonBody.toString();
+        } else if (mJsonArrayBody != null && mJsonArrayBody.length() > 0) {
+            body = mJsonArrayBody.toString();
+        }
+
+        if (body == null) {
+            return null;
+        }
+
+        byte[] encodedBody = body.getBytes("UTF-8");
+        mEncodedBody = mGzipBody ? gzip(encodedBody) : encodedBody;
+        return mEncodedBody;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length / 4 + 64); //Json usually compresses to well under a quarter.
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        try {
+            gzipOutputStream.write(body);
+        } finally {
+            gzipOutputStream.close();
         }
+        return outputStream.toByteArray();
     }
 }
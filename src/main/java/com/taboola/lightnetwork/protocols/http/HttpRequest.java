@@ -1,63 +1,684 @@
 package com.taboola.lightnetwork.protocols.http;
 
-import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.ref.WeakReference;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.text.Normalizer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import javax.net.ssl.HttpsURLConnection;
 
 abstract class HttpRequest {
     private static final String TAG = HttpRequest.class.getSimpleName();
     private static final String HEADER_FIELD_LOCATION = "Location"; //When server expects redirect, it mentions new url in a tag called Location.
+    private static final String HEADER_FIELD_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_FIELD_WARNING = "Warning";
+    private static final String WARNING_RESPONSE_IS_STALE = "110"; //Added by the response cache to stale stored responses it returns.
+    private static final String REVALIDATE_CACHE_CONTROL = "max-age=0"; //Stored response counts as stale, the cache sends a conditional request.
+    private static final String HEADER_FIELD_RETRY_AFTER = "Retry-After"; //Seconds or an http date, sent with 429 and 503 responses.
+    static final long NO_RETRY = -1;
+    private static final int ERROR_BODY_DRAIN_BUFFER_BYTES = 2048;
+    private static final long MAX_ERROR_BODY_DRAIN_BYTES = 64 * 1024;
+    private static final long MAX_PRESIZED_BODY_BYTES = 4 * ByteArrayPool.BUFFER_SIZE_BYTES; //Larger bodies grow as their bytes arrive, Content-Length is not trusted for one allocation.
+    private static final byte[] NO_BODY = new byte[0];
+    private static final String CHARSET_PARAMETER = "charset=";
+    private static final Set<String> sRevalidatingUrls = new HashSet<>(); //Revalidations in flight, the response cache is process wide. Guarded by itself.
+    static final int DEFAULT_MAX_REDIRECTS = 10;
+    private static final int HTTP_TEMPORARY_REDIRECT = 307; //No constant in HttpURLConnection.
+    private static final int HTTP_PERMANENT_REDIRECT = 308; //No constant in HttpURLConnection.
 
-    private int mConfiguredTimeout;
-    private HeadersManager mHeadersManager;
-    private CookiesTracker mCookiesTracker;
-    private WeakReference<Looper> mOriginalLooper; //Looper from thread that created the
+    int mConfiguredTimeout;
+    HeadersManager mHeadersManager;
+    CookiesTracker mCookiesTracker;
+    Dispatcher mDispatcher;
+    private Executor mCallbackExecutor; //Where callbacks run. Null means the calling thread, resolved on enqueue.
+    private HttpManager.NetworkResponse mNetworkResponse;
+
+    //Lifecycle
+    private final Object mStateLock = new Object();
+    private boolean mDone; //Outcome delivered, canceled or deadline exceeded. Guarded by mStateLock.
+    private Future<?> mDeadlineTask; //Guarded by mStateLock.
+    private boolean mCallbackStarted; //Callback began running, too late to cancel it. Guarded by mStateLock.
+    private volatile HttpURLConnection mConnection; //Current connection, so it can be closed from another thread.
+    volatile boolean mCanceled; //Canceled by caller, callback must not be called.
+    volatile boolean mAborted; //Network work no longer needed by anyone, stop as soon as possible.
 
     Map<String, String> mRequestHeaders;
     String mUrl;
+    String mOriginalUrl; //mUrl changes while following redirects.
+
+    //Redirects, followed here rather than by HttpURLConnection, so hops are bounded and permanent ones remembered
+    int mMaxRedirects = DEFAULT_MAX_REDIRECTS;
+    RedirectCache mRedirectCache; //Null to not remember permanent redirects.
+    boolean mRedirectedToGet; //A 301, 302 or 303 turned this request into a GET without body, as browsers do.
+    private boolean mLeftRequestHost; //A redirect went to another host, caller and tracked headers are no longer sent.
+    int mPriority = RequestPriority.NORMAL; //See RequestPriority.
+    String mDispatchHost; //Host this request counts against in the Dispatcher, set on enqueue.
+    long mDeadlineMillis = RequestOptions.NO_DEADLINE;
+    private long mDeadlineAtMillis; //On the SystemClock.elapsedRealtime() clock.
+
+    //Retries
+    RetryPolicy mRetryPolicy; //Null for no retries.
+    RetryBudget mRetryBudget; //Shared by all requests of an HttpManager.
+    private int mRetriesDone;
+    private long mLastRetryDelayMillis;
+    private long mRetryAfterMillis = NO_RETRY; //Retry-After of the last error response.
+    private long mPendingRetryDelayMillis = NO_RETRY; //Set when the attempt that just ran should be retried.
+
+    CircuitBreaker mCircuitBreaker; //Null when disabled.
+
+    //Hedging, only for idempotent requests
+    HedgingPolicy mHedgingPolicy; //Null for no hedging.
+    LatencyTracker mLatencyTracker; //Time to first byte per host, shared by all requests of an HttpManager.
+    private volatile boolean mFirstByteReceived;
+    private boolean mHedgeScheduled;
+    private HttpRequest mHedge; //Duplicate racing this request. Guarded by mStateLock.
+    private boolean mDeferredToHedge; //This request failed, the hedge's outcome decides. Guarded by mStateLock.
+    private boolean mWonByHedge; //Hedge's response was returned for this request, its own outcome is ignored. Guarded by mStateLock.
+    HttpRequest mHedgedPrimary; //Set on a hedge, the request it races for.
+
+    ConnectionPrewarmer mPrewarmer; //Told about every connect, to measure prewarming hits.
+
+    //Response cache
+    CachePolicy mCachePolicy; //Null to follow the server caching headers only.
+    boolean mRevalidation; //Background refresh of a stale stored response.
+    boolean mCacheChecked; //Stale-while-revalidate lookup done, later attempts go to the network.
+    private boolean mCacheOnly; //Current hop is answered by the response cache alone, the host is not contacted.
+    MemoryCache mMemoryCache; //Null when disabled. Only set on GET requests that read the whole body.
+
+    //Streaming, body handed to the caller as a stream instead of being read into memory
+    HttpManager.StreamingNetworkResponse mStreamingResponse;
+    private boolean mBodyStreamed; //Body handed to mStreamingResponse, the request cannot be repeated anymore.
+
+    //Coalescing, only set for request types that can be safely shared
+    RequestCoalescer mCoalescer;
+    String mCoalescingKey; //Set while this request leads identical in-flight requests. Guarded by mCoalescer.
+    List<HttpRequest> mFollowers; //Identical requests waiting for this one's outcome. Guarded by mCoalescer.
+    HttpRequest mLeader; //Set while this request waits for an identical in-flight one. Guarded by mCoalescer.
 
     //CookieTracking
     String mTrackHeadersByGroup; //If not empty, headers will be re-sent to server in annotated requests (grouped by mTrackHeadersByGroup value).
     String mTrackHeadersKey; //The headers key to process group tracking
 
-    public HttpRequest(int configuredTimeout, HeadersManager headersManager, CookiesTracker cookiesTracker) {
+    public HttpRequest(int configuredTimeout, HeadersManager headersManager, CookiesTracker cookiesTracker, Dispatcher dispatcher, Executor callbackExecutor) {
         mConfiguredTimeout = configuredTimeout;
         mHeadersManager = headersManager;
         mCookiesTracker = cookiesTracker;
+        mDispatcher = dispatcher;
+        mCallbackExecutor = callbackExecutor;
     }
 
-    void performRequsetOnBackgroundThread(final HttpManager.NetworkResponse networkResponse) {
-        //Remember calling thread's Looper.
-        mOriginalLooper = new WeakReference<>(Looper.myLooper());
+    void applyOptions(RequestOptions options) {
+        if (options != null) {
+            mPriority = options.getPriority();
+            mDeadlineMillis = options.getDeadlineMillis();
+            if (options.getRetryPolicy() != null) {
+                mRetryPolicy = options.getRetryPolicy();
+            }
+            if (options.getHedgingPolicy() != null) {
+                mHedgingPolicy = options.getHedgingPolicy();
+            }
+            mCachePolicy = options.getCachePolicy();
+        }
+    }
+
+    /**
+     * Hands the request to the shared {@link Dispatcher}, network always runs on one of its worker threads.
+     * @return - A handle allowing to cancel the request.
+     */
+    Call performRequsetOnBackgroundThread(final HttpManager.NetworkResponse networkResponse) {
+        //Remember calling thread's Looper, if callbacks should return to it.
+        if (mCallbackExecutor == null) {
+            mCallbackExecutor = CallbackExecutors.callingThread();
+        }
+        mNetworkResponse = networkResponse;
+        mOriginalUrl = mUrl;
+        Call call = new Call(this);
+
+        //Fresh response held in memory, no connection and no Dispatcher round needed.
+        HttpResponse memoryResponse = getFromMemoryCache();
+        if (memoryResponse != null) {
+            Log.v(TAG, "HttpRequest | memory cache hit, url = " + mUrl);
+            if (markDone()) {
+                deliverResponse(mNetworkResponse, memoryResponse);
+            }
+            return call;
+        }
+
+        if (mRetryBudget != null) {
+            mRetryBudget.onRequest();
+        }
+
+        scheduleDeadline();
+
+        //An identical request is already in flight, its outcome will be delivered to this one as well.
+        if (mCoalescer != null && mCoalescer.attachOrLead(getCoalescingKey(), this)) {
+            Log.v(TAG, "HttpRequest | coalesced with in-flight request, url = " + mUrl);
+            return call;
+        }
 
-        //Run network on background thread.
+        mDispatcher.enqueue(this);
+        return call;
+    }
+
+    /**
+     * See {@link Call#cancel()}.
+     */
+    void cancel() {
+        if (!markDone()) {
+            //Outcome already known, but its callback may still be waiting for the callback thread.
+            synchronized (mStateLock) {
+                if (!mCallbackStarted) {
+                    mCanceled = true;
+                }
+            }
+            return;
+        }
+
+        mCanceled = true;
+        Log.v(TAG, "HttpRequest | canceled, url = " + mOriginalUrl);
+        stopNetworkIfUnshared();
+    }
+
+    private void scheduleDeadline() {
+        if (mDeadlineMillis == RequestOptions.NO_DEADLINE) {
+            return;
+        }
+
+        mDeadlineAtMillis = SystemClock.elapsedRealtime() + mDeadlineMillis;
+        Future<?> deadlineTask = Dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                onDeadlineExceeded();
+            }
+        }, mDeadlineMillis);
+
+        synchronized (mStateLock) {
+            if (mDone) {
+                deadlineTask.cancel(false);
+            } else {
+                mDeadlineTask = deadlineTask;
+            }
+        }
+    }
+
+    private void onDeadlineExceeded() {
+        if (!markDone()) {
+            return;
+        }
+
+        Log.v(TAG, "HttpRequest | deadline exceeded, url = " + mOriginalUrl);
+        stopNetworkIfUnshared();
+        deliverError(mNetworkResponse, new HttpError(HttpError.CODE_DEADLINE_EXCEEDED, "Deadline of " + mDeadlineMillis + "ms exceeded"));
+    }
+
+    /**
+     * Stops network work of this request: leaves the Dispatcher queue or frees its slot, and closes its connection.
+     * Unless identical coalesced requests still wait for the outcome, in which case the network work goes on for them.
+     */
+    private void stopNetworkIfUnshared() {
+        if (mCoalescer != null && mCoalescer.detach(this)) {
+            return;
+        }
+
+        abort();
+        stopHedge();
+    }
+
+    /**
+     * Stop this request's own network work, regardless of anyone waiting for it.
+     */
+    private void abort() {
+        mAborted = true;
+        mDispatcher.cancel(this);
+
+        HttpURLConnection connection = mConnection;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Every request has a single outcome: a response, an error, being canceled or exceeding its deadline.
+     * @return - True for the first caller only, who then owns reporting the outcome.
+     */
+    private boolean markDone() {
+        synchronized (mStateLock) {
+            if (mDone) {
+                return false;
+            }
+
+            mDone = true;
+            if (mDeadlineTask != null) {
+                mDeadlineTask.cancel(false);
+                mDeadlineTask = null;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Only used when mCoalescer is set.
+     * @return - Key identifying requests that can share a single network call and its response.
+     */
+    String getCoalescingKey() {
+        return null;
+    }
+
+    /**
+     * @return - True if sending this request more than once has the same effect as sending it once, so it can be retried safely.
+     */
+    boolean isIdempotent() {
+        return false;
+    }
+
+    /**
+     * @return - True if {@link #protocolSpecificConnectionSetup(HttpURLConnection)} writes a body, which opens the connection
+     * before connect() is called, so connect() does not tell how long opening it took.
+     */
+    boolean sendsBody() {
+        return false;
+    }
+
+    /**
+     * Only called for idempotent requests with a {@link HedgingPolicy}.
+     * @return - A fresh copy of this request, to be sent as its hedge. Null if this request type cannot be hedged.
+     */
+    HttpRequest createHedge() {
+        return null;
+    }
+
+    /**
+     * Only called for idempotent requests served a stale response under a stale-while-revalidate {@link CachePolicy}.
+     * @return - A copy of this request that refreshes the stored response, without a callback. Null if this request type is not cached.
+     */
+    HttpRequest createRevalidation() {
+        return null;
+    }
+
+    /**
+     * Called by {@link Dispatcher} on a worker thread.
+     */
+    void run() {
+        if (mAborted) {
+            return;
+        }
+
+        scheduleHedge();
+        performRequest();
+    }
+
+    /**
+     * Runs the request on the calling thread and returns its outcome directly, no Looper or Handler involved.
+     * @throws HttpException - Carrying the same {@link HttpError} an asynchronous request would return in onError().
+     * @throws IllegalStateException - When called from the main thread.
+     */
+    HttpResponse performRequestSync() throws HttpException {
         if (Looper.myLooper() == Looper.getMainLooper()) {
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    performRequest(networkResponse);
+            throw new IllegalStateException("HttpRequest | performRequestSync | Synchronous requests cannot run on the main thread.");
+        }
+
+        HttpResponse memoryResponse = getFromMemoryCache();
+        if (memoryResponse != null) {
+            return memoryResponse;
+        }
+
+        if (mRetryBudget != null) {
+            mRetryBudget.onRequest();
+        }
+
+        //No timer aborts a blocked caller, connection timeouts and retry delays are cut to the time left instead.
+        if (mDeadlineMillis != RequestOptions.NO_DEADLINE) {
+            mDeadlineAtMillis = SystemClock.elapsedRealtime() + mDeadlineMillis;
+        }
+
+        while (true) {
+            try {
+                return executeRequest();
+            } catch (HttpException e) {
+                long retryDelayMillis = getRetryDelayMillis(e.getError());
+                if (retryDelayMillis == NO_RETRY) {
+                    throw e;
+                }
+
+                //Caller chose to block, waiting on its own thread is expected here.
+                try {
+                    Thread.sleep(retryDelayMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw e;
                 }
-            }).start();
-        } else {
-            performRequest(networkResponse);
+            }
         }
     }
 
-    private void performRequest(HttpManager.NetworkResponse networkResponse) {
+    /**
+     * Called by {@link Dispatcher} once the attempt that just ran freed its slot.
+     * Puts the request back in queue after its retry delay, if the attempt failed and should be retried.
+     */
+    void scheduleRetryIfPending() {
+        long retryDelayMillis = mPendingRetryDelayMillis;
+        if (retryDelayMillis == NO_RETRY) {
+            return;
+        }
+        mPendingRetryDelayMillis = NO_RETRY;
+
+        Dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!mAborted) { //Canceled or deadline exceeded while waiting.
+                    mDispatcher.enqueue(HttpRequest.this);
+                }
+            }
+        }, retryDelayMillis);
+    }
+
+    private void performRequest() {
+        try {
+            returnResponse(executeRequest());
+        } catch (HttpException e) {
+            long retryDelayMillis = getRetryDelayMillis(e.getError());
+            if (retryDelayMillis != NO_RETRY) {
+                mPendingRetryDelayMillis = retryDelayMillis;
+                return;
+            }
+            returnError(e.getError());
+        } catch (RuntimeException e) {
+            //Not a network failure, e.g. a throwing RequestBody or a bad redirect url. Never retried, but must still complete
+            //the callback and any coalesced followers, or later identical requests would attach to a dead leader.
+            Log.e(TAG, "performRequest | Unexpected exception, url = " + mUrl, e);
+            returnError(new HttpError(HttpError.CODE_PROCESSING_FAILED, e.getClass().getSimpleName() + ": " + e.getLocalizedMessage()));
+        }
+    }
+
+    /**
+     * Once per request, on its first run: send a hedge if the request has no response after the hedge delay.
+     */
+    private void scheduleHedge() {
+        if (mHedgingPolicy == null || mLatencyTracker == null || mHedgedPrimary != null || mHedgeScheduled || !isIdempotent() || mStreamingResponse != null) {
+            return;
+        }
+        mHedgeScheduled = true;
+
+        long delayMillis = mHedgingPolicy.getHedgeDelayMillis(mLatencyTracker.getPercentileMillis(mDispatchHost, mHedgingPolicy.getPercentile()));
+        Dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                sendHedge();
+            }
+        }, delayMillis);
+    }
+
+    private void sendHedge() {
+        HttpRequest hedge;
+        synchronized (mStateLock) {
+            if (mDone || mAborted || mFirstByteReceived) {
+                return;
+            }
+
+            hedge = createHedge();
+            if (hedge == null) {
+                return;
+            }
+            hedge.mHedgedPrimary = this;
+            mHedge = hedge;
+        }
+
+        Log.v(TAG, "HttpRequest | no response yet, sending hedge, url = " + mOriginalUrl);
+        mDispatcher.enqueue(hedge);
+    }
+
+    private void stopHedge() {
+        HttpRequest hedge;
+        synchronized (mStateLock) {
+            hedge = mHedge;
+            mHedge = null;
+        }
+
+        if (hedge != null) {
+            hedge.abort();
+        }
+    }
+
+    /**
+     * Hedge got a response first: it wins, this request's own network work is stopped.
+     * The win is claimed before aborting, so the error the abort causes on this request's own thread is ignored.
+     */
+    private void onHedgeResponse(HttpResponse response) {
+        synchronized (mStateLock) {
+            mHedge = null;
+            if (mWonByHedge) {
+                return;
+            }
+            mWonByHedge = true;
+        }
+
+        Log.v(TAG, "HttpRequest | hedge won, url = " + mOriginalUrl);
+        completeWithResponse(response);
+        abort();
+    }
+
+    /**
+     * Hedge failed: its error is returned only if this request already failed, otherwise this request decides.
+     */
+    private void onHedgeError(HttpError error) {
+        boolean deferredToHedge;
+        synchronized (mStateLock) {
+            mHedge = null;
+            deferredToHedge = mDeferredToHedge;
+        }
+
+        if (deferredToHedge) {
+            returnError(error);
+        }
+    }
+
+    /**
+     * @return - How long to wait before trying the request again, or NO_RETRY if error is final.
+     */
+    private long getRetryDelayMillis(HttpError error) {
+        if (mRetryPolicy == null || mAborted || mBodyStreamed || !mRetryPolicy.shouldRetry(error, mRetriesDone, isIdempotent())) {
+            return NO_RETRY;
+        }
+
+        long delayMillis = mRetryPolicy.nextDelayMillis(mLastRetryDelayMillis);
+        if (mRetryAfterMillis != NO_RETRY) {
+            if (mRetryAfterMillis > mRetryPolicy.getMaxDelayMillis()) { //Server asks for a longer pause than we are willing to wait.
+                return NO_RETRY;
+            }
+            delayMillis = Math.max(delayMillis, mRetryAfterMillis);
+        }
+
+        if (mDeadlineMillis != RequestOptions.NO_DEADLINE && SystemClock.elapsedRealtime() + delayMillis >= mDeadlineAtMillis) {
+            return NO_RETRY;
+        }
+
+        if (mRetryBudget != null && !mRetryBudget.tryRetry()) {
+            Log.v(TAG, "HttpRequest | retry budget exhausted, not retrying, url = " + mUrl);
+            return NO_RETRY;
+        }
+
+        mRetriesDone++;
+        mLastRetryDelayMillis = delayMillis;
+        Log.v(TAG, "HttpRequest | retry " + mRetriesDone + " in " + delayMillis + "ms after " + error + " url = " + mUrl);
+        return delayMillis;
+    }
+
+    /**
+     * Runs the request, following redirects one hop after the other, never recursing.
+     */
+    private HttpResponse executeRequest() throws HttpException {
+        if (mRedirectCache != null) {
+            redirectTo(mRedirectCache.resolve(mUrl, isIdempotent() || mRedirectedToGet, mMaxRedirects));
+        }
+
+        if (!mCacheChecked && mCachePolicy != null && mCachePolicy.isStaleWhileRevalidate() && isIdempotent() && mStreamingResponse == null) {
+            mCacheChecked = true;
+            HttpResponse storedResponse = executeFromCache();
+            if (storedResponse != null) {
+                return putInMemoryCache(storedResponse);
+            }
+        }
+
+        int redirects = 0;
+        while (true) {
+            HttpResponse response = executeHop();
+            if (response != null) {
+                return putInMemoryCache(response);
+            }
+
+            if (++redirects > mMaxRedirects) {
+                throw new HttpException(new HttpError(HttpError.CODE_TOO_MANY_REDIRECTS, "More than " + mMaxRedirects + " redirects, last url: " + mUrl));
+            }
+        }
+    }
+
+    /**
+     * Requests sending caller or tracked headers skip memory, the url key cannot tell apart responses to different callers.
+     */
+    private boolean usesMemoryCache() {
+        return mMemoryCache != null && mStreamingResponse == null && (mCachePolicy == null || !mCachePolicy.isNoStore())
+                && (mRequestHeaders == null || mRequestHeaders.isEmpty())
+                && (mTrackHeadersByGroup == null || mTrackHeadersByGroup.isEmpty());
+    }
+
+    /**
+     * @return - A fresh response of the final url of this request held in memory, null on a miss.
+     */
+    private HttpResponse getFromMemoryCache() {
+        if (!usesMemoryCache() || mRevalidation) {
+            return null;
+        }
+
+        String url = mRedirectCache != null ? mRedirectCache.resolve(mUrl, true, mMaxRedirects) : mUrl;
+        return mMemoryCache.get(url, mCachePolicy != null ? mCachePolicy.getMaxAgeSeconds() : CachePolicy.NOT_SET);
+    }
+
+    /**
+     * Offers response, received from mUrl after any redirects, to the memory cache. It keeps only fresh ones.
+     */
+    private HttpResponse putInMemoryCache(HttpResponse response) {
+        if (usesMemoryCache()) {
+            mMemoryCache.put(mUrl, response);
+        }
+        return response;
+    }
+
+    /**
+     * Stale-while-revalidate: asks the response cache alone for a stored response, fresh or stale within the policy.
+     * A stale one is returned as is and refreshed by a background revalidation, at most one per url at a time.
+     * @return - The stored response, null if there is none and the network must be asked.
+     */
+    private HttpResponse executeFromCache() throws HttpException {
+        mCacheOnly = true;
+        try {
+            HttpResponse response = executeHop();
+            if (response != null && isStale(response)) {
+                startRevalidation();
+            }
+            return response;
+        } catch (HttpException e) {
+            int code = e.getError().mCode;
+            if (code == HttpError.CODE_CANCELED || code == HttpError.CODE_DEADLINE_EXCEEDED) {
+                throw e;
+            }
+            return null; //Typically 504, nothing usable stored.
+        } finally {
+            mCacheOnly = false;
+        }
+    }
+
+    /**
+     * @return - True for a stale stored response returned by the response cache.
+     */
+    static boolean isStale(HttpResponse response) {
+        String warning = response.getHeader(HEADER_FIELD_WARNING);
+        return warning != null && warning.startsWith(WARNING_RESPONSE_IS_STALE);
+    }
+
+    /**
+     * Refreshes the stored response of mUrl in the background, unless a refresh of it is already in flight.
+     */
+    private void startRevalidation() {
+        HttpRequest revalidation = createRevalidation();
+        if (revalidation == null) {
+            return;
+        }
+
+        final String url = mUrl;
+        synchronized (sRevalidatingUrls) {
+            if (!sRevalidatingUrls.add(url)) {
+                Log.v(TAG, "HttpRequest | returning stale cached response, already revalidating, url = " + url);
+                return;
+            }
+        }
+
+        Log.v(TAG, "HttpRequest | returning stale cached response, revalidating, url = " + url);
+        revalidation.performRequsetOnBackgroundThread(new HttpManager.NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                onRevalidated(url);
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                onRevalidated(url);
+            }
+        });
+    }
+
+    private static void onRevalidated(String url) {
+        synchronized (sRevalidatingUrls) {
+            sRevalidatingUrls.remove(url);
+        }
+    }
+
+    /**
+     * @return - The Cache-Control request header for the current hop, null to send none.
+     */
+    private String getCacheControl() {
+        if (mCacheOnly) {
+            return mCachePolicy.getStaleCacheControl();
+        }
+        if (mRevalidation) {
+            return REVALIDATE_CACHE_CONTROL;
+        }
+        return mCachePolicy != null ? mCachePolicy.getCacheControl() : null;
+    }
+
+    /**
+     * A single request to mUrl.
+     * @return - The response, null if redirected, mUrl then holds the next hop.
+     */
+    private HttpResponse executeHop() throws HttpException {
+        mRetryAfterMillis = NO_RETRY;
+
+        // Fail fast while the host keeps failing, each redirect hop is checked against its own host
+        String host = Dispatcher.getHost(mUrl);
+        if (!mCacheOnly && mCircuitBreaker != null && !mCircuitBreaker.allowRequest(host)) {
+            throw new HttpException(new HttpError(HttpError.CODE_CIRCUIT_OPEN, "Circuit open, host is failing: " + host));
+        }
+        boolean hostOutcomeReported = mCircuitBreaker == null || mCacheOnly;
+
         HttpURLConnection connection = null;
         try {
             // Cast http/s appropriately
@@ -66,47 +687,108 @@ abstract class HttpRequest {
             } else if (mUrl.toLowerCase().contains("http://")) {
                 connection = (HttpURLConnection) new URL(mUrl).openConnection();
             } else {
-                returnError(networkResponse, new HttpError("Url must begin with http:// or https://"));
-                return;
+                throw new HttpException(new HttpError("Url must begin with http:// or https://"));
+            }
+
+            // Expose connection so it can be closed when canceled
+            mConnection = connection;
+            if (mAborted) {
+                throw new HttpException(new HttpError(HttpError.CODE_CANCELED, "Request canceled"));
             }
 
-            // Apply headers, if relevant, to request
-            mHeadersManager.setHeadersInRequest(connection, mRequestHeaders);
+            // Redirects are followed by executeRequest()
+            connection.setInstanceFollowRedirects(false);
+
+            // Apply headers, if relevant, to request. Never to a host the caller did not address
+            mHeadersManager.setHeadersInRequest(connection, mLeftRequestHost ? null : mRequestHeaders);
 
             // Allow CookiesTracker to update request
-            mCookiesTracker.setCookiesInRequest(connection, mTrackHeadersByGroup);
+            mCookiesTracker.setCookiesInRequest(connection, mLeftRequestHost ? null : mTrackHeadersByGroup);
+
+            // Decide which stored responses the response cache may return
+            String cacheControl = getCacheControl();
+            if (cacheControl != null) {
+                connection.setRequestProperty(HEADER_FIELD_CACHE_CONTROL, cacheControl);
+            }
 
-            // Apply timeout for requests
-            connection.setConnectTimeout(mConfiguredTimeout);
-            connection.setReadTimeout(mConfiguredTimeout);
+            // Apply timeout for requests, never beyond the request deadline
+            int timeout = getTimeoutWithinDeadline();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
 
             // Legacy correction for User-Agent
             adjustUserAgent(connection);
 
-            // Allow setup differences between different request types
+            // Allow setup differences between different request types, a body write connects already
+            long connectStartMillis = SystemClock.elapsedRealtime();
             protocolSpecificConnectionSetup(connection);
 
             connection.connect();
+            if (mPrewarmer != null && !mCacheOnly) {
+                mPrewarmer.onConnected(host, sendsBody() ? ConnectionPrewarmer.UNKNOWN_CONNECT_MILLIS : SystemClock.elapsedRealtime() - connectStartMillis);
+            }
+
+            // Host answered, a 5xx still means it is in trouble
+            int status = connection.getResponseCode();
+            mFirstByteReceived = true;
+            if (mLatencyTracker != null && !mCacheOnly) {
+                mLatencyTracker.record(host, SystemClock.elapsedRealtime() - connectStartMillis);
+            }
+            if (!hostOutcomeReported) {
+                hostOutcomeReported = true;
+                if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                    mCircuitBreaker.onFailure(host);
+                } else {
+                    mCircuitBreaker.onSuccess(host);
+                }
+            }
 
             //Handle different response codes, ideally returning response to calling code
-            handleResponse(networkResponse, connection);
+            return handleResponse(connection);
 
         } catch (NullPointerException e) {
             Log.e(TAG, "performRequest error: " + e.getLocalizedMessage());
-            returnError(networkResponse, new HttpError("NullPointerException: " + e.getLocalizedMessage()));
+            throw new HttpException(new HttpError("NullPointerException: " + e.getLocalizedMessage()));
         } catch (MalformedURLException e) {
             Log.e(TAG, "performRequest error: " + e.getLocalizedMessage());
-            returnError(networkResponse, new HttpError("MalformedURLException: " + e.getLocalizedMessage()));
+            throw new HttpException(new HttpError("MalformedURLException: " + e.getLocalizedMessage()));
         } catch (IOException e) {
+            if (mAborted) { //Connection closed under our feet by cancel, not a network failure.
+                throw new HttpException(new HttpError(HttpError.CODE_CANCELED, "Request canceled"));
+            }
             Log.e(TAG, "performRequest error: " + e.getLocalizedMessage());
-            returnError(networkResponse, new HttpError("IOException: " + e.getLocalizedMessage()));
+            if (!hostOutcomeReported) { //Includes connect and read timeouts.
+                hostOutcomeReported = true;
+                mCircuitBreaker.onFailure(host);
+            }
+            throw new HttpException(new HttpError(HttpError.CODE_IO_FAILURE, "IOException: " + e.getLocalizedMessage()));
         } finally {
+            if (!hostOutcomeReported) { //Canceled, deadline exceeded or bad url, nothing learned about the host.
+                mCircuitBreaker.onIgnored(host);
+            }
+            mConnection = null;
             if (connection != null) {
                 connection.disconnect();
             }
         }
     }
 
+    /**
+     * @return - The configured timeout, shortened to the time left until the request deadline.
+     * @throws HttpException - Deadline already passed, typically after a chain of redirects.
+     */
+    private int getTimeoutWithinDeadline() throws HttpException {
+        if (mDeadlineMillis == RequestOptions.NO_DEADLINE) {
+            return mConfiguredTimeout;
+        }
+
+        long remainingMillis = mDeadlineAtMillis - SystemClock.elapsedRealtime();
+        if (remainingMillis <= 0) {
+            throw new HttpException(new HttpError(HttpError.CODE_DEADLINE_EXCEEDED, "Deadline of " + mDeadlineMillis + "ms exceeded"));
+        }
+        return (int) Math.min(mConfiguredTimeout, remainingMillis);
+    }
+
     /**
      * This code includes a standardization method that aligns the user-agent,
      * removing all non-ASCII characters.
@@ -135,94 +817,379 @@ abstract class HttpRequest {
     /**
      * Read response code and handle accordingly.
      * All 2xx codes are considered a success (Source: https://www.restapitutorial.com/httpstatuscodes.html)
-     * 301, 302, 303 codes are considered redirect requests and will be performed accordingly by this client.
+     * 301, 302, 303, 307 and 308 codes are considered redirect requests and will be performed accordingly by this client.
+     * @return - The response, null if redirected.
      * @throws IOException - InputStream exception, possible when reading connection data.
+     * @throws HttpException - Response code is neither a success nor a redirect.
      */
-    private void handleResponse(HttpManager.NetworkResponse networkResponse, HttpURLConnection connection) throws IOException {
+    private HttpResponse handleResponse(HttpURLConnection connection) throws IOException, HttpException {
         int status = connection.getResponseCode();
 
         if (status >= 200 && status < 300){
-            handleResponseOK(networkResponse, status, connection);
-        } else if (status == HttpURLConnection.HTTP_MOVED_PERM || status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_SEE_OTHER) { //response REDIRECT (303 see other is also recommended by few articles)
-            handleResponseRedirect(networkResponse, connection);
+            return handleResponseOK(status, connection);
+        } else if (status == HttpURLConnection.HTTP_MOVED_PERM || status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_SEE_OTHER
+                || status == HTTP_TEMPORARY_REDIRECT || status == HTTP_PERMANENT_REDIRECT) { //response REDIRECT
+            return handleResponseRedirect(status, connection);
         } else { //any other response code returns an error
             Log.v(TAG, "HttpRequest | handleResponse | error, response code = " + status);
-            returnError(networkResponse, new HttpError("Invalid response code: " + status));
+            mRetryAfterMillis = parseRetryAfterMillis(connection.getHeaderField(HEADER_FIELD_RETRY_AFTER));
+            drainErrorStream(connection);
+            throw new HttpException(new HttpError(status, "Invalid response code: " + status));
         }
     }
 
-    private void handleResponseOK(HttpManager.NetworkResponse networkResponse, int statusCode, HttpURLConnection connection) throws IOException {
+    private HttpResponse handleResponseOK(int statusCode, HttpURLConnection connection) throws IOException, HttpException {
         //Read response headers
         Map<String, List<String>> headerFields = mHeadersManager.getHeadersFromResponse(connection);
 
-        //Feed CookiesTracker
-        mCookiesTracker.getCookiesFromResponse(connection, mTrackHeadersKey, mTrackHeadersByGroup);
+        //Feed CookiesTracker, with headers of the host the caller addressed only
+        if (!mLeftRequestHost) {
+            mCookiesTracker.getCookiesFromResponse(connection, mTrackHeadersKey, mTrackHeadersByGroup);
+        }
+
+        //Hand body to caller as is
+        if (mStreamingResponse != null) {
+            return handleResponseStreaming(new HttpResponse(statusCode, null, headerFields), connection);
+        }
 
-        //Read response
-        BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            response.append(line).append("\n");
+        //Read response bytes as is, decoded only if the caller asks for the message
+        InputStream inputStream = connection.getInputStream();
+        byte[] body;
+        try {
+            //Content-Length of a HEAD or 204 response describes a body that is never sent
+            body = hasNoBody(connection.getRequestMethod(), statusCode) ? NO_BODY
+                    : readBody(inputStream, ResponseBody.parseContentLength(connection.getHeaderField("Content-Length")));
+        } finally {
+            inputStream.close();
         }
-        br.close();
 
         //return response
-        returnResponse(networkResponse, new HttpResponse(statusCode, response.toString(), headerFields));
+        return new HttpResponse(statusCode, body, getCharset(connection.getContentType()), headerFields);
+    }
+
+    /**
+     * @return - True if a successful response to method never has a body, whatever its headers say. 304 never gets here, it is not a success.
+     */
+    private static boolean hasNoBody(String method, int statusCode) {
+        return "HEAD".equals(method) || statusCode == HttpURLConnection.HTTP_NO_CONTENT;
     }
 
-    private void handleResponseRedirect(HttpManager.NetworkResponse networkResponse, HttpURLConnection connection) {
-        mUrl = connection.getHeaderField(HEADER_FIELD_LOCATION);
-        Log.v(TAG, "HttpRequest | handleResponse | redirect, url = " + mUrl);
-        performRequest(networkResponse);
+    /**
+     * Reads the whole body. A small known length is read straight into an array of the exact size, with no copies.
+     * A large or unknown one is copied through a pooled buffer, growing only as bytes actually arrive.
+     */
+    static byte[] readBody(InputStream inputStream, long contentLength) throws IOException {
+        if (contentLength == ResponseBody.UNKNOWN_LENGTH || contentLength > MAX_PRESIZED_BODY_BYTES) {
+            int initialBytes = contentLength == ResponseBody.UNKNOWN_LENGTH ? ByteArrayPool.BUFFER_SIZE_BYTES : (int) MAX_PRESIZED_BODY_BYTES;
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(initialBytes);
+            copy(inputStream, outputStream);
+            return outputStream.toByteArray();
+        }
+
+        byte[] body = new byte[(int) contentLength];
+        int length = 0;
+        int read;
+        while (length < body.length && (read = inputStream.read(body, length, body.length - length)) != -1) {
+            length += read;
+        }
+
+        if (length < body.length) { //Stream ended early.
+            return Arrays.copyOf(body, length);
+        }
+
+        int next = inputStream.read();
+        if (next == -1) {
+            return body;
+        }
+
+        //Content-Length did not match the body, e.g. measured before transparent decompression. Read the rest the slow way.
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length * 2);
+        outputStream.write(body);
+        outputStream.write(next);
+        copy(inputStream, outputStream);
+        return outputStream.toByteArray();
     }
 
+    private static void copy(InputStream inputStream, ByteArrayOutputStream outputStream) throws IOException {
+        byte[] buffer = ByteArrayPool.acquire();
+        try {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        } finally {
+            ByteArrayPool.release(buffer);
+        }
+    }
 
     /**
-     * If networkResponse is not null, returns successful response callback on UI thread.
-     * Note: If looper/calling thread is no longer available, returning to main thread.
+     * @param contentType - Content-Type header, e.g. "application/json; charset=utf-8".
+     * @return - The charset it names if supported on this device, null otherwise.
+     */
+    static String getCharset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, CHARSET_PARAMETER, 0, CHARSET_PARAMETER.length())) {
+                String charset = trimmed.substring(CHARSET_PARAMETER.length()).replace("\"", "").trim();
+                try {
+                    return Charset.isSupported(charset) ? charset : null;
+                } catch (IllegalCharsetNameException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read and close the error body, so the connection goes back to the keep-alive pool instead of being closed by disconnect().
+     * Large error bodies are not worth reading, the connection is dropped then.
+     */
+    private void drainErrorStream(HttpURLConnection connection) {
+        drain(connection.getErrorStream());
+    }
+
+    /**
+     * Same as {@link #drainErrorStream(HttpURLConnection)} for any body, e.g. that of a redirect.
+     * @param stream - Can be null.
+     */
+    private void drain(InputStream stream) {
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            byte[] buffer = new byte[ERROR_BODY_DRAIN_BUFFER_BYTES];
+            long drainedBytes = 0;
+            int read;
+            while (drainedBytes < MAX_ERROR_BODY_DRAIN_BYTES && (read = stream.read(buffer)) != -1) {
+                drainedBytes += read;
+            }
+        } catch (IOException e) {
+            Log.v(TAG, "HttpRequest | drain | " + e.getLocalizedMessage());
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.v(TAG, "HttpRequest | drain | " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * @param retryAfter - Retry-After header value, either delay seconds or an http date.
+     * @return - Delay asked for by the server, NO_RETRY if none or unreadable.
+     */
+    static long parseRetryAfterMillis(String retryAfter) {
+        if (TextUtils.isEmpty(retryAfter)) {
+            return NO_RETRY;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                return Math.max(0, httpDateFormat.parse(retryAfter.trim()).getTime() - System.currentTimeMillis());
+            } catch (ParseException parseException) {
+                return NO_RETRY;
+            }
+        }
+    }
+
+    /**
+     * Runs the streaming callback on this worker thread while the connection is open, body is closed once it returns.
+     * @return - The response without a message, the body went to the streaming callback.
+     * @throws IOException - Reading the body failed, the streaming callback gets onError().
+     * @throws HttpException - The streaming callback threw.
+     */
+    private HttpResponse handleResponseStreaming(HttpResponse response, HttpURLConnection connection) throws IOException, HttpException {
+        if (mAborted) {
+            throw new HttpException(new HttpError(HttpError.CODE_CANCELED, "Request canceled"));
+        }
+
+        ResponseBody body = new ResponseBody(connection.getInputStream(),
+                ResponseBody.parseContentLength(connection.getHeaderField("Content-Length")), connection.getContentType());
+        mBodyStreamed = true;
+        try {
+            mStreamingResponse.onResponse(response, body);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "HttpRequest | streaming callback threw: " + e);
+            throw new HttpException(new HttpError(HttpError.CODE_PROCESSING_FAILED, e.getClass().getSimpleName() + ": " + e.getLocalizedMessage()));
+        } finally {
+            body.close();
+        }
+        return response;
+    }
+
+    /**
+     * Points mUrl at the redirect target, executeRequest() then requests it.
+     * 307 and 308 keep the method and body. 301, 302 and 303 turn any other method into a GET without body.
+     * A redirect from https to http is refused, it would send the request in clear text.
+     * @return - Always null, meaning redirected.
+     */
+    private HttpResponse handleResponseRedirect(int status, HttpURLConnection connection) throws IOException, HttpException {
+        String location = connection.getHeaderField(HEADER_FIELD_LOCATION);
+        if (TextUtils.isEmpty(location)) {
+            drain(connection.getInputStream());
+            throw new HttpException(new HttpError(status, "Redirect without Location header, response code: " + status));
+        }
+        String targetUrl = new URL(new URL(mUrl), location).toString(); //Location may be relative.
+        drain(connection.getInputStream());
+        if (isHttpsDowngrade(mUrl, targetUrl)) {
+            throw new HttpException(new HttpError(status, "Redirect from https to http refused, location: " + targetUrl));
+        }
+
+        boolean preservesMethod = status == HTTP_TEMPORARY_REDIRECT || status == HTTP_PERMANENT_REDIRECT;
+        if (mRedirectCache != null && (status == HttpURLConnection.HTTP_MOVED_PERM || status == HTTP_PERMANENT_REDIRECT)) {
+            mRedirectCache.put(mUrl, targetUrl, preservesMethod);
+        }
+        if (!preservesMethod && !isIdempotent()) {
+            mRedirectedToGet = true;
+        }
+
+        Log.v(TAG, "HttpRequest | handleResponse | redirect " + status + ", url = " + targetUrl);
+        redirectTo(targetUrl);
+        return null;
+    }
+
+    /**
+     * Moves the request to targetUrl. Once it leaves the host, caller and tracked headers stay behind, for every later hop and retry.
+     */
+    private void redirectTo(String targetUrl) {
+        if (!Dispatcher.getHost(targetUrl).equals(Dispatcher.getHost(mUrl))) {
+            mLeftRequestHost = true;
+        }
+        mUrl = targetUrl;
+    }
+
+    /**
+     * @return - True if going from fromUrl to toUrl would send a request made over https in clear text.
+     */
+    static boolean isHttpsDowngrade(String fromUrl, String toUrl) {
+        return fromUrl.regionMatches(true, 0, "https:", 0, 6) && toUrl.regionMatches(true, 0, "http:", 0, 5);
+    }
+
+
+    /**
+     * Returns the response to this request and to any identical requests coalesced into it.
+     * Requests that were already canceled or exceeded their deadline are skipped.
+     */
+    private void returnResponse(HttpResponse response) {
+        if (mHedgedPrimary != null) {
+            mHedgedPrimary.onHedgeResponse(response);
+            return;
+        }
+
+        synchronized (mStateLock) {
+            if (mWonByHedge) {
+                return;
+            }
+        }
+        stopHedge(); //This request won, if a hedge was racing it.
+        completeWithResponse(response);
+    }
+
+    private void completeWithResponse(HttpResponse response) {
+        if (markDone()) {
+            deliverResponse(mNetworkResponse, response);
+        }
+
+        if (mCoalescer != null) {
+            for (HttpRequest follower : mCoalescer.complete(this)) {
+                if (follower.markDone()) {
+                    follower.deliverResponse(follower.mNetworkResponse, response);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the error to this request and to any identical requests coalesced into it.
+     * Requests that were already canceled or exceeded their deadline are skipped.
+     */
+    private void returnError(HttpError error) {
+        if (mHedgedPrimary != null) {
+            mHedgedPrimary.onHedgeError(error);
+            return;
+        }
+
+        synchronized (mStateLock) {
+            if (mWonByHedge) {
+                return;
+            }
+            if (mHedge != null && !mDone) { //The hedge may still succeed.
+                mDeferredToHedge = true;
+                return;
+            }
+        }
+
+        if (markDone()) {
+            deliverError(mNetworkResponse, error);
+        }
+
+        if (mCoalescer != null) {
+            for (HttpRequest follower : mCoalescer.complete(this)) {
+                if (follower.markDone()) {
+                    follower.deliverError(follower.mNetworkResponse, error);
+                }
+            }
+        }
+    }
+
+    /**
+     * If networkResponse is not null, returns successful response callback using the callback Executor.
      *
      * @param networkResponse - A callback interface registered by user.
      * @param response - Object description of response.
      */
-    private void returnResponse(final HttpManager.NetworkResponse networkResponse, final HttpResponse response) {
+    private void deliverResponse(final HttpManager.NetworkResponse networkResponse, final HttpResponse response) {
         if (networkResponse != null) {
-            Looper looper = getBestThreadLooepr();
-
-            new Handler(looper).post(new Runnable() {
+            mCallbackExecutor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    networkResponse.onResponse(response);
+                    if (startCallback()) {
+                        networkResponse.onResponse(response);
+                    }
                 }
             });
         }
     }
 
     /**
-     * If networkResponse is not null, returns error callback on UI thread.
-     * Note: If looper/calling thread is no longer available, returning to main thread.
+     * If networkResponse is not null, returns error callback using the callback Executor.
      * @param networkResponse - A callback interface registered by user.
      * @param error - Object description of error.
      */
-    private void returnError(final HttpManager.NetworkResponse networkResponse, final HttpError error) {
+    private void deliverError(final HttpManager.NetworkResponse networkResponse, final HttpError error) {
         if (networkResponse != null) {
-            Looper looper = getBestThreadLooepr();
-
-            new Handler(looper).post(new Runnable() {
+            mCallbackExecutor.execute(new Runnable() {
                 @Override
                 public void run() {
-                    networkResponse.onError(error);
+                    if (startCallback()) {
+                        networkResponse.onError(error);
+                    }
                 }
             });
         }
     }
 
-    private Looper getBestThreadLooepr() {
-        Looper looper = mOriginalLooper.get();
-        if (looper == null) {
-            looper = Looper.getMainLooper();
-            Log.e(TAG, "Network cannot return response callback on calling Thread. Is calling Thread still alive? Returning callback on main Thread.");
+    /**
+     * Called on the callback thread, right before the callback runs.
+     * @return - False if the request was canceled while its callback was on its way to the callback thread.
+     */
+    private boolean startCallback() {
+        synchronized (mStateLock) {
+            if (mCanceled) {
+                return false;
+            }
+
+            mCallbackStarted = true;
+            return true;
         }
-        return looper;
     }
 }
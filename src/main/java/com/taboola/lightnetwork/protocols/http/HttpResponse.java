@@ -1,12 +1,22 @@
 package com.taboola.lightnetwork.protocols.http;
 
+import java.io.UnsupportedEncodingException;
 import java.util.List;
 import java.util.Map;
 
 public class HttpResponse {
+    private static final String DEFAULT_CHARSET = "UTF-8"; //Json default, also used when Content-Type names no charset.
+
     public int mCode;
+    /**
+     * @deprecated - Use {@link #getMessage()}. For responses read by {@link HttpManager} this is null until getMessage()
+     *               decodes the body, so a body only read as bytes is never held twice. Values assigned here are returned by getMessage().
+     */
+    @Deprecated
     public String mMessage;
     public Map<String, List<String>> mHeaderFields;
+    private byte[] mBody; //Raw body bytes, null if created from a String or streamed.
+    private String mCharset;
 
     public HttpResponse(int code, String message, Map<String, List<String>> headerFields) {
         mCode = code;
@@ -14,8 +24,86 @@ public class HttpResponse {
         mHeaderFields = headerFields;
     }
 
+    /**
+     * @param body - Raw body bytes, decoded on first {@link #getMessage()}.
+     * @param charset - Charset from the Content-Type header, null for the default (UTF-8).
+     */
+    HttpResponse(int code, byte[] body, String charset, Map<String, List<String>> headerFields) {
+        this(code, (String) null, headerFields);
+        mBody = body;
+        mCharset = charset == null ? DEFAULT_CHARSET : charset;
+    }
+
+    /**
+     * @return - A new response over the same body bytes, charset and headers. Fields of the copy can be replaced freely.
+     *           Text decoded from the body is not copied, the copy decodes it again if asked to.
+     */
+    @SuppressWarnings("deprecation")
+    HttpResponse copy() {
+        HttpResponse copy = new HttpResponse(mCode, mBody == null ? mMessage : null, mHeaderFields);
+        copy.mBody = mBody;
+        copy.mCharset = mCharset;
+        return copy;
+    }
+
+    /**
+     * @return - The body as text, decoded once on first call with the response charset. Null if there is no body (e.g. streamed).
+     */
+    @SuppressWarnings("deprecation")
+    public synchronized String getMessage() {
+        if (mMessage == null && mBody != null) {
+            mMessage = decode(mBody, mCharset);
+        }
+        return mMessage;
+    }
+
+    /**
+     * @return - The raw body bytes, null if the response was created from a String or streamed. Must not be modified,
+     *           coalesced requests share the same response and memory cache hits the same bytes.
+     */
+    public byte[] getBody() {
+        return mBody;
+    }
+
+    /**
+     * @return - Charset the body is decoded with, null if the response was created from a String.
+     */
+    public String getCharset() {
+        return mCharset;
+    }
+
+    /**
+     * @param name - Header name, case insensitive.
+     * @return - First value of the header, null if not sent.
+     */
+    public String getHeader(String name) {
+        if (mHeaderFields == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, List<String>> header : mHeaderFields.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    private static String decode(byte[] body, String charset) {
+        try {
+            return new String(body, charset);
+        } catch (UnsupportedEncodingException e) {
+            try {
+                return new String(body, DEFAULT_CHARSET);
+            } catch (UnsupportedEncodingException unexpected) {
+                throw new IllegalStateException(unexpected); //UTF-8 is always supported.
+            }
+        }
+    }
+
     @Override
     public String toString() {
-        return String.format("Http response code (%s), HttpResponse message: %s.", mCode, mMessage == null ? "" : mMessage);
+        String message = getMessage();
+        return String.format("Http response code (%s), HttpResponse message: %s.", mCode, message == null ? "" : message);
     }
 }
@@ -0,0 +1,123 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Pull parses a streamed json array, handing each element to the callback as soon as it was read.
+ * Only one element is ever held on the heap, never the whole body or a DOM of the whole array.
+ */
+class JsonArrayResponse implements HttpManager.StreamingNetworkResponse {
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private final String mArrayField;
+    private final HttpManager.JsonArrayNetworkResponse mJsonArrayResponse;
+
+    /**
+     * @param arrayField - Name of the top level field holding the array, null if the body is the array itself.
+     */
+    JsonArrayResponse(String arrayField, HttpManager.JsonArrayNetworkResponse jsonArrayResponse) {
+        mArrayField = arrayField;
+        mJsonArrayResponse = jsonArrayResponse;
+    }
+
+    @Override
+    public void onResponse(HttpResponse response, ResponseBody body) throws IOException {
+        String charset = HttpRequest.getCharset(body.getContentType());
+        JsonReader reader = new JsonReader(new InputStreamReader(body.getByteStream(), charset == null ? DEFAULT_CHARSET : charset));
+        try {
+            if (mArrayField != null) {
+                moveToField(reader, mArrayField);
+            }
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                mJsonArrayResponse.onElement(readValue(reader));
+            }
+            reader.endArray();
+        } catch (MalformedJsonException | JSONException e) {
+            //Body arrived but is not what was expected, not a network failure.
+            throw new IllegalStateException("Invalid json array body: " + e.getLocalizedMessage(), e);
+        }
+        //Anything after the array is not needed, the body is closed once this returns.
+        mJsonArrayResponse.onComplete(response);
+    }
+
+    @Override
+    public void onError(HttpError error) {
+        mJsonArrayResponse.onError(error);
+    }
+
+    private static void moveToField(JsonReader reader, String field) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (field.equals(reader.nextName())) {
+                return;
+            }
+            reader.skipValue();
+        }
+        throw new IllegalStateException("Field not found in json body: " + field);
+    }
+
+    /**
+     * @return - JSONObject, JSONArray, String, Boolean, Long, Double or JSONObject.NULL, like org.json values.
+     */
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, readValue(reader));
+                }
+                reader.endObject();
+                return object;
+
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+
+            case STRING:
+                return reader.nextString();
+
+            case NUMBER:
+                return parseNumber(reader.nextString());
+
+            case BOOLEAN:
+                return reader.nextBoolean();
+
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+
+            default:
+                throw new IllegalStateException("Unexpected json token: " + token);
+        }
+    }
+
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                return Long.valueOf(number);
+            } catch (NumberFormatException e) {
+                //Too large for a long, fall back to double.
+            }
+        }
+        return Double.valueOf(number);
+    }
+}
@@ -0,0 +1,53 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the time to first byte (connect until response code) of the last SAMPLES_PER_HOST requests of each host.
+ */
+class LatencyTracker {
+    static final long NOT_ENOUGH_SAMPLES = -1;
+    private static final int SAMPLES_PER_HOST = 64;
+    private static final int MIN_SAMPLES = 16;
+
+    private final Map<String, HostSamples> mSamples = new HashMap<>();
+
+    synchronized void record(String host, long firstByteMillis) {
+        HostSamples samples = mSamples.get(host);
+        if (samples == null) {
+            samples = new HostSamples();
+            mSamples.put(host, samples);
+        }
+
+        samples.mMillis[samples.mNextSlot] = firstByteMillis;
+        samples.mNextSlot = (samples.mNextSlot + 1) % SAMPLES_PER_HOST;
+        samples.mCount = Math.min(SAMPLES_PER_HOST, samples.mCount + 1);
+    }
+
+    /**
+     * @param percentile - Between 1 and 99.
+     * @return - The time to first byte below which percentile of host's recent requests fall, NOT_ENOUGH_SAMPLES if too few are known.
+     */
+    long getPercentileMillis(String host, int percentile) {
+        long[] sorted;
+        synchronized (this) {
+            HostSamples samples = mSamples.get(host);
+            if (samples == null || samples.mCount < MIN_SAMPLES) {
+                return NOT_ENOUGH_SAMPLES;
+            }
+            sorted = Arrays.copyOf(samples.mMillis, samples.mCount);
+        }
+
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static class HostSamples {
+        final long[] mMillis = new long[SAMPLES_PER_HOST];
+        int mNextSlot;
+        int mCount;
+    }
+}
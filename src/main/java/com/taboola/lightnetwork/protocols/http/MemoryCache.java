@@ -0,0 +1,224 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.os.SystemClock;
+
+import java.net.HttpURLConnection;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hot tier in front of the disk response cache: recent fresh GET responses kept in memory, keyed by their final url,
+ * so a hit is returned without a connection, disk read or {@link Dispatcher} round.
+ *
+ * Only 200 responses the server made explicitly fresh (Cache-Control max-age, or Expires) are kept, and only while fresh.
+ * Responses with no-store, no-cache, private or a Vary on anything but Accept-Encoding are never kept, and requests sending
+ * caller headers or tracked headers never use the cache (see HttpRequest), as the url key does not capture who asked.
+ * Every hit returns its own {@link HttpResponse} over the same body bytes, so callers replacing mMessage or mCode never
+ * affect each other. The body bytes and header lists are shared and must not be modified.
+ * Bounded by an estimate of the bytes held, least recently used entries are evicted first.
+ */
+class MemoryCache {
+    private static final long ENTRY_OVERHEAD_BYTES = 128; //Objects around body and headers, roughly.
+    private static final int MAX_ENTRY_SHARE = 4; //A single entry may take up to a quarter of the cache.
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final long mMaxBytes;
+    private long mSizeBytes;
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes - Upper bound of the estimated memory held by entries.
+     */
+    MemoryCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @param url - Final url of the request, after known permanent redirects.
+     * @param maxAgeSeconds - Max age the caller accepts, {@link CachePolicy#NOT_SET} for any fresh entry.
+     * @return - A fresh response, null on a miss.
+     */
+    synchronized HttpResponse get(String url, int maxAgeSeconds) {
+        Entry entry = mEntries.get(url);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+
+        long ageMillis = entry.getAgeMillis();
+        if (ageMillis >= entry.mFreshnessLifetimeMillis) {
+            remove(url);
+            mMissCount++;
+            return null;
+        }
+        if (maxAgeSeconds != CachePolicy.NOT_SET && ageMillis >= maxAgeSeconds * 1000L) {
+            mMissCount++;
+            return null;
+        }
+
+        mHitCount++;
+        return entry.mResponse.copy();
+    }
+
+    /**
+     * Keeps response if it can be served from memory, see class doc. Otherwise drops any older entry of url.
+     * @param url - Final url the response came from.
+     */
+    synchronized void put(String url, HttpResponse response) {
+        long freshnessLifetimeMillis = getFreshnessLifetimeMillis(response);
+        long sizeBytes = estimateSizeBytes(url, response);
+        if (freshnessLifetimeMillis <= 0 || sizeBytes > mMaxBytes / MAX_ENTRY_SHARE) {
+            remove(url);
+            return;
+        }
+
+        remove(url);
+        mEntries.put(url, new Entry(response.copy(), freshnessLifetimeMillis, getInitialAgeMillis(response), sizeBytes));
+        mSizeBytes += sizeBytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = mEntries.entrySet().iterator();
+        while (mSizeBytes > mMaxBytes && eldest.hasNext()) {
+            mSizeBytes -= eldest.next().getValue().mSizeBytes;
+            eldest.remove();
+            mEvictionCount++;
+        }
+    }
+
+    synchronized MemoryCacheStats getStats() {
+        return new MemoryCacheStats(mHitCount, mMissCount, mEvictionCount, mEntries.size(), mSizeBytes);
+    }
+
+    private void remove(String url) {
+        Entry entry = mEntries.remove(url);
+        if (entry != null) {
+            mSizeBytes -= entry.mSizeBytes;
+        }
+    }
+
+    /**
+     * @return - How long the response stays fresh from the moment it was generated, 0 if it must not be kept.
+     */
+    private static long getFreshnessLifetimeMillis(HttpResponse response) {
+        if (response.mCode != HttpURLConnection.HTTP_OK || response.getBody() == null || HttpRequest.isStale(response) || hasVary(response)) {
+            return 0;
+        }
+
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl != null) {
+            long maxAgeMillis = 0;
+            boolean hasMaxAge = false;
+            for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-store") || directive.equals("no-cache") || directive.equals("private")) {
+                    return 0;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        maxAgeMillis = Long.parseLong(directive.substring("max-age=".length()).trim()) * 1000;
+                        hasMaxAge = true;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+            if (hasMaxAge) {
+                return maxAgeMillis;
+            }
+        }
+
+        long expiresMillis = parseHttpDateMillis(response.getHeader("Expires"));
+        long dateMillis = parseHttpDateMillis(response.getHeader("Date"));
+        if (expiresMillis == 0) {
+            return 0;
+        }
+        return expiresMillis - (dateMillis != 0 ? dateMillis : System.currentTimeMillis());
+    }
+
+    /**
+     * @return - Age the response already had when received, from the Age header a cache or proxy adds.
+     */
+    private static long getInitialAgeMillis(HttpResponse response) {
+        String age = response.getHeader("Age");
+        if (age == null) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, Long.parseLong(age.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return - True if the response depends on request headers other than Accept-Encoding, which the url key does not capture.
+     */
+    private static boolean hasVary(HttpResponse response) {
+        String vary = response.getHeader("Vary");
+        if (vary == null) {
+            return false;
+        }
+
+        for (String header : vary.split(",")) {
+            if (!header.trim().equalsIgnoreCase("Accept-Encoding")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long estimateSizeBytes(String url, HttpResponse response) {
+        long sizeBytes = ENTRY_OVERHEAD_BYTES + url.length() * 2L + response.getBody().length;
+        if (response.mHeaderFields != null) {
+            for (Map.Entry<String, List<String>> header : response.mHeaderFields.entrySet()) {
+                sizeBytes += header.getKey() == null ? 0 : header.getKey().length() * 2L;
+                for (String value : header.getValue()) {
+                    sizeBytes += value == null ? 0 : value.length() * 2L;
+                }
+            }
+        }
+        return sizeBytes;
+    }
+
+    /**
+     * @return - The date in epoch milliseconds, 0 if missing or malformed.
+     */
+    private static long parseHttpDateMillis(String httpDate) {
+        if (httpDate == null) {
+            return 0;
+        }
+
+        try {
+            return new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US).parse(httpDate.trim()).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static class Entry {
+        final HttpResponse mResponse;
+        final long mFreshnessLifetimeMillis;
+        final long mInitialAgeMillis;
+        final long mReceivedAtMillis = SystemClock.elapsedRealtime();
+        final long mSizeBytes;
+
+        Entry(HttpResponse response, long freshnessLifetimeMillis, long initialAgeMillis, long sizeBytes) {
+            mResponse = response;
+            mFreshnessLifetimeMillis = freshnessLifetimeMillis;
+            mInitialAgeMillis = initialAgeMillis;
+            mSizeBytes = sizeBytes;
+        }
+
+        long getAgeMillis() {
+            return mInitialAgeMillis + SystemClock.elapsedRealtime() - mReceivedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Snapshot of the in-memory response cache counters, see {@link HttpManager#setMemoryCacheMaxBytes(long)}.
+ */
+public class MemoryCacheStats {
+    private final int mHitCount;
+    private final int mMissCount;
+    private final int mEvictionCount;
+    private final int mEntryCount;
+    private final long mSizeBytes;
+
+    MemoryCacheStats(int hitCount, int missCount, int evictionCount, int entryCount, long sizeBytes) {
+        mHitCount = hitCount;
+        mMissCount = missCount;
+        mEvictionCount = evictionCount;
+        mEntryCount = entryCount;
+        mSizeBytes = sizeBytes;
+    }
+
+    /**
+     * @return - Number of requests answered from memory, without a connection.
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return - Number of lookups that found no fresh response and went on to the disk cache or network.
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return - Number of fresh responses dropped to keep the cache within its size.
+     */
+    public int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * @return - Number of responses currently held.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
+    /**
+     * @return - Estimated memory currently held, in bytes.
+     */
+    public long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryCacheStats hits (%s), misses (%s), evictions (%s), entries (%s), bytes (%s).", mHitCount, mMissCount, mEvictionCount, mEntryCount, mSizeBytes);
+    }
+}
@@ -0,0 +1,437 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lightweight, composable result of an asynchronous request. Works on all supported API levels (no java.util.function).
+ * Nothing ever blocks waiting on it, every step runs when its input completes.
+ *
+ * Unless a listener Executor is given, continuations run on the thread that completed the future, usually a network
+ * worker thread, so they should be quick. Use {@link #addListener(Listener, Executor)} to get the final result on a specific thread.
+ *
+ * Canceling a future derived from others (thenApply, withTimeout, allOf...) cancels those others only once no other
+ * future derived from them is still pending, so one branch of a shared future can be canceled without failing its siblings.
+ * Plain listeners do not count, a source canceled this way fails them with {@link HttpError#CODE_CANCELED}.
+ *
+ * Usage example:
+ *      NetworkFuture.allOf(Arrays.asList(httpManager.getAsync(url1), httpManager.getAsync(url2)))
+ *          .withTimeout(3000)
+ *          .addListener(listener, CallbackExecutors.mainThread());
+ */
+public class NetworkFuture<T> {
+
+    /**
+     * Synchronous transformation of a result. Exceptions thrown fail the future with {@link HttpError#CODE_PROCESSING_FAILED}.
+     */
+    public interface Function<I, O> {
+        O apply(I input) throws Exception;
+    }
+
+    /**
+     * Asynchronous transformation of a result, typically making another request based on it.
+     */
+    public interface AsyncFunction<I, O> {
+        NetworkFuture<O> apply(I input) throws Exception;
+    }
+
+    public interface Listener<T> {
+        void onSuccess(T result);
+        void onFailure(HttpError error);
+    }
+
+    private final Object mLock = new Object();
+    private boolean mDone; //Guarded by mLock.
+    private boolean mCanceled; //Guarded by mLock.
+    private T mResult; //Guarded by mLock.
+    private HttpError mError; //Guarded by mLock.
+    private List<Runnable> mOnDone = new ArrayList<>(); //Guarded by mLock, null once done.
+    private Runnable mCancelAction; //Stops the work producing this future. Guarded by mLock.
+    private int mDependents; //Derived futures that did not release this one yet. Guarded by mLock.
+
+    NetworkFuture() {
+    }
+
+    /**********
+     * PUBLIC *
+     **********/
+
+    public static <T> NetworkFuture<T> completed(T result) {
+        NetworkFuture<T> future = new NetworkFuture<>();
+        future.complete(result);
+        return future;
+    }
+
+    public static <T> NetworkFuture<T> failed(HttpError error) {
+        NetworkFuture<T> future = new NetworkFuture<>();
+        future.fail(error);
+        return future;
+    }
+
+    /**
+     * @return - A future holding fn applied to this future's result. Failures skip fn and pass through as is.
+     */
+    public <R> NetworkFuture<R> thenApply(final Function<? super T, ? extends R> fn) {
+        final NetworkFuture<R> next = new NetworkFuture<>();
+        next.setCancelAction(addDependent());
+
+        addListener(new Listener<T>() {
+            @Override
+            public void onSuccess(T result) {
+                try {
+                    next.complete(fn.apply(result));
+                } catch (Exception e) {
+                    next.fail(processingError(e));
+                }
+            }
+
+            @Override
+            public void onFailure(HttpError error) {
+                next.fail(error);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * @return - A future holding the result of the future returned by fn for this future's result.
+     *           Failures skip fn and pass through as is. Canceling the returned future cancels whichever step is running,
+     *           unless other derived futures still depend on it.
+     */
+    public <R> NetworkFuture<R> thenCompose(final AsyncFunction<? super T, R> fn) {
+        final NetworkFuture<R> next = new NetworkFuture<>();
+        next.setCancelAction(addDependent());
+
+        addListener(new Listener<T>() {
+            @Override
+            public void onSuccess(T result) {
+                NetworkFuture<R> inner;
+                try {
+                    inner = fn.apply(result);
+                } catch (Exception e) {
+                    next.fail(processingError(e));
+                    return;
+                }
+
+                if (inner == null) {
+                    next.fail(new HttpError(HttpError.CODE_PROCESSING_FAILED, "thenCompose function returned null"));
+                    return;
+                }
+
+                next.setCancelAction(inner.addDependent());
+                inner.addListener(forwardTo(next));
+            }
+
+            @Override
+            public void onFailure(HttpError error) {
+                next.fail(error);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * @return - A future failing with {@link HttpError#CODE_DEADLINE_EXCEEDED} if this one does not complete within timeoutMillis.
+     *           This future is canceled on timeout, stopping its request, unless other derived futures still depend on it.
+     */
+    public NetworkFuture<T> withTimeout(final long timeoutMillis) {
+        final NetworkFuture<T> next = new NetworkFuture<>();
+        final Runnable release = addDependent();
+        next.setCancelAction(release);
+
+        final Future<?> timeoutTask = Dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (next.fail(new HttpError(HttpError.CODE_DEADLINE_EXCEEDED, "Timeout of " + timeoutMillis + "ms exceeded"))) {
+                    release.run();
+                }
+            }
+        }, timeoutMillis);
+
+        addListener(new Listener<T>() {
+            @Override
+            public void onSuccess(T result) {
+                timeoutTask.cancel(false);
+                next.complete(result);
+            }
+
+            @Override
+            public void onFailure(HttpError error) {
+                timeoutTask.cancel(false);
+                next.fail(error);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * @return - A future holding all results, in the order of the given futures.
+     *           Fails as soon as any of them fails, canceling the rest unless other derived futures still depend on them.
+     */
+    public static <T> NetworkFuture<List<T>> allOf(final List<? extends NetworkFuture<? extends T>> futures) {
+        final NetworkFuture<List<T>> all = new NetworkFuture<>();
+        final Runnable release = addDependent(futures);
+        all.setCancelAction(release);
+
+        if (futures.isEmpty()) {
+            all.complete(new ArrayList<T>());
+            return all;
+        }
+
+        final Object[] results = new Object[futures.size()];
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+
+        for (int i = 0; i < futures.size(); i++) {
+            final int index = i;
+            futures.get(i).addListener(new Listener<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    results[index] = result;
+                    if (remaining.decrementAndGet() == 0) {
+                        //noinspection unchecked
+                        all.complete((List<T>) Arrays.asList(results));
+                    }
+                }
+
+                @Override
+                public void onFailure(HttpError error) {
+                    if (all.fail(error)) {
+                        release.run();
+                    }
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * @return - A future holding the first successful result, the rest are canceled once there is one, unless other
+     *           derived futures still depend on them. Fails only if all of the given futures fail, with the last error.
+     */
+    public static <T> NetworkFuture<T> anyOf(final List<? extends NetworkFuture<? extends T>> futures) {
+        final NetworkFuture<T> any = new NetworkFuture<>();
+        final Runnable release = addDependent(futures);
+        any.setCancelAction(release);
+
+        if (futures.isEmpty()) {
+            any.fail(new HttpError(HttpError.CODE_PROCESSING_FAILED, "anyOf called with no futures"));
+            return any;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+
+        for (NetworkFuture<? extends T> future : futures) {
+            future.addListener(new Listener<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    if (any.complete(result)) {
+                        release.run();
+                    }
+                }
+
+                @Override
+                public void onFailure(HttpError error) {
+                    if (remaining.decrementAndGet() == 0) {
+                        any.fail(error);
+                    }
+                }
+            });
+        }
+        return any;
+    }
+
+    /**
+     * Listener runs on the thread that completes this future, or immediately on the calling thread if already done.
+     */
+    public void addListener(Listener<? super T> listener) {
+        addListener(listener, CallbackExecutors.direct());
+    }
+
+    /**
+     * @param executor - Where listener runs, e.g. {@link CallbackExecutors#mainThread()}.
+     */
+    public void addListener(final Listener<? super T> listener, final Executor executor) {
+        whenDone(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        //Read under lock once, the future is immutable once done.
+                        T result;
+                        HttpError error;
+                        synchronized (mLock) {
+                            result = mResult;
+                            error = mError;
+                        }
+
+                        if (error == null) {
+                            listener.onSuccess(result);
+                        } else {
+                            listener.onFailure(error);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Fail this future with {@link HttpError#CODE_CANCELED} and stop the work producing it, e.g. the underlying request.
+     * Futures this one was derived from are canceled too, unless other futures derived from them are still pending.
+     * @return - False if the future was already done.
+     */
+    public boolean cancel() {
+        Runnable cancelAction;
+        synchronized (mLock) {
+            if (mDone) {
+                return false;
+            }
+            mCanceled = true;
+            cancelAction = mCancelAction;
+            mCancelAction = null;
+        }
+
+        fail(new HttpError(HttpError.CODE_CANCELED, "Future canceled"));
+        if (cancelAction != null) {
+            cancelAction.run();
+        }
+        return true;
+    }
+
+    public boolean isDone() {
+        synchronized (mLock) {
+            return mDone;
+        }
+    }
+
+    public boolean isCanceled() {
+        synchronized (mLock) {
+            return mCanceled;
+        }
+    }
+
+    /************
+     * INTERNAL *
+     ************/
+
+    boolean complete(T result) {
+        return finish(result, null);
+    }
+
+    boolean fail(HttpError error) {
+        return finish(null, error);
+    }
+
+    /**
+     * @param cancelAction - Run once if this future gets canceled. If it already was, runs immediately.
+     */
+    void setCancelAction(Runnable cancelAction) {
+        synchronized (mLock) {
+            if (!mCanceled) {
+                mCancelAction = mDone ? null : cancelAction;
+                return;
+            }
+        }
+        cancelAction.run();
+    }
+
+    private boolean finish(T result, HttpError error) {
+        List<Runnable> onDone;
+        synchronized (mLock) {
+            if (mDone) {
+                return false;
+            }
+
+            mDone = true;
+            mResult = result;
+            mError = error;
+            mCancelAction = null;
+            onDone = mOnDone;
+            mOnDone = null;
+        }
+
+        for (Runnable runnable : onDone) {
+            runnable.run();
+        }
+        return true;
+    }
+
+    private void whenDone(Runnable runnable) {
+        synchronized (mLock) {
+            if (!mDone) {
+                mOnDone.add(runnable);
+                return;
+            }
+        }
+        runnable.run();
+    }
+
+    private static <T> Listener<T> forwardTo(final NetworkFuture<T> target) {
+        return new Listener<T>() {
+            @Override
+            public void onSuccess(T result) {
+                target.complete(result);
+            }
+
+            @Override
+            public void onFailure(HttpError error) {
+                target.fail(error);
+            }
+        };
+    }
+
+    /**
+     * Registers a future derived from this one. Only once every derived future released it, this one is canceled.
+     * @return - Release action, run when the derived future no longer needs this one's result. Later runs do nothing.
+     */
+    private Runnable addDependent() {
+        synchronized (mLock) {
+            mDependents++;
+        }
+
+        final AtomicBoolean released = new AtomicBoolean();
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (released.compareAndSet(false, true)) {
+                    releaseDependent();
+                }
+            }
+        };
+    }
+
+    private void releaseDependent() {
+        synchronized (mLock) {
+            if (--mDependents > 0) {
+                return;
+            }
+        }
+        cancel();
+    }
+
+    private static Runnable addDependent(List<? extends NetworkFuture<?>> futures) {
+        final List<Runnable> releases = new ArrayList<>(futures.size());
+        for (NetworkFuture<?> future : futures) {
+            releases.add(future.addDependent());
+        }
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                for (Runnable release : releases) {
+                    release.run();
+                }
+            }
+        };
+    }
+
+    private static HttpError processingError(Exception e) {
+        return new HttpError(HttpError.CODE_PROCESSING_FAILED, e.getClass().getSimpleName() + ": " + e.getLocalizedMessage());
+    }
+}
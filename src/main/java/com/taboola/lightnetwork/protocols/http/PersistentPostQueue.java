@@ -0,0 +1,498 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.Manifest;
+import android.content.Context;
+import android.util.Log;
+
+import com.taboola.lightnetwork.State;
+import com.taboola.lightnetwork.utils.PermissionUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps fire-and-forget POSTs that could not reach the server in an append-only journal file, and replays them
+ * in journal order once the device is connected again.
+ *
+ * Delivery is at-least-once and not strictly in call order, servers should accept duplicates and reordering (e.g. by an event id):
+ * - A POST sent directly is journaled only once it failed, so it is replayed after POSTs journaled while it was in flight.
+ * - An IO failure may happen after the server got the whole body (e.g. reading the response), the POST is replayed anyway.
+ * Journaling every POST before sending it would only fix the first point, at the cost of a disk write per POST.
+ *
+ * - While offline, or while older POSTs are still waiting, new POSTs go straight to the journal instead of waking the radio.
+ * - A POST failing with {@link HttpError#CODE_IO_FAILURE} or {@link HttpError#CODE_CIRCUIT_OPEN} is journaled,
+ *   any other outcome (including an error response) is final.
+ * - Replay sends one POST at a time, stopping at the first IO failure and trying again later with a growing delay.
+ * - The journal is compacted once most of its records are done, and never grows beyond its max size, dropping the oldest POSTs first.
+ *
+ * Journal lines are either "A <json post>" (added) or "D <id>" (done). All file access happens on a single background thread,
+ * appends are synced to disk once per burst of writes rather than once per record.
+ */
+class PersistentPostQueue {
+    private static final String TAG = PersistentPostQueue.class.getSimpleName();
+    private static final String JOURNAL_DIR = "lightnetwork";
+    private static final String JOURNAL_FILE = "outbound_posts.journal";
+    private static final String RECORD_ADDED = "A ";
+    private static final String RECORD_DONE = "D ";
+    private static final String CHARSET = "UTF-8";
+    private static final int MIN_DONE_RECORDS_TO_COMPACT = 32;
+    private static final long MIN_REPLAY_DELAY_MILLIS = 15000;
+    private static final long MAX_REPLAY_DELAY_MILLIS = 5 * 60 * 1000;
+    private static final long IO_THREAD_KEEP_ALIVE_MILLIS = 30000;
+
+    interface PostSender {
+        void send(OutboundPost post, RequestOptions options, HttpManager.NetworkResponse networkResponse);
+    }
+
+    private final File mJournalFile;
+    private final long mMaxJournalBytes;
+    private final Context mContext;
+    private final State mState;
+    private final PostSender mPostSender;
+    private final ThreadPoolExecutor mIoExecutor;
+
+    //Accessed on mIoExecutor only.
+    private LinkedHashMap<Long, OutboundPost> mPending; //Oldest first, null until the journal is loaded.
+    private long mNextId;
+    private int mDoneRecords; //Done records in the journal file since the last compaction.
+    private boolean mReplaying;
+    private boolean mReplayScheduled;
+    private boolean mSyncScheduled;
+    private long mReplayDelayMillis = MIN_REPLAY_DELAY_MILLIS;
+
+    PersistentPostQueue(Context context, long maxJournalBytes, PostSender postSender) {
+        mJournalFile = new File(new File(context.getFilesDir(), JOURNAL_DIR), JOURNAL_FILE);
+        mMaxJournalBytes = maxJournalBytes;
+        mContext = context;
+        mState = new State(context);
+        mPostSender = postSender;
+
+        mIoExecutor = new ThreadPoolExecutor(1, 1, IO_THREAD_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new Dispatcher.DispatcherThreadFactory("LightNetwork Journal #"));
+        mIoExecutor.allowCoreThreadTimeOut(true);
+
+        //POSTs left over from a previous run.
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                replayNext();
+            }
+        });
+    }
+
+    /**
+     * Send post now if possible, journal it otherwise.
+     */
+    void post(final OutboundPost post, final RequestOptions options) {
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadJournal();
+                if (!mPending.isEmpty() || !isConnected()) {
+                    //Keep order, older POSTs go first.
+                    append(post);
+                    replayNext();
+                    return;
+                }
+
+                mPostSender.send(post, options, new HttpManager.NetworkResponse() {
+                    @Override
+                    public void onResponse(HttpResponse response) {
+                    }
+
+                    @Override
+                    public void onError(HttpError error) {
+                        if (isNotSent(error)) {
+                            onSendFailed(post);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /***********
+     * PRIVATE *
+     ***********/
+
+    private void onSendFailed(final OutboundPost post) {
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadJournal();
+                append(post);
+                scheduleReplay();
+            }
+        });
+    }
+
+    private void replayNext() {
+        loadJournal();
+        if (mReplaying || mPending.isEmpty()) {
+            return;
+        }
+
+        if (!isConnected()) {
+            scheduleReplay();
+            return;
+        }
+
+        mReplaying = true;
+        final OutboundPost post = mPending.values().iterator().next();
+        mPostSender.send(post, null, new HttpManager.NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                onReplayed(post, null);
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                onReplayed(post, error);
+            }
+        });
+    }
+
+    private void onReplayed(final OutboundPost post, final HttpError error) {
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mReplaying = false;
+
+                if (error != null && isNotSent(error)) {
+                    scheduleReplay();
+                    return;
+                }
+
+                if (error != null) {
+                    //Retrying will not change the server's answer, do not let it block the POSTs behind it.
+                    Log.e(TAG, "replay | Dropping POST rejected by server: " + post.mUrl + ", error: " + error);
+                }
+
+                mReplayDelayMillis = MIN_REPLAY_DELAY_MILLIS;
+                markDone(post);
+                replayNext();
+            }
+        });
+    }
+
+    /**
+     * Try again later, doubling the delay on every consecutive attempt that could not get through.
+     */
+    private void scheduleReplay() {
+        if (mReplayScheduled) {
+            return;
+        }
+
+        mReplayScheduled = true;
+        long delayMillis = mReplayDelayMillis;
+        mReplayDelayMillis = Math.min(MAX_REPLAY_DELAY_MILLIS, mReplayDelayMillis * 2);
+
+        Dispatcher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mIoExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mReplayScheduled = false;
+                        replayNext();
+                    }
+                });
+            }
+        }, delayMillis);
+    }
+
+    /**
+     * @return - True if error means the POST did not get through and should be tried again later.
+     */
+    private static boolean isNotSent(HttpError error) {
+        return error.mCode == HttpError.CODE_IO_FAILURE || error.mCode == HttpError.CODE_CIRCUIT_OPEN;
+    }
+
+    private boolean isConnected() {
+        //Without the permission connectivity is unknown, let the request itself find out.
+        if (!PermissionUtils.isPermissionGranted(mContext, Manifest.permission.ACCESS_NETWORK_STATE)) {
+            return true;
+        }
+        return mState.isConnected();
+    }
+
+    /***********
+     * JOURNAL *
+     ***********/
+
+    private void loadJournal() {
+        if (mPending != null) {
+            return;
+        }
+
+        mPending = new LinkedHashMap<>();
+        if (!mJournalFile.exists()) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(mJournalFile), CHARSET));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readRecord(line);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "loadJournal | Failed reading journal: " + e.getLocalizedMessage());
+        } finally {
+            closeQuietly(reader);
+        }
+
+        Log.d(TAG, "loadJournal | " + mPending.size() + " POSTs waiting for replay");
+    }
+
+    private void readRecord(String line) {
+        try {
+            if (line.startsWith(RECORD_ADDED)) {
+                OutboundPost post = OutboundPost.fromJson(new JSONObject(line.substring(RECORD_ADDED.length())));
+                mPending.put(post.mId, post);
+                mNextId = Math.max(mNextId, post.mId + 1);
+            } else if (line.startsWith(RECORD_DONE)) {
+                mPending.remove(Long.parseLong(line.substring(RECORD_DONE.length())));
+                mDoneRecords++;
+            }
+        } catch (JSONException e) {
+            //Most likely the last line, cut short by the process dying mid write.
+            Log.e(TAG, "readRecord | Skipping corrupt journal record: " + e.getLocalizedMessage());
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "readRecord | Skipping corrupt journal record: " + e.getLocalizedMessage());
+        }
+    }
+
+    private void append(OutboundPost post) {
+        post.mId = mNextId++;
+
+        String line;
+        try {
+            line = RECORD_ADDED + post.toJson() + '\n';
+        } catch (JSONException e) {
+            Log.e(TAG, "append | Cannot journal POST, dropping: " + post.mUrl + ", " + e.getLocalizedMessage());
+            return;
+        }
+
+        long lineBytes = utf8Length(line);
+        if (lineBytes > mMaxJournalBytes) {
+            //Would take the whole journal down with it on compaction.
+            Log.e(TAG, "append | POST larger than the journal (" + lineBytes + " bytes), dropping: " + post.mUrl);
+            return;
+        }
+
+        if (mJournalFile.length() + lineBytes > mMaxJournalBytes) {
+            compact(lineBytes);
+        }
+
+        mPending.put(post.mId, post);
+        writeLines(line, true);
+    }
+
+    private void markDone(OutboundPost post) {
+        if (mPending.remove(post.mId) == null) {
+            return; //Dropped by compaction meanwhile.
+        }
+
+        mDoneRecords++;
+        if (mDoneRecords >= MIN_DONE_RECORDS_TO_COMPACT && mDoneRecords > mPending.size()) {
+            compact(0);
+        } else {
+            writeLines(RECORD_DONE + post.mId + '\n', true);
+        }
+    }
+
+    /**
+     * Rewrite the journal with pending POSTs only, dropping the oldest ones if they do not fit next to reservedBytes.
+     */
+    private void compact(long reservedBytes) {
+        List<String> lines = new ArrayList<>();
+        long totalBytes = reservedBytes;
+
+        //Walk newest to oldest, so the newest POSTs are the ones kept.
+        List<OutboundPost> pending = new ArrayList<>(mPending.values());
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            OutboundPost post = pending.get(i);
+            String line;
+            try {
+                line = RECORD_ADDED + post.toJson() + '\n';
+            } catch (JSONException e) {
+                line = null;
+            }
+
+            long lineBytes = line == null ? 0 : utf8Length(line);
+            if (line == null || totalBytes + lineBytes > mMaxJournalBytes) {
+                Log.e(TAG, "compact | Journal full, dropping POST: " + post.mUrl);
+                mPending.remove(post.mId);
+                continue;
+            }
+
+            totalBytes += lineBytes;
+            lines.add(0, line);
+        }
+
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+            content.append(line);
+        }
+        writeLines(content.toString(), false);
+        mDoneRecords = 0;
+    }
+
+    private void writeLines(String lines, boolean append) {
+        File dir = mJournalFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.e(TAG, "writeLines | Cannot create journal dir: " + dir);
+            return;
+        }
+
+        //Compaction writes a temp file first, so dying mid write never loses the whole journal.
+        File target = append ? mJournalFile : new File(dir, JOURNAL_FILE + ".tmp");
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(target, append);
+            outputStream.write(lines.getBytes(CHARSET));
+            if (!append) {
+                //Must be on disk before it replaces the journal.
+                outputStream.getFD().sync();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "writeLines | Failed writing journal: " + e.getLocalizedMessage());
+            return;
+        } finally {
+            closeQuietly(outputStream);
+        }
+
+        if (append) {
+            scheduleSync();
+        } else if (!target.renameTo(mJournalFile)) {
+            Log.e(TAG, "writeLines | Failed replacing journal with compacted one");
+        }
+    }
+
+    /**
+     * Sync the journal once all writes already queued on the journal thread are done, so a burst of records costs a single sync.
+     */
+    private void scheduleSync() {
+        if (mSyncScheduled) {
+            return;
+        }
+
+        mSyncScheduled = true;
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mSyncScheduled = false;
+                syncJournal();
+            }
+        });
+    }
+
+    private void syncJournal() {
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(mJournalFile, true);
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "syncJournal | Failed syncing journal: " + e.getLocalizedMessage());
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private static long utf8Length(String string) {
+        try {
+            return string.getBytes(CHARSET).length;
+        } catch (IOException e) {
+            return string.length();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.e(TAG, "closeQuietly | " + e.getLocalizedMessage());
+        }
+    }
+
+    /**********
+     * COMMON *
+     **********/
+
+    /**
+     * A fire-and-forget POST, as kept in the journal.
+     */
+    static class OutboundPost {
+        long mId;
+        final String mUrl;
+        final String mBody; //Serialized json, null for no body.
+        final boolean mIsJsonArrayBody;
+        final Map<String, String> mRequestHeaders;
+        final String mTrackHeadersKey;
+        final String mTrackHeadersByGroup;
+        final boolean mGzipBody;
+
+        OutboundPost(String url, String body, boolean isJsonArrayBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, boolean gzipBody) {
+            mUrl = url;
+            mBody = body;
+            mIsJsonArrayBody = isJsonArrayBody;
+            mRequestHeaders = requestHeaders;
+            mTrackHeadersKey = trackHeadersKey;
+            mTrackHeadersByGroup = trackHeadersByGroup;
+            mGzipBody = gzipBody;
+        }
+
+        String toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", mId);
+            json.put("url", mUrl);
+            json.put("body", mBody);
+            json.put("isArray", mIsJsonArrayBody);
+            json.put("headers", mRequestHeaders == null ? null : new JSONObject(mRequestHeaders));
+            json.put("trackKey", mTrackHeadersKey);
+            json.put("trackGroup", mTrackHeadersByGroup);
+            json.put("gzip", mGzipBody);
+            return json.toString();
+        }
+
+        static OutboundPost fromJson(JSONObject json) throws JSONException {
+            Map<String, String> requestHeaders = null;
+            JSONObject headers = json.optJSONObject("headers");
+            if (headers != null) {
+                requestHeaders = new HashMap<>();
+                Iterator<String> names = headers.keys();
+                while (names.hasNext()) {
+                    String name = names.next();
+                    requestHeaders.put(name, headers.getString(name));
+                }
+            }
+
+            OutboundPost post = new OutboundPost(json.getString("url"), json.optString("body", null), json.optBoolean("isArray"),
+                    requestHeaders, json.optString("trackKey", null), json.optString("trackGroup", null), json.optBoolean("gzip"));
+            post.mId = json.getLong("id");
+            return post;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Buffers fire-and-forget POST bodies aimed at the same endpoint and sends them as a single json array body.
+ * A batch is sent once it holds maxBatchSize bodies, or maxBatchAgeMillis after its first body was added, whichever comes first.
+ *
+ * Note: The endpoint must accept a json array of the bodies it would otherwise receive one by one.
+ */
+class PostBatcher {
+    private static final String TAG = PostBatcher.class.getSimpleName();
+
+    interface BatchSender {
+        void send(String url, JSONArray jsonArrayBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, boolean gzipBody);
+    }
+
+    private final BatchSender mBatchSender;
+    private final Map<String, Batch> mBatches = new HashMap<>(); //Open batches, by endpoint key.
+
+    PostBatcher(BatchSender batchSender) {
+        mBatchSender = batchSender;
+    }
+
+    void add(String url, JSONObject jsonBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, boolean gzipBody, int maxBatchSize, long maxBatchAgeMillis) {
+        if (maxBatchSize < 1 || maxBatchAgeMillis <= 0) {
+            throw new IllegalArgumentException("PostBatcher | add | maxBatchSize must be at least 1 and maxBatchAgeMillis positive, got: " + maxBatchSize + ", " + maxBatchAgeMillis);
+        }
+
+        if (jsonBody == null) {
+            Log.e(TAG, "PostBatcher | add | Batched POST must have a body, ignoring. url = " + url);
+            return;
+        }
+
+        //Bodies sent with different headers or encoding cannot share a request, and a batch keeps the size and age limits it was opened with.
+        final String key = RequestCoalescer.buildKey("POST", url, requestHeaders, trackHeadersKey, trackHeadersByGroup, null)
+                + '\n' + gzipBody + '\n' + maxBatchSize + '\n' + maxBatchAgeMillis;
+        Batch batchToSend = null;
+
+        synchronized (this) {
+            Batch batch = mBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(url, requestHeaders, trackHeadersKey, trackHeadersByGroup, gzipBody);
+                mBatches.put(key, batch);
+
+                final Batch scheduledBatch = batch;
+                batch.mAgeTask = Dispatcher.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(key, scheduledBatch);
+                    }
+                }, maxBatchAgeMillis);
+            }
+
+            batch.mBodies.add(jsonBody);
+
+            if (batch.mBodies.size() >= maxBatchSize) {
+                mBatches.remove(key);
+                batch.mAgeTask.cancel(false);
+                batchToSend = batch;
+            }
+        }
+
+        if (batchToSend != null) {
+            send(batchToSend);
+        }
+    }
+
+    /**
+     * Send all open batches now, regardless of size and age.
+     */
+    void flushAll() {
+        List<Batch> batchesToSend;
+        synchronized (this) {
+            batchesToSend = new ArrayList<>(mBatches.values());
+            mBatches.clear();
+        }
+
+        for (Batch batch : batchesToSend) {
+            batch.mAgeTask.cancel(false);
+            send(batch);
+        }
+    }
+
+    private void flush(String key, Batch batch) {
+        synchronized (this) {
+            //Batch may have been sent already by size, and a new one opened under the same key.
+            if (mBatches.get(key) != batch) {
+                return;
+            }
+            mBatches.remove(key);
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        JSONArray jsonArrayBody = new JSONArray();
+        for (JSONObject body : batch.mBodies) {
+            jsonArrayBody.put(body);
+        }
+
+        Log.v(TAG, "PostBatcher | sending " + batch.mBodies.size() + " bodies, url = " + batch.mUrl);
+        mBatchSender.send(batch.mUrl, jsonArrayBody, batch.mRequestHeaders, batch.mTrackHeadersKey, batch.mTrackHeadersByGroup, batch.mGzipBody);
+    }
+
+    private static class Batch {
+        final String mUrl;
+        final Map<String, String> mRequestHeaders;
+        final String mTrackHeadersKey;
+        final String mTrackHeadersByGroup;
+        final boolean mGzipBody;
+        final List<JSONObject> mBodies = new ArrayList<>();
+        Future<?> mAgeTask;
+
+        Batch(String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, boolean gzipBody) {
+            mUrl = url;
+            mRequestHeaders = requestHeaders;
+            mTrackHeadersKey = trackHeadersKey;
+            mTrackHeadersByGroup = trackHeadersByGroup;
+            mGzipBody = gzipBody;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Snapshot of connection prewarming results, see {@link HttpManager#prewarm(String)}.
+ */
+public class PrewarmStats {
+    private final int mPrewarmedCount;
+    private final int mHitCount;
+    private final int mMissCount;
+
+    PrewarmStats(int prewarmedCount, int hitCount, int missCount) {
+        mPrewarmedCount = prewarmedCount;
+        mHitCount = hitCount;
+        mMissCount = missCount;
+    }
+
+    /**
+     * @return - Number of connections successfully opened ahead of time.
+     */
+    public int getPrewarmedCount() {
+        return mPrewarmedCount;
+    }
+
+    /**
+     * @return - Number of requests that (by their connect time) reused a prewarmed connection.
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return - Number of first requests to a prewarmed host that still had to open a new connection.
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PrewarmStats prewarmed (%s), hits (%s), misses (%s).", mPrewarmedCount, mHitCount, mMissCount);
+    }
+}
@@ -0,0 +1,59 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers permanent redirects (301 and 308), so later requests to a moved url go straight to its new location
+ * instead of paying the redirect round trip again. In memory only, least recently used entries are evicted first.
+ *
+ * A 301 allows changing the method to GET, so its target is only used for GET and HEAD requests.
+ * A 308 keeps the method and body, its target is used for every request.
+ */
+class RedirectCache {
+    private static final int MAX_ENTRIES = 64;
+
+    private final LinkedHashMap<String, Target> mTargets = new LinkedHashMap<String, Target>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Target> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param preservesMethod - True for a 308, false for a 301.
+     */
+    synchronized void put(String url, String targetUrl, boolean preservesMethod) {
+        if (url.equals(targetUrl)) {
+            return;
+        }
+        mTargets.put(url, new Target(targetUrl, preservesMethod));
+    }
+
+    /**
+     * Follows remembered redirects from url, at most maxHops of them so a remembered loop ends.
+     * @param getOrHead - True if the request may follow 301 targets, see class doc.
+     * @return - The final known location of url, url itself if it is not known to have moved.
+     */
+    synchronized String resolve(String url, boolean getOrHead, int maxHops) {
+        String resolvedUrl = url;
+        for (int hop = 0; hop < maxHops; hop++) {
+            Target target = mTargets.get(resolvedUrl);
+            if (target == null || (!getOrHead && !target.mPreservesMethod)) {
+                break;
+            }
+            resolvedUrl = target.mUrl;
+        }
+        return resolvedUrl;
+    }
+
+    private static class Target {
+        final String mUrl;
+        final boolean mPreservesMethod;
+
+        Target(String url, boolean preservesMethod) {
+            mUrl = url;
+            mPreservesMethod = preservesMethod;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * A request body written straight to the connection's output stream, for content already held serialized
+ * (bytes, text or a file) or produced while sending.
+ *
+ * A body with a known length is sent with fixed-length streaming, one with {@link #UNKNOWN_LENGTH} with chunked streaming.
+ * Bodies are written again for every retry of the request, so they must be able to produce the same content more than once.
+ *
+ * Usage example:
+ *      httpManager.post(url, RequestBody.create("application/json", serializedEvent), networkResponse);
+ */
+public abstract class RequestBody {
+    public static final long UNKNOWN_LENGTH = -1;
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    /**
+     * Writes the body content, without closing the stream. Called on the network worker thread.
+     */
+    public interface Writer {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * @return - The Content-Type header sent with the body, null to send none.
+     */
+    public abstract String getContentType();
+
+    /**
+     * @return - Number of bytes {@link #writeTo(OutputStream)} writes, {@link #UNKNOWN_LENGTH} if not known up front.
+     */
+    public abstract long getContentLength() throws IOException;
+
+    /**
+     * Writes the body content, without closing the stream. Called on the network worker thread.
+     */
+    public abstract void writeTo(OutputStream outputStream) throws IOException;
+
+    /**
+     * @param contentType - Content-Type header, can be null.
+     * @param content - Body content. Not copied, must not be modified until the request completes.
+     */
+    public static RequestBody create(String contentType, byte[] content) {
+        if (content == null) {
+            throw new IllegalArgumentException("RequestBody | create | content cannot be null.");
+        }
+
+        return create(contentType, content, 0, content.length);
+    }
+
+    /**
+     * @param contentType - Content-Type header, can be null.
+     * @param content - Array holding the body content. Not copied, must not be modified until the request completes.
+     * @param offset - Index of the first body byte in content.
+     * @param length - Number of body bytes in content.
+     */
+    public static RequestBody create(final String contentType, final byte[] content, final int offset, final int length) {
+        if (content == null || offset < 0 || length < 0 || offset + length > content.length) {
+            throw new IllegalArgumentException("RequestBody | create | Invalid content range, offset: " + offset + ", length: " + length);
+        }
+
+        return new RequestBody() {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public long getContentLength() {
+                return length;
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(content, offset, length);
+            }
+        };
+    }
+
+    /**
+     * @param contentType - Content-Type header, can be null.
+     * @param content - Body content, from its position to its limit. Neither copied nor consumed, must not be modified until the request completes.
+     */
+    public static RequestBody create(final String contentType, ByteBuffer content) {
+        if (content == null) {
+            throw new IllegalArgumentException("RequestBody | create | content cannot be null.");
+        }
+
+        final ByteBuffer body = content.duplicate(); //Own position, so writing never moves the caller's.
+        return new RequestBody() {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public long getContentLength() {
+                return body.remaining();
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                if (body.hasArray()) {
+                    outputStream.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+                    return;
+                }
+
+                //Direct buffers have no backing array, copy through a pooled buffer.
+                ByteBuffer source = body.duplicate();
+                byte[] buffer = ByteArrayPool.acquire();
+                try {
+                    while (source.hasRemaining()) {
+                        int length = Math.min(buffer.length, source.remaining());
+                        source.get(buffer, 0, length);
+                        outputStream.write(buffer, 0, length);
+                    }
+                } finally {
+                    ByteArrayPool.release(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Same as {@link #create(String, String, String)} with UTF-8.
+     */
+    public static RequestBody create(String contentType, String content) {
+        return create(contentType, content, DEFAULT_CHARSET);
+    }
+
+    /**
+     * @param contentType - Content-Type header, can be null. Should name charset, e.g. "text/plain; charset=utf-8".
+     * @param content - Body text, encoded once on the network worker thread.
+     * @param charset - Charset to encode content with.
+     */
+    public static RequestBody create(final String contentType, final String content, final String charset) {
+        if (content == null || charset == null) {
+            throw new IllegalArgumentException("RequestBody | create | content and charset cannot be null.");
+        }
+
+        return new RequestBody() {
+            private byte[] mEncoded;
+
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public long getContentLength() throws IOException {
+                return getEncoded().length;
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(getEncoded());
+            }
+
+            private synchronized byte[] getEncoded() throws UnsupportedEncodingException {
+                if (mEncoded == null) {
+                    mEncoded = content.getBytes(charset);
+                }
+                return mEncoded;
+            }
+        };
+    }
+
+    /**
+     * @param contentType - Content-Type header, can be null.
+     * @param file - File sent as the body. Must not change until the request completes.
+     */
+    public static RequestBody create(final String contentType, final File file) {
+        if (file == null) {
+            throw new IllegalArgumentException("RequestBody | create | file cannot be null.");
+        }
+
+        return new RequestBody() {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public long getContentLength() {
+                return file.length();
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                InputStream inputStream = new FileInputStream(file);
+                byte[] buffer = ByteArrayPool.acquire();
+                try {
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        outputStream.write(buffer, 0, read);
+                    }
+                } finally {
+                    ByteArrayPool.release(buffer);
+                    inputStream.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param contentType - Content-Type header, can be null.
+     * @param contentLength - Exact number of bytes writer writes, {@link #UNKNOWN_LENGTH} if not known.
+     * @param writer - Produces the body while it is sent. Called again for every retry.
+     */
+    public static RequestBody create(final String contentType, final long contentLength, final Writer writer) {
+        if (writer == null || contentLength < UNKNOWN_LENGTH) {
+            throw new IllegalArgumentException("RequestBody | create | writer cannot be null and contentLength must be known or UNKNOWN_LENGTH, got: " + contentLength);
+        }
+
+        return new RequestBody() {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public long getContentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                writer.writeTo(outputStream);
+            }
+        };
+    }
+}
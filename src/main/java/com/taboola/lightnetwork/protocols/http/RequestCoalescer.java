@@ -0,0 +1,134 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collapses identical requests made while one of them is still in flight into a single network call.
+ * The first request (leader) goes to the network, later identical ones (followers) are attached to it and
+ * receive the leader's response or error once it completes.
+ *
+ * Note: All attached callbacks receive the same {@link HttpResponse} instance, it should be treated as read only.
+ */
+class RequestCoalescer {
+    private final Map<String, HttpRequest> mInFlightLeaders = new HashMap<>();
+    private volatile boolean mEnabled = true;
+
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * @return - A key identifying requests that would produce the same response and handle it the same way:
+     *           method, final url, every header sent, the response header recorded for tracking and the cache policy.
+     * @param cachePolicy - Can be null.
+     */
+    static String buildKey(String method, String url, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, CachePolicy cachePolicy) {
+        StringBuilder keyBuilder = new StringBuilder(method).append(' ').append(url);
+
+        //Cookie headers are loaded per group, requests of different groups may be sent with different headers.
+        keyBuilder.append('\n').append(trackHeadersByGroup == null ? "" : trackHeadersByGroup);
+
+        //Only the leader's response headers are tracked, followers must record the same one.
+        keyBuilder.append('\n').append(trackHeadersKey == null ? "" : trackHeadersKey);
+
+        //A policy changes the answer (only-if-cached, max-age) or where it comes from (stale-while-revalidate).
+        keyBuilder.append('\n');
+        if (cachePolicy != null) {
+            String cacheControl = cachePolicy.getCacheControl();
+            keyBuilder.append(cacheControl == null ? "" : cacheControl);
+            if (cachePolicy.getStaleWhileRevalidateSeconds() != CachePolicy.NOT_SET) {
+                keyBuilder.append(", stale-while-revalidate=").append(cachePolicy.getStaleWhileRevalidateSeconds());
+            }
+        }
+
+        if (requestHeaders != null) {
+            //Sort, so maps with the same content produce the same key regardless of iteration order.
+            for (Map.Entry<String, String> header : new TreeMap<>(requestHeaders).entrySet()) {
+                keyBuilder.append('\n').append(header.getKey()).append(':').append(header.getValue());
+            }
+        }
+
+        return keyBuilder.toString();
+    }
+
+    /**
+     * @return - True if request was attached to an identical in-flight request and should not be dispatched.
+     *           False if request became the leader for its key and should be dispatched as usual.
+     */
+    synchronized boolean attachOrLead(String key, HttpRequest request) {
+        if (!mEnabled) {
+            return false;
+        }
+
+        HttpRequest leader = mInFlightLeaders.get(key);
+        if (leader == null) {
+            mInFlightLeaders.put(key, request);
+            request.mCoalescingKey = key;
+            return false;
+        }
+
+        if (leader.mFollowers == null) {
+            leader.mFollowers = new ArrayList<>();
+        }
+        leader.mFollowers.add(request);
+        request.mLeader = leader;
+        return true;
+    }
+
+    /**
+     * Called when a request no longer wants the outcome (canceled, deadline exceeded).
+     * @return - True if the shared network call must go on: request was a follower, or a leader others still wait for.
+     *           False if request is not shared and its network work can be stopped.
+     */
+    synchronized boolean detach(HttpRequest request) {
+        if (request.mLeader != null) {
+            request.mLeader.mFollowers.remove(request);
+            request.mLeader = null;
+            return true;
+        }
+
+        if (request.mCoalescingKey != null) {
+            if (request.mFollowers != null && !request.mFollowers.isEmpty()) {
+                return true;
+            }
+
+            //Identical requests made from now on must not attach to a network call that is being stopped.
+            if (mInFlightLeaders.get(request.mCoalescingKey) == request) {
+                mInFlightLeaders.remove(request.mCoalescingKey);
+            }
+            request.mCoalescingKey = null;
+        }
+
+        return false;
+    }
+
+    /**
+     * Called once the leader has its outcome. From this point identical requests start a new network call.
+     * @return - The requests that were attached to the leader, never null.
+     */
+    synchronized List<HttpRequest> complete(HttpRequest leader) {
+        if (leader.mCoalescingKey == null) {
+            return new ArrayList<>();
+        }
+
+        if (mInFlightLeaders.get(leader.mCoalescingKey) == leader) {
+            mInFlightLeaders.remove(leader.mCoalescingKey);
+        }
+        leader.mCoalescingKey = null;
+
+        List<HttpRequest> followers = leader.mFollowers;
+        leader.mFollowers = null;
+        if (followers == null) {
+            return new ArrayList<>();
+        }
+
+        for (HttpRequest follower : followers) {
+            follower.mLeader = null;
+        }
+        return followers;
+    }
+}
@@ -0,0 +1,98 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Per request settings for {@link HttpManager} requests. Defaults apply to anything not set.
+ *
+ * Usage example:
+ *      new RequestOptions().setPriority(RequestPriority.HIGH).setDeadlineMillis(3000)
+ */
+public class RequestOptions {
+    public static final long NO_DEADLINE = 0;
+
+    private int mPriority = RequestPriority.NORMAL;
+    private long mDeadlineMillis = NO_DEADLINE;
+    private RetryPolicy mRetryPolicy; //Null for the HttpManager default.
+    private HedgingPolicy mHedgingPolicy; //Null for the HttpManager default.
+    private boolean mGzipBody;
+    private CachePolicy mCachePolicy; //Null to follow the server caching headers only.
+
+    /**
+     * @param priority - Dispatch priority, see {@link RequestPriority}.
+     */
+    public RequestOptions setPriority(int priority) {
+        mPriority = priority;
+        return this;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Overall time limit for the request, measured from the moment it is made. Covers time waiting in the
+     * {@link Dispatcher} queue, connecting, redirects and reading the response.
+     * Once passed, the request is aborted and fails with {@link HttpError#CODE_DEADLINE_EXCEEDED}.
+     * @param deadlineMillis - Time limit in milliseconds, {@link #NO_DEADLINE} for none.
+     */
+    public RequestOptions setDeadlineMillis(long deadlineMillis) {
+        if (deadlineMillis < 0) {
+            throw new IllegalArgumentException("RequestOptions | setDeadlineMillis | deadlineMillis cannot be negative, got: " + deadlineMillis);
+        }
+
+        mDeadlineMillis = deadlineMillis;
+        return this;
+    }
+
+    public long getDeadlineMillis() {
+        return mDeadlineMillis;
+    }
+
+    /**
+     * @param retryPolicy - Overrides {@link HttpManager#setRetryPolicy(RetryPolicy)} for this request, {@link RetryPolicy#none()} to never retry it.
+     */
+    public RequestOptions setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return mRetryPolicy;
+    }
+
+    /**
+     * @param hedgingPolicy - Overrides {@link HttpManager#setHedgingPolicy(HedgingPolicy)} for this request. Ignored for non GET requests.
+     */
+    public RequestOptions setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        mHedgingPolicy = hedgingPolicy;
+        return this;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return mHedgingPolicy;
+    }
+
+    /**
+     * @param gzipBody - True to gzip the request body and send it with "Content-Encoding: gzip". Only set it for servers
+     *                   that accept compressed request bodies. Ignored for requests without a body.
+     */
+    public RequestOptions setGzipBody(boolean gzipBody) {
+        mGzipBody = gzipBody;
+        return this;
+    }
+
+    public boolean isGzipBody() {
+        return mGzipBody;
+    }
+
+    /**
+     * @param cachePolicy - How the request uses the response cache, null to follow the server caching headers only.
+     */
+    public RequestOptions setCachePolicy(CachePolicy cachePolicy) {
+        mCachePolicy = cachePolicy;
+        return this;
+    }
+
+    public CachePolicy getCachePolicy() {
+        return mCachePolicy;
+    }
+}
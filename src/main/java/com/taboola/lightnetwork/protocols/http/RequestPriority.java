@@ -0,0 +1,11 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Dispatch priority lanes. When in-flight slots are scarce, higher priority requests are started first.
+ * Requests of the same priority start in the order they were made.
+ */
+public class RequestPriority {
+    public static final int LOW = 0; //Analytics beacons, prefetching.
+    public static final int NORMAL = 1; //Default.
+    public static final int HIGH = 2; //Latency critical, user is waiting for it.
+}
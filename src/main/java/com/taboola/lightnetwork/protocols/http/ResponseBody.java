@@ -0,0 +1,75 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The body of a streaming response, read straight from the connection. See {@link HttpManager#getStreaming(String, HttpManager.StreamingNetworkResponse)}.
+ * Must be consumed within the callback it was handed to, it is closed once the callback returns.
+ */
+public class ResponseBody implements Closeable {
+    private static final String TAG = ResponseBody.class.getSimpleName();
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private final InputStream mInputStream;
+    private final long mContentLength;
+    private final String mContentType;
+
+    ResponseBody(InputStream inputStream, long contentLength, String contentType) {
+        mInputStream = inputStream;
+        mContentLength = contentLength;
+        mContentType = contentType;
+    }
+
+    /**
+     * @return - The raw body bytes, not buffered.
+     */
+    public InputStream getByteStream() {
+        return mInputStream;
+    }
+
+    /**
+     * @return - Body length from the Content-Length header, {@link #UNKNOWN_LENGTH} if not sent.
+     */
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    /**
+     * @return - The Content-Type header, null if not sent.
+     */
+    public String getContentType() {
+        return mContentType;
+    }
+
+    /**
+     * Stop reading the body. Safe to call more than once.
+     */
+    @Override
+    public void close() {
+        try {
+            mInputStream.close();
+        } catch (IOException e) {
+            Log.v(TAG, "close | " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * @return - Content-Length header value, {@link #UNKNOWN_LENGTH} if missing or unreadable.
+     */
+    static long parseContentLength(String contentLength) {
+        if (contentLength == null) {
+            return UNKNOWN_LENGTH;
+        }
+
+        try {
+            long length = Long.parseLong(contentLength.trim());
+            return length < 0 ? UNKNOWN_LENGTH : length;
+        } catch (NumberFormatException e) {
+            return UNKNOWN_LENGTH;
+        }
+    }
+}
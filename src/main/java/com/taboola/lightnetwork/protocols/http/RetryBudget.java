@@ -0,0 +1,45 @@
+package com.taboola.lightnetwork.protocols.http;
+
+/**
+ * Caps retries to a share of the request traffic, so retries cannot turn a server outage into a retry storm.
+ * Every first attempt earns retryRatio of a retry, every retry spends a whole one. Up to maxRetryBurst retries can be saved up.
+ *
+ * E.g. with a ratio of 0.1, a failing server sees at most about 10% extra requests once the saved up burst is spent.
+ */
+class RetryBudget {
+    static final double DEFAULT_RETRY_RATIO = 0.1;
+    static final int DEFAULT_MAX_RETRY_BURST = 10;
+
+    private double mRetryRatio = DEFAULT_RETRY_RATIO;
+    private double mMaxBalance = DEFAULT_MAX_RETRY_BURST;
+    private double mBalance = DEFAULT_MAX_RETRY_BURST;
+
+    synchronized void configure(double retryRatio, int maxRetryBurst) {
+        if (retryRatio < 0 || maxRetryBurst < 0) {
+            throw new IllegalArgumentException("RetryBudget | configure | retryRatio and maxRetryBurst cannot be negative, got: " + retryRatio + ", " + maxRetryBurst);
+        }
+
+        mRetryRatio = retryRatio;
+        mMaxBalance = maxRetryBurst;
+        mBalance = Math.min(mBalance, mMaxBalance);
+    }
+
+    /**
+     * Called once per request, on its first attempt.
+     */
+    synchronized void onRequest() {
+        mBalance = Math.min(mMaxBalance, mBalance + mRetryRatio);
+    }
+
+    /**
+     * @return - True if a retry may be made, it is then accounted for.
+     */
+    synchronized boolean tryRetry() {
+        if (mBalance < 1) {
+            return false;
+        }
+
+        mBalance -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,142 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.net.HttpURLConnection;
+import java.util.Random;
+
+/**
+ * Decides whether a failed request is tried again, and after how long.
+ *
+ * - Retried errors: {@link HttpError#CODE_IO_FAILURE}, 408, 429, 500, 502, 503 and 504. Anything else is final.
+ * - Only idempotent requests (GET) are retried, unless {@link #setRetryNonIdempotent(boolean)} is set.
+ * - Delays grow exponentially with decorrelated jitter, so clients failing together do not retry together.
+ * - A server Retry-After header is honoured, the request gives up if it asks to wait longer than {@link #getMaxDelayMillis()}.
+ * - Retries never run past the request deadline, and are limited by the {@link RetryBudget} of the {@link HttpManager}.
+ *
+ * Usage example:
+ *      httpManager.setRetryPolicy(new RetryPolicy().setMaxRetries(3));
+ */
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 250;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 10000;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429; //No constant in HttpURLConnection.
+
+    private static final Random sRandom = new Random();
+
+    private int mMaxRetries = DEFAULT_MAX_RETRIES;
+    private long mBaseDelayMillis = DEFAULT_BASE_DELAY_MILLIS;
+    private long mMaxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private boolean mRetryNonIdempotent;
+
+    /**
+     * @return - A policy that never retries, e.g. to opt a single request out of the {@link HttpManager} default policy.
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy().setMaxRetries(0);
+    }
+
+    /**
+     * @param maxRetries - Max number of attempts after the first one. 0 disables retries.
+     */
+    public RetryPolicy setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("RetryPolicy | setMaxRetries | maxRetries cannot be negative, got: " + maxRetries);
+        }
+
+        mMaxRetries = maxRetries;
+        return this;
+    }
+
+    public int getMaxRetries() {
+        return mMaxRetries;
+    }
+
+    /**
+     * @param baseDelayMillis - Shortest delay before a retry. Must be positive.
+     */
+    public RetryPolicy setBaseDelayMillis(long baseDelayMillis) {
+        if (baseDelayMillis <= 0) {
+            throw new IllegalArgumentException("RetryPolicy | setBaseDelayMillis | baseDelayMillis must be positive, got: " + baseDelayMillis);
+        }
+
+        mBaseDelayMillis = baseDelayMillis;
+        return this;
+    }
+
+    public long getBaseDelayMillis() {
+        return mBaseDelayMillis;
+    }
+
+    /**
+     * @param maxDelayMillis - Longest delay before a retry. Must be positive.
+     */
+    public RetryPolicy setMaxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("RetryPolicy | setMaxDelayMillis | maxDelayMillis must be positive, got: " + maxDelayMillis);
+        }
+
+        mMaxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return mMaxDelayMillis;
+    }
+
+    /**
+     * @param retryNonIdempotent - True to retry POST requests as well. Only safe if the server tolerates receiving the same POST twice.
+     */
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        mRetryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return mRetryNonIdempotent;
+    }
+
+    /************
+     * INTERNAL *
+     ************/
+
+    /**
+     * @param retriesDone - Retries already made for the request.
+     * @return - True if the request may be tried again, budget and deadline aside.
+     */
+    boolean shouldRetry(HttpError error, int retriesDone, boolean idempotent) {
+        if (retriesDone >= mMaxRetries || (!idempotent && !mRetryNonIdempotent)) {
+            return false;
+        }
+
+        switch (error.mCode) {
+            case HttpError.CODE_IO_FAILURE:
+            case HttpURLConnection.HTTP_CLIENT_TIMEOUT:
+            case HTTP_TOO_MANY_REQUESTS:
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+            case HttpURLConnection.HTTP_BAD_GATEWAY:
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+            case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Decorrelated jitter: a random delay between the base delay and 3 times the previous one, capped at the max delay.
+     * The first retry counts the base delay as its previous one, so it is jittered too.
+     * @param previousDelayMillis - Delay before the previous retry, 0 for the first retry.
+     */
+    long nextDelayMillis(long previousDelayMillis) {
+        long upperMillis = Math.min(mMaxDelayMillis, Math.max(mBaseDelayMillis, previousDelayMillis) * 3);
+        if (upperMillis <= mBaseDelayMillis) {
+            return upperMillis;
+        }
+
+        double random;
+        synchronized (sRandom) {
+            random = sRandom.nextDouble();
+        }
+        return mBaseDelayMillis + (long) (random * (upperMillis - mBaseDelayMillis));
+    }
+}
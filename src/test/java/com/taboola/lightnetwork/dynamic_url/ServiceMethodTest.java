@@ -0,0 +1,154 @@
+package com.taboola.lightnetwork.dynamic_url;
+
+import com.taboola.lightnetwork.dynamic_url.annotations.Batch;
+import com.taboola.lightnetwork.dynamic_url.annotations.Body;
+import com.taboola.lightnetwork.dynamic_url.annotations.Cache;
+import com.taboola.lightnetwork.dynamic_url.annotations.Deadline;
+import com.taboola.lightnetwork.dynamic_url.annotations.GET;
+import com.taboola.lightnetwork.dynamic_url.annotations.Gzip;
+import com.taboola.lightnetwork.dynamic_url.annotations.Hedge;
+import com.taboola.lightnetwork.dynamic_url.annotations.POST;
+import com.taboola.lightnetwork.dynamic_url.annotations.Path;
+import com.taboola.lightnetwork.dynamic_url.annotations.Priority;
+import com.taboola.lightnetwork.dynamic_url.annotations.Query;
+import com.taboola.lightnetwork.dynamic_url.annotations.QueryMap;
+import com.taboola.lightnetwork.dynamic_url.annotations.REQUEST_TYPE;
+import com.taboola.lightnetwork.dynamic_url.annotations.Retry;
+import com.taboola.lightnetwork.dynamic_url.annotations.TrackHeader;
+import com.taboola.lightnetwork.protocols.http.RequestOptions;
+import com.taboola.lightnetwork.protocols.http.RequestPriority;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceMethodTest {
+    private static final String BASE_URL = "https://www.example.com";
+
+    @SuppressWarnings("unused")
+    private interface SampleApi {
+        @GET("/feed/{section}")
+        DynamicRequest getFeed(@Path("section") String section, String notAnnotated, @Query("count") int count, @QueryMap Map<String, String> extra);
+
+        @POST("/events")
+        @Batch(maxSize = 50, maxAgeMillis = 2000)
+        @Gzip
+        DynamicRequest sendEvent(@Body JSONObject event);
+
+        @GET("/config")
+        @TrackHeader(group = "session", headerReadKey = "x-session")
+        @Priority(RequestPriority.HIGH)
+        @Deadline(3000)
+        @Retry(maxRetries = 2, baseDelayMillis = 100, maxDelayMillis = 1000, retryNonIdempotent = true)
+        @Hedge(percentile = 90, minDelayMillis = 20, initialDelayMillis = 200)
+        @Cache(maxAgeSeconds = 60, staleWhileRevalidateSeconds = 600)
+        DynamicRequest getConfig();
+
+        DynamicRequest noHttpMethod();
+    }
+
+    @Test
+    public void requestTypeAndUrlTemplate() throws Exception {
+        ServiceMethod get = parse("getFeed", BASE_URL);
+        assertEquals(REQUEST_TYPE.GET, get.mRequestType);
+        assertEquals("https://www.example.com/feed/{section}", get.mUrlTemplate);
+
+        ServiceMethod post = parse("sendEvent", "");
+        assertEquals(REQUEST_TYPE.POST, post.mRequestType);
+        assertEquals("/events", post.mUrlTemplate);
+    }
+
+    @Test
+    public void onlyAnnotatedParametersGetHandlers() throws Exception {
+        ServiceMethod.ParameterHandler[] handlers = parse("getFeed", BASE_URL).mParameterHandlers;
+
+        assertEquals(3, handlers.length);
+        assertEquals(0, handlers[0].mParameterIndex);
+        assertEquals("PathHandler", handlers[0].getClass().getSimpleName());
+        assertEquals(2, handlers[1].mParameterIndex);
+        assertEquals("QueryHandler", handlers[1].getClass().getSimpleName());
+        assertEquals(3, handlers[2].mParameterIndex);
+        assertEquals("QueryMapHandler", handlers[2].getClass().getSimpleName());
+
+        ServiceMethod.ParameterHandler[] bodyHandlers = parse("sendEvent", BASE_URL).mParameterHandlers;
+        assertEquals(1, bodyHandlers.length);
+        assertEquals("BodyHandler", bodyHandlers[0].getClass().getSimpleName());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void queryMapRejectsNonMapArgument() throws Exception {
+        parse("getFeed", BASE_URL).mParameterHandlers[2].apply(null, null, "not a map");
+    }
+
+    @Test
+    public void batchAndGzip() throws Exception {
+        ServiceMethod serviceMethod = parse("sendEvent", BASE_URL);
+
+        assertNotNull(serviceMethod.mBatch);
+        assertEquals(50, serviceMethod.mBatch.maxSize());
+        assertEquals(2000, serviceMethod.mBatch.maxAgeMillis());
+        assertTrue(serviceMethod.mRequestOptions.isGzipBody());
+        assertNull(serviceMethod.mTrackHeaderByGroup);
+        assertNull(serviceMethod.mTrackHeadersKey);
+    }
+
+    @Test
+    public void trackHeaderAndRequestOptionsFromAnnotations() throws Exception {
+        ServiceMethod serviceMethod = parse("getConfig", BASE_URL);
+        assertEquals("session", serviceMethod.mTrackHeaderByGroup);
+        assertEquals("x-session", serviceMethod.mTrackHeadersKey);
+        assertNull(serviceMethod.mBatch);
+        assertNull(serviceMethod.mConverter);
+
+        RequestOptions options = serviceMethod.mRequestOptions;
+        assertEquals(RequestPriority.HIGH, options.getPriority());
+        assertEquals(3000, options.getDeadlineMillis());
+        assertFalse(options.isGzipBody());
+
+        assertEquals(2, options.getRetryPolicy().getMaxRetries());
+        assertEquals(100, options.getRetryPolicy().getBaseDelayMillis());
+        assertEquals(1000, options.getRetryPolicy().getMaxDelayMillis());
+        assertTrue(options.getRetryPolicy().isRetryNonIdempotent());
+
+        assertEquals(90, options.getHedgingPolicy().getPercentile());
+        assertEquals(20, options.getHedgingPolicy().getMinDelayMillis());
+        assertEquals(200, options.getHedgingPolicy().getInitialDelayMillis());
+
+        assertEquals(60, options.getCachePolicy().getMaxAgeSeconds());
+        assertEquals(600, options.getCachePolicy().getStaleWhileRevalidateSeconds());
+        assertFalse(options.getCachePolicy().isNoStore());
+    }
+
+    @Test
+    public void methodWithoutOptionAnnotationsGetsDefaults() throws Exception {
+        RequestOptions options = parse("getFeed", BASE_URL).mRequestOptions;
+
+        assertEquals(RequestPriority.NORMAL, options.getPriority());
+        assertEquals(RequestOptions.NO_DEADLINE, options.getDeadlineMillis());
+        assertNull(options.getRetryPolicy());
+        assertNull(options.getHedgingPolicy());
+        assertNull(options.getCachePolicy());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void methodWithoutHttpMethodIsRejected() throws Exception {
+        parse("noHttpMethod", BASE_URL);
+    }
+
+    private static ServiceMethod parse(String methodName, String baseUrl) throws NoSuchMethodException {
+        for (Method method : SampleApi.class.getDeclaredMethods()) {
+            if (method.getName().equals(methodName)) {
+                return ServiceMethod.parse(method, baseUrl, null);
+            }
+        }
+        throw new NoSuchMethodException(methodName);
+    }
+}
@@ -0,0 +1,188 @@
+package com.taboola.lightnetwork.dynamic_url;
+
+import com.taboola.lightnetwork.dynamic_url.annotations.GET;
+import com.taboola.lightnetwork.protocols.http.CallbackExecutors;
+import com.taboola.lightnetwork.protocols.http.HttpError;
+import com.taboola.lightnetwork.protocols.http.HttpManager;
+import com.taboola.lightnetwork.protocols.http.HttpResponse;
+import com.taboola.lightnetwork.protocols.http.LocalServer;
+import com.taboola.lightnetwork.protocols.http.NetworkFuture;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class TypedRequestTest {
+    private static final String FEED_JSON = "{\"title\":\"Hello\"}";
+
+    private LocalServer mServer;
+    private NetworkExecutable mNetworkExecutable;
+
+    static class Feed {
+        final String mTitle;
+
+        Feed(String title) {
+            mTitle = title;
+        }
+    }
+
+    interface FeedApi {
+        @GET("/feed")
+        TypedRequest<Feed> getFeed();
+
+        @GET("/feed")
+        TypedRequest<JSONObject> getFeedJson();
+
+        @GET("/feed")
+        TypedRequest<String> getFeedText();
+    }
+
+    interface UnknownResultApi {
+        @GET("/feed")
+        TypedRequest<Thread> getThread();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                outputStream.write(LocalServer.response("200 OK", FEED_JSON.getBytes("UTF-8"), "Content-Type", "application/json"));
+            }
+        });
+
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(CallbackExecutors.direct());
+        mNetworkExecutable = new NetworkExecutable(httpManager, mServer.url(""));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void registeredConverterRunsOnWorkerThread() throws Exception {
+        final Thread[] convertedOn = new Thread[1];
+        mNetworkExecutable.addConverterFactory(new Converter.Factory() {
+            @Override
+            public Converter<?> create(Type type) {
+                if (type != Feed.class) {
+                    return null;
+                }
+                return new Converter<Feed>() {
+                    @Override
+                    public Feed convert(HttpResponse response) throws Exception {
+                        convertedOn[0] = Thread.currentThread();
+                        return new Feed(new JSONObject(response.getMessage()).getString("title"));
+                    }
+                };
+            }
+        });
+
+        Feed feed = await(mNetworkExecutable.create(FeedApi.class).getFeed().executeAsync());
+
+        assertEquals("Hello", feed.mTitle);
+        assertNotSame(Thread.currentThread(), convertedOn[0]);
+    }
+
+    @Test
+    public void builtInJsonConverter() throws Exception {
+        JSONObject feed = await(mNetworkExecutable.create(FeedApi.class).getFeedJson().executeAsync());
+
+        assertEquals("Hello", feed.getString("title"));
+    }
+
+    @Test
+    public void registeredFactoryOverridesBuiltIn() throws Exception {
+        mNetworkExecutable.addConverterFactory(new Converter.Factory() {
+            @Override
+            public Converter<?> create(Type type) {
+                if (type != String.class) {
+                    return null;
+                }
+                return new Converter<String>() {
+                    @Override
+                    public String convert(HttpResponse response) {
+                        return "converted " + response.mCode;
+                    }
+                };
+            }
+        });
+
+        assertEquals("converted 200", await(mNetworkExecutable.create(FeedApi.class).getFeedText().executeAsync()));
+    }
+
+    @Test
+    public void throwingConverterFailsWithProcessingFailed() throws Exception {
+        mNetworkExecutable.addConverterFactory(new Converter.Factory() {
+            @Override
+            public Converter<?> create(Type type) {
+                return new Converter<Object>() {
+                    @Override
+                    public Object convert(HttpResponse response) throws Exception {
+                        throw new IllegalStateException("Unexpected feed");
+                    }
+                };
+            }
+        });
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final HttpError[] error = new HttpError[1];
+        mNetworkExecutable.create(FeedApi.class).getFeed().execute(new TypedRequest.TypedNetworkResponse<Feed>() {
+            @Override
+            public void onResponse(Feed result) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(HttpError httpError) {
+                error[0] = httpError;
+                done.countDown();
+            }
+        });
+
+        assertTrue("No callback", done.await(5, TimeUnit.SECONDS));
+        assertEquals(HttpError.CODE_PROCESSING_FAILED, error[0].mCode);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void resultTypeWithoutConverterIsRejected() {
+        mNetworkExecutable.create(UnknownResultApi.class, true);
+    }
+
+    private static <T> T await(NetworkFuture<T> future) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final Object[] outcome = new Object[1];
+        future.addListener(new NetworkFuture.Listener<T>() {
+            @Override
+            public void onSuccess(T result) {
+                outcome[0] = result;
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(HttpError error) {
+                outcome[0] = error;
+                done.countDown();
+            }
+        });
+
+        assertTrue("Not completed", done.await(5, TimeUnit.SECONDS));
+        assertTrue("Failed: " + outcome[0], !(outcome[0] instanceof HttpError));
+        //noinspection unchecked
+        return (T) outcome[0];
+    }
+}
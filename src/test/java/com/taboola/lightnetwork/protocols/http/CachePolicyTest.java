@@ -0,0 +1,49 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachePolicyTest {
+
+    @Test
+    public void emptyPolicySendsNoHeader() {
+        assertNull(new CachePolicy().getCacheControl());
+    }
+
+    @Test
+    public void directivesAreJoined() {
+        assertEquals("max-age=60", new CachePolicy().setMaxAgeSeconds(60).getCacheControl());
+        assertEquals("no-store, max-age=0, only-if-cached",
+                new CachePolicy().setNoStore(true).setMaxAgeSeconds(0).setOnlyIfCached(true).getCacheControl());
+    }
+
+    @Test
+    public void staleCacheControlAsksForStoredResponseOnly() {
+        assertEquals("only-if-cached, max-stale=600", new CachePolicy().setStaleWhileRevalidateSeconds(600).getStaleCacheControl());
+        assertEquals("max-age=60, only-if-cached, max-stale=600",
+                new CachePolicy().setMaxAgeSeconds(60).setStaleWhileRevalidateSeconds(600).getStaleCacheControl());
+    }
+
+    @Test
+    public void staleWhileRevalidateNeedsAStoreAndTheNetwork() {
+        assertFalse(new CachePolicy().isStaleWhileRevalidate());
+        assertFalse(new CachePolicy().setStaleWhileRevalidateSeconds(0).isStaleWhileRevalidate());
+        assertTrue(new CachePolicy().setStaleWhileRevalidateSeconds(600).isStaleWhileRevalidate());
+        assertFalse(new CachePolicy().setStaleWhileRevalidateSeconds(600).setNoStore(true).isStaleWhileRevalidate());
+        assertFalse(new CachePolicy().setStaleWhileRevalidateSeconds(600).setOnlyIfCached(true).isStaleWhileRevalidate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaxAgeIsRejected() {
+        new CachePolicy().setMaxAgeSeconds(-2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeStaleWhileRevalidateIsRejected() {
+        new CachePolicy().setStaleWhileRevalidateSeconds(-2);
+    }
+}
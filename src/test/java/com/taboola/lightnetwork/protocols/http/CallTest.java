@@ -0,0 +1,163 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class CallTest {
+    private static final long WAIT_MILLIS = 5000;
+
+    private LocalServer mServer;
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private final List<String> mOutcomes = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                if (request.mPath.equals("/slow")) {
+                    try {
+                        mRelease.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                outputStream.write(LocalServer.response("200 OK", "ok".getBytes("UTF-8")));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mRelease.countDown();
+        mServer.close();
+    }
+
+    @Test
+    public void cancelWhileRunningDropsCallbackAndFreesSlot() throws Exception {
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(CallbackExecutors.direct());
+
+        Call call = httpManager.get(mServer.url("/slow"), mRecordingResponse);
+        waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return mServer.getRequests().size() == 1;
+            }
+        });
+        call.cancel();
+
+        assertTrue(call.isCanceled());
+        final Dispatcher dispatcher = httpManager.getDispatcher();
+        waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return dispatcher.getRunningRequestsCount() == 0;
+            }
+        });
+        mRelease.countDown();
+        Thread.sleep(200);
+        assertTrue("Callback ran: " + mOutcomes, mOutcomes.isEmpty());
+    }
+
+    @Test
+    public void cancelWhileCallbackIsOnItsWayDropsIt() throws Exception {
+        final BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                callbacks.add(runnable);
+            }
+        });
+
+        Call call = httpManager.get(mServer.url("/fast"), mRecordingResponse);
+        Runnable callback = callbacks.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull("Request never completed", callback);
+
+        call.cancel();
+        callback.run();
+
+        assertTrue(call.isCanceled());
+        assertTrue("Callback ran: " + mOutcomes, mOutcomes.isEmpty());
+    }
+
+    @Test
+    public void cancelAfterCallbackRanHasNoEffect() throws Exception {
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(CallbackExecutors.direct());
+
+        Call call = httpManager.get(mServer.url("/fast"), mRecordingResponse);
+        waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return !mOutcomes.isEmpty();
+            }
+        });
+        call.cancel();
+
+        assertFalse(call.isCanceled());
+        assertEquals("response ok", mOutcomes.get(0));
+    }
+
+    @Test
+    public void slowRequestFailsAtItsDeadline() throws Exception {
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(CallbackExecutors.direct());
+
+        long startMillis = System.currentTimeMillis();
+        httpManager.get(mServer.url("/slow"), null, null, null, new RequestOptions().setDeadlineMillis(300), mRecordingResponse);
+        waitUntil(new Condition() {
+            @Override
+            public boolean isMet() {
+                return !mOutcomes.isEmpty();
+            }
+        });
+
+        assertEquals("error " + HttpError.CODE_DEADLINE_EXCEEDED, mOutcomes.get(0));
+        assertTrue(System.currentTimeMillis() - startMillis < WAIT_MILLIS / 2);
+        Thread.sleep(100);
+        assertEquals(1, mOutcomes.size());
+    }
+
+    private final HttpManager.NetworkResponse mRecordingResponse = new HttpManager.NetworkResponse() {
+        @Override
+        public void onResponse(HttpResponse response) {
+            mOutcomes.add("response " + response.getMessage());
+        }
+
+        @Override
+        public void onError(HttpError error) {
+            mOutcomes.add("error " + error.mCode);
+        }
+    };
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private static void waitUntil(Condition condition) throws InterruptedException {
+        long giveUpAtMillis = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.isMet()) {
+            assertTrue("Timed out", System.currentTimeMillis() < giveUpAtMillis);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CallbackExecutorsTest {
+    private LocalServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                outputStream.write(LocalServer.response("200 OK", "ok".getBytes("UTF-8")));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void callbacksRunOnSuppliedExecutor() throws Exception {
+        final BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                callbacks.add(runnable);
+            }
+        });
+
+        final HttpResponse[] response = new HttpResponse[1];
+        httpManager.get(mServer.url("/feed"), new HttpManager.NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+            }
+
+            @Override
+            public void onError(HttpError error) {
+            }
+        });
+
+        Runnable callback = callbacks.poll(5, TimeUnit.SECONDS);
+        assertNotNull("Callback never reached the executor", callback);
+        assertNull("Callback ran before the executor ran it", response[0]);
+
+        callback.run();
+        assertEquals("ok", response[0].getMessage());
+    }
+
+    @Test
+    public void directRunsOnCallingThread() {
+        final Thread[] ranOn = new Thread[1];
+        CallbackExecutors.direct().execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn[0] = Thread.currentThread();
+            }
+        });
+
+        assertSame(Thread.currentThread(), ranOn[0]);
+    }
+
+    @Test
+    public void threadWithoutLooperGetsMainThreadExecutor() {
+        assertSame(CallbackExecutors.mainThread(), CallbackExecutors.callingThread());
+        assertSame(CallbackExecutors.mainThread(), new HttpManager(null).getCallbackExecutor());
+    }
+}
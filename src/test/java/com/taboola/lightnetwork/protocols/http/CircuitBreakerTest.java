@@ -0,0 +1,98 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+    private static final String HOST = "failing.example.com";
+
+    @Test
+    public void opensOnceEnoughCallsFailed() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        for (int i = 0; i < 9; i++) {
+            assertTrue(circuitBreaker.allowRequest(HOST));
+            circuitBreaker.onFailure(HOST);
+        }
+        //Too few calls to judge the host yet.
+        assertTrue(circuitBreaker.allowRequest(HOST));
+        circuitBreaker.onFailure(HOST);
+
+        assertFalse(circuitBreaker.allowRequest(HOST));
+    }
+
+    @Test
+    public void staysClosedBelowFailureRate() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(circuitBreaker.allowRequest(HOST));
+            if (i % 3 == 0) {
+                circuitBreaker.onFailure(HOST);
+            } else {
+                circuitBreaker.onSuccess(HOST);
+            }
+        }
+
+        assertTrue(circuitBreaker.allowRequest(HOST));
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        //9 failures, then 20 successes push them out of the window.
+        for (int i = 0; i < 9; i++) {
+            circuitBreaker.onFailure(HOST);
+        }
+        for (int i = 0; i < 20; i++) {
+            circuitBreaker.onSuccess(HOST);
+        }
+        for (int i = 0; i < 9; i++) {
+            circuitBreaker.onFailure(HOST);
+        }
+
+        assertTrue(circuitBreaker.allowRequest(HOST));
+    }
+
+    @Test
+    public void hostsHaveSeparateCircuits() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        open(circuitBreaker, HOST);
+
+        assertFalse(circuitBreaker.allowRequest(HOST));
+        assertTrue(circuitBreaker.allowRequest("healthy.example.com"));
+    }
+
+    @Test
+    public void leastRecentlyUsedHostsAreDropped() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        open(circuitBreaker, HOST);
+
+        for (int i = 0; i < 64; i++) {
+            circuitBreaker.allowRequest("host" + i + ".example.com");
+        }
+
+        //Dropped, starts over closed.
+        assertTrue(circuitBreaker.allowRequest(HOST));
+    }
+
+    @Test
+    public void recentlyUsedHostIsKept() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        open(circuitBreaker, HOST);
+
+        for (int i = 0; i < 64; i++) {
+            circuitBreaker.allowRequest("host" + i + ".example.com");
+            assertFalse(circuitBreaker.allowRequest(HOST));
+        }
+    }
+
+    private static void open(CircuitBreaker circuitBreaker, String host) {
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onFailure(host);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPrewarmerTest {
+    private static final String HOST = "example.com";
+
+    @Test
+    public void hostBeingWarmedIsNotWarmedAgain() {
+        ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+
+        assertTrue(prewarmer.startPrewarm(HOST));
+        assertFalse(prewarmer.startPrewarm(HOST));
+        assertTrue(prewarmer.startPrewarm("other.com"));
+
+        prewarmer.onPrewarmed(HOST);
+        assertFalse(prewarmer.startPrewarm(HOST));
+        assertEquals(1, prewarmer.getStats().getPrewarmedCount());
+    }
+
+    @Test
+    public void failedWarmCanBeTriedAgain() {
+        ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+
+        assertTrue(prewarmer.startPrewarm(HOST));
+        prewarmer.onPrewarmFailed(HOST);
+
+        assertTrue(prewarmer.startPrewarm(HOST));
+    }
+
+    @Test
+    public void firstConnectToWarmHostCountsOnce() {
+        ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+        prewarmer.startPrewarm(HOST);
+        prewarmer.onPrewarmed(HOST);
+
+        prewarmer.onConnected(HOST, 1);
+        prewarmer.onConnected(HOST, 1);
+
+        assertEquals(1, prewarmer.getStats().getHitCount());
+        assertEquals(0, prewarmer.getStats().getMissCount());
+        //Warm connection used up, host may be warmed again.
+        assertTrue(prewarmer.startPrewarm(HOST));
+    }
+
+    @Test
+    public void slowConnectCountsAsMiss() {
+        ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+        prewarmer.startPrewarm(HOST);
+        prewarmer.onPrewarmed(HOST);
+
+        prewarmer.onConnected(HOST, 150);
+
+        assertEquals(0, prewarmer.getStats().getHitCount());
+        assertEquals(1, prewarmer.getStats().getMissCount());
+    }
+
+    @Test
+    public void unmeasuredConnectUsesWarmHostWithoutCounting() {
+        ConnectionPrewarmer prewarmer = new ConnectionPrewarmer();
+        prewarmer.startPrewarm(HOST);
+        prewarmer.onPrewarmed(HOST);
+
+        prewarmer.onConnected(HOST, ConnectionPrewarmer.UNKNOWN_CONNECT_MILLIS);
+        prewarmer.onConnected(HOST, 1);
+
+        assertEquals(0, prewarmer.getStats().getHitCount());
+        assertEquals(0, prewarmer.getStats().getMissCount());
+    }
+}
@@ -0,0 +1,118 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DispatcherTest {
+    private static final long WAIT_MILLIS = 2000;
+
+    private Dispatcher mDispatcher;
+    private CountDownLatch mRelease;
+    private List<String> mStarted;
+
+    @Before
+    public void setUp() {
+        mDispatcher = new Dispatcher();
+        mRelease = new CountDownLatch(1);
+        mStarted = new CopyOnWriteArrayList<>();
+    }
+
+    @Test
+    public void requestsBeyondFreeThreadsWaitInQueue() throws Exception {
+        mDispatcher.setMaxThreads(2);
+        mDispatcher.setMaxRequests(8);
+
+        for (int i = 0; i < 5; i++) {
+            mDispatcher.enqueue(new BlockingRequest("http://host" + i + ".com/", RequestPriority.NORMAL));
+        }
+
+        waitForStarted(2);
+        assertEquals(2, mDispatcher.getRunningRequestsCount());
+        assertEquals(3, mDispatcher.getQueuedRequestsCount());
+
+        mRelease.countDown();
+        waitForStarted(5);
+    }
+
+    @Test
+    public void perHostLimitHoldsBackOnlyThatHost() throws Exception {
+        mDispatcher.setMaxThreads(4); //Enough threads, only the per host limit can hold a request back.
+        mDispatcher.setMaxRequestsPerHost(2);
+
+        mDispatcher.enqueue(new BlockingRequest("http://same.com/1", RequestPriority.NORMAL));
+        mDispatcher.enqueue(new BlockingRequest("http://same.com/2", RequestPriority.NORMAL));
+        mDispatcher.enqueue(new BlockingRequest("http://same.com/3", RequestPriority.NORMAL));
+        mDispatcher.enqueue(new BlockingRequest("http://other.com/1", RequestPriority.NORMAL));
+
+        waitForStarted(3);
+        assertEquals(3, mDispatcher.getRunningRequestsCount());
+        assertEquals(1, mDispatcher.getQueuedRequestsCount());
+        assertTrue(mStarted.contains("http://other.com/1"));
+        assertFalse(mStarted.contains("http://same.com/3"));
+
+        mRelease.countDown();
+        waitForStarted(4);
+        assertEquals("http://same.com/3", mStarted.get(3));
+    }
+
+    @Test
+    public void highPriorityRequestRunsBeforeEarlierLowOnesOnceThreadIsFree() throws Exception {
+        mDispatcher.setMaxThreads(1);
+
+        mDispatcher.enqueue(new BlockingRequest("http://host.com/first", RequestPriority.NORMAL));
+        waitForStarted(1);
+        mDispatcher.enqueue(new BlockingRequest("http://host.com/low1", RequestPriority.LOW));
+        mDispatcher.enqueue(new BlockingRequest("http://host.com/low2", RequestPriority.LOW));
+        mDispatcher.enqueue(new BlockingRequest("http://host.com/high", RequestPriority.HIGH));
+
+        mRelease.countDown();
+        waitForStarted(4);
+        assertEquals("http://host.com/high", mStarted.get(1));
+        assertEquals("http://host.com/low1", mStarted.get(2));
+        assertEquals("http://host.com/low2", mStarted.get(3));
+    }
+
+    private void waitForStarted(int count) throws InterruptedException {
+        long giveUpAtMillis = System.currentTimeMillis() + WAIT_MILLIS;
+        while (mStarted.size() < count && System.currentTimeMillis() < giveUpAtMillis) {
+            Thread.sleep(10);
+        }
+        assertTrue("Started only " + mStarted.size() + " of " + count, mStarted.size() >= count);
+        Thread.sleep(50); //Nothing more should start meanwhile.
+    }
+
+    /**
+     * Holds its worker thread until mRelease opens.
+     */
+    private class BlockingRequest extends HttpRequest {
+        BlockingRequest(String url, int priority) {
+            super(0, null, null, null, CallbackExecutors.direct());
+            mUrl = url;
+            mPriority = priority;
+        }
+
+        @Override
+        void run() {
+            mStarted.add(mUrl);
+            try {
+                mRelease.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        void protocolSpecificConnectionSetup(HttpURLConnection httpUrlConnection) {
+        }
+    }
+}
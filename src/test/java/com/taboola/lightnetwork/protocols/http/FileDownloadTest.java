@@ -0,0 +1,188 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileDownloadTest {
+    private static final int FILE_LENGTH = 10000;
+    private static final int PARTIAL_LENGTH = 4000;
+    private static final String ETAG = "\"v2\"";
+
+    private LocalServer mServer;
+    private byte[] mFile;
+    private File mDirectory;
+    private File mDestination;
+    private File mPartialFile;
+    private File mValidatorFile;
+    private final List<Long> mProgress = new CopyOnWriteArrayList<>();
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private HttpError mError;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mFile = new byte[FILE_LENGTH];
+        for (int i = 0; i < FILE_LENGTH; i++) {
+            mFile[i] = (byte) i;
+        }
+
+        //Serves the file, honoring Range only while If-Range still matches the current ETag, like a real server.
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                String range = request.getHeader("Range");
+                if (range != null && ETAG.equals(request.getHeader("If-Range"))) {
+                    int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                    outputStream.write(LocalServer.response("206 Partial Content", Arrays.copyOfRange(mFile, start, FILE_LENGTH),
+                            "Content-Range", "bytes " + start + "-" + (FILE_LENGTH - 1) + "/" + FILE_LENGTH, "ETag", ETAG));
+                } else {
+                    outputStream.write(LocalServer.response("200 OK", mFile, "ETag", ETAG));
+                }
+            }
+        });
+
+        mDirectory = File.createTempFile("download", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdir());
+        mDestination = new File(mDirectory, "file.bin");
+        mPartialFile = new File(mDirectory, "file.bin.part");
+        mValidatorFile = new File(mDirectory, "file.bin.part.validator");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        mDirectory.delete();
+    }
+
+    @Test
+    public void firstDownloadFetchesWholeFile() throws Exception {
+        download();
+
+        assertNull(mServer.getRequests().get(0).getHeader("Range"));
+        assertEquals("identity", mServer.getRequests().get(0).getHeader("Accept-Encoding"));
+        assertArrayEquals(mFile, read(mDestination));
+        assertFalse(mPartialFile.exists());
+        assertFalse(mValidatorFile.exists());
+        assertEquals(Long.valueOf(0), mProgress.get(0));
+        assertEquals(Long.valueOf(FILE_LENGTH), mProgress.get(mProgress.size() - 1));
+    }
+
+    @Test
+    public void partialFileResumesWith206() throws Exception {
+        write(mPartialFile, Arrays.copyOfRange(mFile, 0, PARTIAL_LENGTH));
+        write(mValidatorFile, ETAG.getBytes("UTF-8"));
+
+        download();
+
+        LocalServer.Request request = mServer.getRequests().get(0);
+        assertEquals("bytes=" + PARTIAL_LENGTH + "-", request.getHeader("Range"));
+        assertEquals(ETAG, request.getHeader("If-Range"));
+        assertArrayEquals(mFile, read(mDestination));
+        assertFalse(mPartialFile.exists());
+        assertFalse(mValidatorFile.exists());
+        assertEquals(Long.valueOf(PARTIAL_LENGTH), mProgress.get(0)); //Counts the bytes already on disk.
+        assertEquals(Long.valueOf(FILE_LENGTH), mProgress.get(mProgress.size() - 1));
+    }
+
+    @Test
+    public void changedFileRestartsWith200() throws Exception {
+        byte[] stale = new byte[PARTIAL_LENGTH];
+        Arrays.fill(stale, (byte) 0x7f);
+        write(mPartialFile, stale);
+        write(mValidatorFile, "\"v1\"".getBytes("UTF-8"));
+
+        download();
+
+        assertEquals("\"v1\"", mServer.getRequests().get(0).getHeader("If-Range"));
+        assertArrayEquals(mFile, read(mDestination)); //Stale bytes replaced, not appended to.
+        assertFalse(mPartialFile.exists());
+        assertEquals(Long.valueOf(0), mProgress.get(0));
+    }
+
+    @Test
+    public void partialFileWithoutValidatorStartsOver() throws Exception {
+        write(mPartialFile, Arrays.copyOfRange(mFile, 0, PARTIAL_LENGTH));
+
+        download();
+
+        assertNull(mServer.getRequests().get(0).getHeader("Range"));
+        assertArrayEquals(mFile, read(mDestination));
+    }
+
+    private void download() throws InterruptedException {
+        new HttpManager(null).download(mServer.url("/file.bin"), mDestination, new HttpManager.DownloadNetworkResponse() {
+            @Override
+            public void onProgress(long downloadedBytes, long totalBytes) {
+                assertEquals(FILE_LENGTH, totalBytes);
+                mProgress.add(downloadedBytes);
+            }
+
+            @Override
+            public void onComplete(File file, HttpResponse response) {
+                mDone.countDown();
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                mError = error;
+                mDone.countDown();
+            }
+        });
+
+        assertTrue("No callback", mDone.await(5, TimeUnit.SECONDS));
+        assertNull(mError);
+        assertEquals(1, mServer.getRequests().size());
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Bodies as the server receives them.
+ */
+public class HttpPostBodyTest {
+    private static final String NON_ASCII = "caf\u00e9 \u65e5\u672c \ud83d\ude00"; //Two and three byte characters, and a surrogate pair.
+
+    private LocalServer mServer;
+    private HttpManager mHttpManager;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                outputStream.write(LocalServer.response("200 OK", new byte[0]));
+            }
+        });
+        mHttpManager = new HttpManager(null);
+        mHttpManager.setCallbackExecutor(CallbackExecutors.direct());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void jsonBodyIsUtf8WithFixedLength() throws Exception {
+        JSONObject event = new JSONObject().put("name", NON_ASCII);
+
+        LocalServer.Request request = post(event, null);
+
+        assertEquals("application/json; charset=utf-8", request.getHeader("Content-Type"));
+        assertNull(request.getHeader("Content-Encoding"));
+        assertNull(request.getHeader("Transfer-Encoding"));
+        assertEquals(String.valueOf(request.mBody.length), request.getHeader("Content-Length"));
+        assertEquals(NON_ASCII, new JSONObject(new String(request.mBody, "UTF-8")).getString("name"));
+    }
+
+    @Test
+    public void gzipJsonBodyDecodes() throws Exception {
+        JSONObject event = new JSONObject().put("name", NON_ASCII);
+
+        LocalServer.Request request = post(event, new RequestOptions().setGzipBody(true));
+
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertEquals(String.valueOf(request.mBody.length), request.getHeader("Content-Length"));
+        assertEquals(NON_ASCII, new JSONObject(new String(gunzip(request.mBody), "UTF-8")).getString("name"));
+    }
+
+    @Test
+    public void requestBodyWithKnownLengthIsSentAsIs() throws Exception {
+        byte[] content = NON_ASCII.getBytes("UTF-8");
+
+        LocalServer.Request request = post(RequestBody.create("text/plain; charset=utf-8", content), null);
+
+        assertEquals("text/plain; charset=utf-8", request.getHeader("Content-Type"));
+        assertEquals(String.valueOf(content.length), request.getHeader("Content-Length"));
+        assertEquals(NON_ASCII, new String(request.mBody, "UTF-8"));
+    }
+
+    @Test
+    public void gzipRequestBodyIsChunkedAndDecodes() throws Exception {
+        LocalServer.Request request = post(RequestBody.create("text/plain; charset=utf-8", NON_ASCII), new RequestOptions().setGzipBody(true));
+
+        assertEquals("gzip", request.getHeader("Content-Encoding"));
+        assertEquals("chunked", request.getHeader("Transfer-Encoding"));
+        assertEquals(NON_ASCII, new String(gunzip(request.mBody), "UTF-8"));
+    }
+
+    private LocalServer.Request post(JSONObject jsonBody, RequestOptions options) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        mHttpManager.post(mServer.url("/events"), jsonBody, null, null, null, options, countDownOn(done));
+        return awaitRequest(done);
+    }
+
+    private LocalServer.Request post(RequestBody requestBody, RequestOptions options) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        mHttpManager.post(mServer.url("/events"), requestBody, null, null, null, options, countDownOn(done));
+        return awaitRequest(done);
+    }
+
+    private LocalServer.Request awaitRequest(CountDownLatch done) throws InterruptedException {
+        assertTrue("No callback", done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, mServer.getRequests().size());
+        LocalServer.Request request = mServer.getRequests().get(0);
+        assertEquals("POST", request.mMethod);
+        return request;
+    }
+
+    private static HttpManager.NetworkResponse countDownOn(final CountDownLatch done) {
+        return new HttpManager.NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse response) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                done.countDown();
+            }
+        };
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
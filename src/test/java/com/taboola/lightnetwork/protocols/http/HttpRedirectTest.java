@@ -0,0 +1,126 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Redirects on a local server. 127.0.0.1 and localhost reach it under different host names.
+ */
+public class HttpRedirectTest {
+    private static final String CALLER_HEADER = "X-Caller-Token";
+    private static final Map<String, String> CALLER_HEADERS = Collections.singletonMap(CALLER_HEADER, "secret");
+
+    private ServerSocket mServerSocket;
+    private volatile String mReceivedCallerHeader;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mServerSocket = new ServerSocket(0); //All interfaces, localhost may resolve to ::1.
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        serve(mServerSocket.accept());
+                    }
+                } catch (IOException e) {
+                    //Server socket closed by tearDown.
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServerSocket.close();
+    }
+
+    @Test
+    public void callerHeadersFollowRedirectOnSameHost() throws Exception {
+        assertEquals("done", get("http://127.0.0.1:" + port() + "/start-same-host").getMessage());
+        assertEquals("secret", mReceivedCallerHeader);
+    }
+
+    @Test
+    public void callerHeadersAreNotSentToAnotherHost() throws Exception {
+        assertEquals("done", get("http://127.0.0.1:" + port() + "/start-other-host").getMessage());
+        assertNull(mReceivedCallerHeader);
+    }
+
+    private int port() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * One request per connection: /start-* redirect to /target, which records the caller header.
+     */
+    private void serve(Socket socket) throws IOException {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String path = reader.readLine().split(" ")[1];
+            String callerHeader = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                if (line.toLowerCase().startsWith(CALLER_HEADER.toLowerCase() + ":")) {
+                    callerHeader = line.substring(CALLER_HEADER.length() + 1).trim();
+                }
+            }
+
+            String response;
+            if (path.equals("/start-same-host")) {
+                response = "HTTP/1.1 302 Found\r\nLocation: http://127.0.0.1:" + port() + "/target\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+            } else if (path.equals("/start-other-host")) {
+                response = "HTTP/1.1 302 Found\r\nLocation: http://localhost:" + port() + "/target\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+            } else {
+                mReceivedCallerHeader = callerHeader;
+                response = "HTTP/1.1 200 OK\r\nContent-Length: 4\r\nConnection: close\r\n\r\ndone";
+            }
+
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(response.getBytes("UTF-8"));
+            outputStream.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private HttpResponse get(String url) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        HttpGet httpGet = new HttpGet(new HeadersManager(), new CookiesTracker(null), new Dispatcher(), CallbackExecutors.direct(), null, 2000);
+        httpGet.get(url, CALLER_HEADERS, null, null, null, new HttpManager.NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                done.countDown();
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                done.countDown();
+            }
+        });
+
+        assertTrue("No callback", done.await(5, TimeUnit.SECONDS));
+        return response[0];
+    }
+}
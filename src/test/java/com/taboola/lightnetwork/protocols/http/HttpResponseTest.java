@@ -0,0 +1,64 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HttpResponseTest {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void messageIsDecodedOnFirstGetMessage() throws Exception {
+        HttpResponse response = new HttpResponse(200, "h\u00e9llo".getBytes("UTF-8"), null, null);
+
+        assertNull(response.mMessage); //Body held once, as bytes, until text is asked for.
+        assertEquals("h\u00e9llo", response.getMessage());
+        assertEquals("h\u00e9llo", response.mMessage);
+        assertEquals("UTF-8", response.getCharset());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void assignedMessageIsReturned() throws Exception {
+        HttpResponse response = new HttpResponse(200, "body".getBytes("UTF-8"), null, null);
+        response.mMessage = "replaced";
+
+        assertEquals("replaced", response.getMessage());
+    }
+
+    @Test
+    public void bodyIsDecodedWithResponseCharset() throws Exception {
+        HttpResponse response = new HttpResponse(200, "h\u00e9llo".getBytes("ISO-8859-1"), "ISO-8859-1", null);
+
+        assertEquals("h\u00e9llo", response.getMessage());
+    }
+
+    @Test
+    public void unknownCharsetFallsBackToUtf8() throws Exception {
+        HttpResponse response = new HttpResponse(200, "h\u00e9llo".getBytes("UTF-8"), "no-such-charset", null);
+
+        assertEquals("h\u00e9llo", response.getMessage());
+    }
+
+    @Test
+    public void noBodyMeansNoMessage() {
+        HttpResponse response = new HttpResponse(204, (byte[]) null, null, null);
+
+        assertNull(response.getMessage());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    public void headerLookupIgnoresCase() {
+        Map<String, List<String>> headers = Collections.singletonMap("Content-Type", Collections.singletonList("text/plain"));
+        HttpResponse response = new HttpResponse(200, "", headers);
+
+        assertEquals("text/plain", response.getHeader("content-type"));
+        assertNull(response.getHeader("ETag"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyTrackerTest {
+    private static final String HOST = "example.com";
+
+    @Test
+    public void tooFewSamplesGiveNoPercentile() {
+        LatencyTracker latencyTracker = new LatencyTracker();
+        for (int i = 0; i < 15; i++) {
+            latencyTracker.record(HOST, 100);
+        }
+
+        assertEquals(LatencyTracker.NOT_ENOUGH_SAMPLES, latencyTracker.getPercentileMillis(HOST, 95));
+        assertEquals(LatencyTracker.NOT_ENOUGH_SAMPLES, latencyTracker.getPercentileMillis("unknown.com", 95));
+    }
+
+    @Test
+    public void percentileIsNearestRankOfSamples() {
+        LatencyTracker latencyTracker = new LatencyTracker();
+        //Recorded out of order: 1..20 ms.
+        for (int i = 20; i >= 1; i--) {
+            latencyTracker.record(HOST, i);
+        }
+
+        assertEquals(1, latencyTracker.getPercentileMillis(HOST, 1));
+        assertEquals(10, latencyTracker.getPercentileMillis(HOST, 50));
+        assertEquals(19, latencyTracker.getPercentileMillis(HOST, 95));
+        assertEquals(20, latencyTracker.getPercentileMillis(HOST, 99));
+    }
+
+    @Test
+    public void onlyRecentSamplesCount() {
+        LatencyTracker latencyTracker = new LatencyTracker();
+        for (int i = 0; i < 64; i++) {
+            latencyTracker.record(HOST, 1000);
+        }
+        for (int i = 0; i < 64; i++) {
+            latencyTracker.record(HOST, 10);
+        }
+
+        assertEquals(10, latencyTracker.getPercentileMillis(HOST, 99));
+    }
+
+    @Test
+    public void hostsAreTrackedSeparately() {
+        LatencyTracker latencyTracker = new LatencyTracker();
+        for (int i = 0; i < 16; i++) {
+            latencyTracker.record(HOST, 10);
+            latencyTracker.record("slow.com", 500);
+        }
+
+        assertEquals(10, latencyTracker.getPercentileMillis(HOST, 50));
+        assertEquals(500, latencyTracker.getPercentileMillis("slow.com", 50));
+    }
+}
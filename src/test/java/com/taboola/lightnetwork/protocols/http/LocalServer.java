@@ -0,0 +1,167 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Minimal Http/1.1 server on a free local port for tests, one request per connection.
+ * Each connection is served on its own thread, so a handler may hold its response back.
+ */
+public class LocalServer {
+    private final ServerSocket mServerSocket;
+    private final Handler mHandler;
+    private final List<Request> mRequests = new CopyOnWriteArrayList<>();
+
+    public interface Handler {
+        /**
+         * Writes the whole raw response, status line included.
+         */
+        void serve(Request request, OutputStream outputStream) throws IOException;
+    }
+
+    public static class Request {
+        public String mMethod;
+        public String mPath;
+        public final Map<String, String> mHeaders = new HashMap<>(); //Lower case names.
+        public byte[] mBody;
+
+        public String getHeader(String name) {
+            return mHeaders.get(name.toLowerCase(Locale.US));
+        }
+    }
+
+    public LocalServer(Handler handler) throws IOException {
+        mHandler = handler;
+        mServerSocket = new ServerSocket(0);
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = mServerSocket.accept();
+                        Thread connectionThread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        connectionThread.setDaemon(true);
+                        connectionThread.start();
+                    }
+                } catch (IOException e) {
+                    //Server socket closed.
+                }
+            }
+        });
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+    }
+
+    public List<Request> getRequests() {
+        return mRequests;
+    }
+
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    /**
+     * @return - Raw response with the given status line suffix, e.g. "200 OK", headers and body.
+     */
+    public static byte[] response(String status, byte[] body, String... headers) throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        for (int i = 0; i < headers.length; i += 2) {
+            head.append(headers[i]).append(": ").append(headers[i + 1]).append("\r\n");
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\nConnection: close\r\n\r\n");
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        response.write(head.toString().getBytes("US-ASCII"));
+        response.write(body);
+        return response.toByteArray();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            Request request = new Request();
+            String[] requestLine = readLine(inputStream).split(" ");
+            request.mMethod = requestLine[0];
+            request.mPath = requestLine[1];
+
+            String line;
+            while (!(line = readLine(inputStream)).isEmpty()) {
+                int colon = line.indexOf(':');
+                request.mHeaders.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+            }
+            request.mBody = readBody(inputStream, request);
+            mRequests.add(request);
+
+            OutputStream outputStream = socket.getOutputStream();
+            mHandler.serve(request, outputStream);
+            outputStream.flush();
+        } catch (IOException e) {
+            //Client went away.
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //Already closed.
+            }
+        }
+    }
+
+    private static byte[] readBody(InputStream inputStream, Request request) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String contentLength = request.getHeader("Content-Length");
+        if (contentLength != null) {
+            copy(inputStream, body, Integer.parseInt(contentLength));
+        } else if ("chunked".equalsIgnoreCase(request.getHeader("Transfer-Encoding"))) {
+            int chunkLength;
+            while ((chunkLength = Integer.parseInt(readLine(inputStream).split(";")[0].trim(), 16)) > 0) {
+                copy(inputStream, body, chunkLength);
+                readLine(inputStream);
+            }
+            readLine(inputStream);
+        }
+        return body.toByteArray();
+    }
+
+    private static void copy(InputStream inputStream, ByteArrayOutputStream outputStream, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            int read = inputStream.read();
+            if (read == -1) {
+                throw new IOException("Body ended early");
+            }
+            outputStream.write(read);
+        }
+    }
+
+    private static String readLine(InputStream inputStream) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int read;
+        while ((read = inputStream.read()) != -1 && read != '\n') {
+            if (read != '\r') {
+                line.append((char) read);
+            }
+        }
+        if (read == -1 && line.length() == 0) {
+            throw new IOException("Connection closed");
+        }
+        return line.toString();
+    }
+}
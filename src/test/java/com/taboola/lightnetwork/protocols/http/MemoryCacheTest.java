@@ -0,0 +1,199 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Freshness comes from the Age header alone, entries never age while a test runs.
+ */
+public class MemoryCacheTest {
+    private static final String URL = "http://127.0.0.1:1/config"; //Nothing listens on port 1, a network attempt fails.
+    private static final long MAX_BYTES = 64 * 1024;
+
+    private MemoryCache mMemoryCache;
+
+    @Before
+    public void setUp() {
+        System.setProperty("http.agent", "LightNetwork test");
+        mMemoryCache = new MemoryCache(MAX_BYTES);
+    }
+
+    @Test
+    public void freshResponseIsHit() {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60"));
+
+        assertEquals("cached", mMemoryCache.get(URL, CachePolicy.NOT_SET).getMessage());
+        assertNull(mMemoryCache.get("http://127.0.0.1:1/other", CachePolicy.NOT_SET));
+
+        MemoryCacheStats stats = mMemoryCache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getEntryCount());
+    }
+
+    @Test
+    public void responseAlreadyAsOldAsItsMaxAgeIsMiss() {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60", "Age", "60"));
+
+        assertNull(mMemoryCache.get(URL, CachePolicy.NOT_SET));
+        assertEquals(0, mMemoryCache.getStats().getEntryCount());
+    }
+
+    @Test
+    public void callerMaxAgeIsHonoured() {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60", "Age", "30"));
+
+        assertNull(mMemoryCache.get(URL, 10));
+        assertNotNull(mMemoryCache.get(URL, 40));
+        assertNotNull(mMemoryCache.get(URL, CachePolicy.NOT_SET));
+    }
+
+    @Test
+    public void uncacheableResponsesAreNotKept() {
+        assertNotKept(response(200, "cached"));
+        assertNotKept(response(404, "cached", "Cache-Control", "max-age=60"));
+        assertNotKept(response(200, "cached", "Cache-Control", "no-store, max-age=60"));
+        assertNotKept(response(200, "cached", "Cache-Control", "max-age=60, no-cache"));
+        assertNotKept(response(200, "cached", "Cache-Control", "private, max-age=60"));
+        assertNotKept(response(200, "cached", "Cache-Control", "max-age=60", "Vary", "Accept-Encoding, Cookie"));
+    }
+
+    @Test
+    public void varyOnAcceptEncodingIsKept() {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60", "Vary", "Accept-Encoding"));
+
+        assertNotNull(mMemoryCache.get(URL, CachePolicy.NOT_SET));
+    }
+
+    @Test
+    public void uncacheableResponseDropsOlderEntry() {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60"));
+        mMemoryCache.put(URL, response(200, "newer", "Cache-Control", "no-store"));
+
+        assertNull(mMemoryCache.get(URL, CachePolicy.NOT_SET));
+        assertEquals(0, mMemoryCache.getStats().getSizeBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        MemoryCache memoryCache = new MemoryCache(4 * 1024);
+        String body = new String(new char[700]).replace('\0', 'a'); //With overhead just under a quarter, four entries fit.
+        memoryCache.put(URL + "/1", response(200, body, "Cache-Control", "max-age=60"));
+        memoryCache.put(URL + "/2", response(200, body, "Cache-Control", "max-age=60"));
+        memoryCache.put(URL + "/3", response(200, body, "Cache-Control", "max-age=60"));
+        memoryCache.get(URL + "/1", CachePolicy.NOT_SET);
+        memoryCache.put(URL + "/4", response(200, body, "Cache-Control", "max-age=60"));
+        memoryCache.put(URL + "/5", response(200, body, "Cache-Control", "max-age=60"));
+
+        assertNotNull(memoryCache.get(URL + "/1", CachePolicy.NOT_SET));
+        assertNull(memoryCache.get(URL + "/2", CachePolicy.NOT_SET));
+
+        MemoryCacheStats stats = memoryCache.getStats();
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(4, stats.getEntryCount());
+        assertTrue(stats.getSizeBytes() <= 4 * 1024);
+    }
+
+    @Test
+    public void entryLargerThanItsShareIsNotKept() {
+        MemoryCache memoryCache = new MemoryCache(4 * 1024);
+        memoryCache.put(URL, response(200, new String(new char[2048]).replace('\0', 'a'), "Cache-Control", "max-age=60"));
+
+        assertNull(memoryCache.get(URL, CachePolicy.NOT_SET));
+        assertEquals(0, memoryCache.getStats().getEntryCount());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void everyHitIsItsOwnResponse() {
+        HttpResponse original = response(200, "cached", "Cache-Control", "max-age=60");
+        mMemoryCache.put(URL, original);
+        original.mMessage = "changed by the first caller";
+
+        HttpResponse first = mMemoryCache.get(URL, CachePolicy.NOT_SET);
+        first.mMessage = null;
+        first.mCode = 500;
+        HttpResponse second = mMemoryCache.get(URL, CachePolicy.NOT_SET);
+
+        assertNotSame(first, second);
+        assertEquals(200, second.mCode);
+        assertNull(second.mMessage); //Only the bytes are kept, each hit decodes its own text.
+        assertEquals("cached", second.getMessage());
+        assertEquals("max-age=60", second.getHeader("Cache-Control"));
+    }
+
+    @Test
+    public void requestWithoutCallerHeadersIsAnsweredFromMemory() throws Exception {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60"));
+
+        assertEquals("cached", get(null, null).getMessage());
+    }
+
+    @Test
+    public void requestWithCallerHeadersSkipsMemory() throws Exception {
+        mMemoryCache.put(URL, response(200, "cached", "Cache-Control", "max-age=60"));
+
+        assertNull(get(Collections.singletonMap("Authorization", "Bearer other-user"), null));
+        assertNull(get(null, "group"));
+        assertEquals(0, mMemoryCache.getStats().getHitCount());
+    }
+
+    private void assertNotKept(HttpResponse response) {
+        mMemoryCache.put(URL, response);
+        assertNull(mMemoryCache.get(URL, CachePolicy.NOT_SET));
+    }
+
+    /**
+     * @param headers - Header name and value pairs.
+     */
+    private static HttpResponse response(int code, String body, String... headers) {
+        Map<String, List<String>> headerFields = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerFields.put(headers[i], Collections.singletonList(headers[i + 1]));
+        }
+        try {
+            return new HttpResponse(code, body.getBytes("UTF-8"), null, headerFields);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return - The response, null if the request failed.
+     */
+    private HttpResponse get(Map<String, String> requestHeaders, String trackHeadersByGroup) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final HttpResponse[] response = new HttpResponse[1];
+        HttpGet httpGet = new HttpGet(new HeadersManager(), new CookiesTracker(null), new Dispatcher(), CallbackExecutors.direct(), null, 2000);
+        httpGet.mMemoryCache = mMemoryCache;
+        httpGet.get(URL, requestHeaders, null, trackHeadersByGroup, null, new HttpManager.NetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse httpResponse) {
+                response[0] = httpResponse;
+                done.countDown();
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                done.countDown();
+            }
+        });
+
+        assertTrue("No callback", done.await(5, TimeUnit.SECONDS));
+        return response[0];
+    }
+}
@@ -0,0 +1,163 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkFutureTest {
+
+    @Test
+    public void thenApplyTransformsResult() {
+        NetworkFuture<Integer> future = NetworkFuture.completed("abc").thenApply(new NetworkFuture.Function<String, Integer>() {
+            @Override
+            public Integer apply(String input) {
+                return input.length();
+            }
+        });
+
+        assertEquals(3, (int) new Outcome<Integer>(future).mResult);
+    }
+
+    @Test
+    public void thenApplyExceptionFailsWithProcessingFailed() {
+        NetworkFuture<Integer> future = NetworkFuture.completed("abc").thenApply(new NetworkFuture.Function<String, Integer>() {
+            @Override
+            public Integer apply(String input) {
+                throw new IllegalStateException("bad input");
+            }
+        });
+
+        assertEquals(HttpError.CODE_PROCESSING_FAILED, new Outcome<Integer>(future).mError.mCode);
+    }
+
+    @Test
+    public void allOfKeepsOrderOfFutures() {
+        NetworkFuture<List<String>> all = NetworkFuture.allOf(Arrays.asList(NetworkFuture.completed("a"), NetworkFuture.completed("b")));
+
+        assertEquals(Arrays.asList("a", "b"), new Outcome<List<String>>(all).mResult);
+    }
+
+    @Test
+    public void allOfFailureCancelsOtherFutures() {
+        NetworkFuture<String> pending = new NetworkFuture<>();
+        NetworkFuture<List<String>> all = NetworkFuture.allOf(Arrays.asList(pending, NetworkFuture.<String>failed(new HttpError(500, "error"))));
+
+        assertEquals(500, new Outcome<List<String>>(all).mError.mCode);
+        assertTrue(pending.isCanceled());
+    }
+
+    @Test
+    public void withTimeoutFailsAndCancelsSlowFuture() throws Exception {
+        NetworkFuture<String> pending = new NetworkFuture<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final HttpError[] error = new HttpError[1];
+        pending.withTimeout(20).addListener(new NetworkFuture.Listener<String>() {
+            @Override
+            public void onSuccess(String result) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(HttpError failure) {
+                error[0] = failure;
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(HttpError.CODE_DEADLINE_EXCEEDED, error[0].mCode);
+
+        //Source is canceled right after the timeout failure is delivered, on the timer thread.
+        long waitUntil = System.currentTimeMillis() + 2000;
+        while (! pending.isCanceled() && System.currentTimeMillis() < waitUntil) {
+            Thread.sleep(5);
+        }
+        assertTrue(pending.isCanceled());
+    }
+
+    @Test
+    public void withTimeoutPassesFastResultThrough() {
+        NetworkFuture<String> future = NetworkFuture.completed("fast").withTimeout(10000);
+
+        assertEquals("fast", new Outcome<String>(future).mResult);
+        assertFalse(future.isCanceled());
+    }
+
+    @Test
+    public void cancelingOneBranchKeepsSharedSource() {
+        NetworkFuture<String> source = new NetworkFuture<>();
+        NetworkFuture<Integer> canceledBranch = source.thenApply(LENGTH);
+        NetworkFuture<Integer> liveBranch = source.thenApply(LENGTH);
+
+        canceledBranch.cancel();
+        assertFalse(source.isCanceled());
+
+        source.complete("abc");
+        assertEquals(HttpError.CODE_CANCELED, new Outcome<Integer>(canceledBranch).mError.mCode);
+        assertEquals(3, (int) new Outcome<Integer>(liveBranch).mResult);
+    }
+
+    @Test
+    public void cancelingEveryBranchCancelsSource() {
+        NetworkFuture<String> source = new NetworkFuture<>();
+        NetworkFuture<Integer> first = source.thenApply(LENGTH);
+        NetworkFuture<String> second = source.withTimeout(10000);
+
+        first.cancel();
+        first.cancel(); //Releases the source only once.
+        assertFalse(source.isCanceled());
+
+        second.cancel();
+        assertTrue(source.isCanceled());
+    }
+
+    @Test
+    public void allOfFailureKeepsFutureOtherBranchesNeed() {
+        NetworkFuture<String> shared = new NetworkFuture<>();
+        NetworkFuture<Integer> otherBranch = shared.thenApply(LENGTH);
+        NetworkFuture<List<String>> all = NetworkFuture.allOf(Arrays.asList(shared, NetworkFuture.<String>failed(new HttpError(500, "error"))));
+
+        assertEquals(500, new Outcome<List<String>>(all).mError.mCode);
+        assertFalse(shared.isCanceled());
+
+        shared.complete("abcd");
+        assertEquals(4, (int) new Outcome<Integer>(otherBranch).mResult);
+    }
+
+    private static final NetworkFuture.Function<String, Integer> LENGTH = new NetworkFuture.Function<String, Integer>() {
+        @Override
+        public Integer apply(String input) {
+            return input.length();
+        }
+    };
+
+    /**
+     * Outcome of an already completed future.
+     */
+    private static class Outcome<T> {
+        T mResult;
+        HttpError mError;
+
+        Outcome(NetworkFuture<T> future) {
+            assertTrue(future.isDone());
+            future.addListener(new NetworkFuture.Listener<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    mResult = result;
+                }
+
+                @Override
+                public void onFailure(HttpError error) {
+                    mError = error;
+                }
+            });
+        }
+    }
+}
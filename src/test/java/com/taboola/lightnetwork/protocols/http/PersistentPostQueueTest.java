@@ -0,0 +1,168 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import android.content.ContextWrapper;
+import android.content.pm.PackageManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentPostQueueTest {
+    private static final long MAX_JOURNAL_BYTES = 4096;
+
+    private File mFilesDir;
+    private File mJournalFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFilesDir = File.createTempFile("journal", "");
+        assertTrue(mFilesDir.delete() && mFilesDir.mkdirs());
+        mJournalFile = new File(new File(mFilesDir, "lightnetwork"), "outbound_posts.journal");
+        assertTrue(mJournalFile.getParentFile().mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(mFilesDir);
+    }
+
+    @Test
+    public void replaysPendingPostsFromJournalInOrder() throws Exception {
+        writeJournal(added(1, "first"),
+                added(2, "second"),
+                added(3, "third"),
+                "D 2\n",
+                "A {\"id\":4,\"url\":\"http://cut"); //Process died mid write.
+
+        RecordingSender sender = new RecordingSender();
+        new PersistentPostQueue(new TestContext(), MAX_JOURNAL_BYTES, sender);
+
+        assertEquals(Arrays.asList("first", "third"), sender.awaitBodies(2));
+        assertEquals(1, sender.mPosts.get(0).mId);
+        assertEquals(3, sender.mPosts.get(1).mId);
+    }
+
+    @Test
+    public void journaledPostKeepsItsFields() throws Exception {
+        PersistentPostQueue.OutboundPost post = new PersistentPostQueue.OutboundPost("http://host/path", "[1,2]", true,
+                Collections.singletonMap("X-Header", "value"), "trackKey", "trackGroup", true);
+        post.mId = 7;
+
+        PersistentPostQueue.OutboundPost parsed = PersistentPostQueue.OutboundPost.fromJson(new org.json.JSONObject(post.toJson()));
+
+        assertEquals(7, parsed.mId);
+        assertEquals("http://host/path", parsed.mUrl);
+        assertEquals("[1,2]", parsed.mBody);
+        assertTrue(parsed.mIsJsonArrayBody);
+        assertEquals("value", parsed.mRequestHeaders.get("X-Header"));
+        assertEquals("trackKey", parsed.mTrackHeadersKey);
+        assertEquals("trackGroup", parsed.mTrackHeadersByGroup);
+        assertTrue(parsed.mGzipBody);
+    }
+
+    @Test
+    public void postLargerThanJournalIsNotJournaled() throws Exception {
+        char[] largeBody = new char[(int) MAX_JOURNAL_BYTES];
+        Arrays.fill(largeBody, 'x');
+
+        RecordingSender sender = new RecordingSender();
+        sender.mFailingUrl = "http://host/large";
+        PersistentPostQueue queue = new PersistentPostQueue(new TestContext(), MAX_JOURNAL_BYTES, sender);
+        queue.post(new PersistentPostQueue.OutboundPost("http://host/large", new String(largeBody), false, null, null, null, false), null);
+        sender.awaitBodies(1);
+
+        //Had the large POST been journaled, this one would be queued behind it and the large one replayed first.
+        queue.post(new PersistentPostQueue.OutboundPost("http://host/small", "small", false, null, null, null, false), null);
+
+        assertEquals("small", sender.awaitBodies(2).get(1));
+        assertFalse(mJournalFile.exists() && mJournalFile.length() > 0);
+    }
+
+    private static String added(long id, String body) throws Exception {
+        PersistentPostQueue.OutboundPost post = new PersistentPostQueue.OutboundPost("http://host/" + id, body, false, null, null, null, false);
+        post.mId = id;
+        return "A " + post.toJson() + '\n';
+    }
+
+    private void writeJournal(String... lines) throws Exception {
+        FileOutputStream outputStream = new FileOutputStream(mJournalFile);
+        for (String line : lines) {
+            outputStream.write(line.getBytes("UTF-8"));
+        }
+        outputStream.close();
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * Files in the temp dir, no network state permission so every POST is attempted.
+     */
+    private class TestContext extends ContextWrapper {
+        TestContext() {
+            super(null);
+        }
+
+        @Override
+        public File getFilesDir() {
+            return mFilesDir;
+        }
+
+        @Override
+        public int checkPermission(String permission, int pid, int uid) {
+            return PackageManager.PERMISSION_DENIED;
+        }
+    }
+
+    private static class RecordingSender implements PersistentPostQueue.PostSender {
+        final List<PersistentPostQueue.OutboundPost> mPosts = new ArrayList<>();
+        String mFailingUrl; //POSTs to this url fail as if offline.
+
+        @Override
+        public void send(PersistentPostQueue.OutboundPost post, RequestOptions options, HttpManager.NetworkResponse networkResponse) {
+            //Outcome first, so whatever the queue does with it is already queued once the POST shows up as sent.
+            if (post.mUrl.equals(mFailingUrl)) {
+                networkResponse.onError(new HttpError(HttpError.CODE_IO_FAILURE, "offline"));
+            } else {
+                networkResponse.onResponse(null);
+            }
+
+            synchronized (this) {
+                mPosts.add(post);
+                notifyAll();
+            }
+        }
+
+        synchronized List<String> awaitBodies(int count) throws InterruptedException {
+            long waitUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(2);
+            while (mPosts.size() < count && System.currentTimeMillis() < waitUntil) {
+                wait(50);
+            }
+            List<String> bodies = new ArrayList<>();
+            for (PersistentPostQueue.OutboundPost post : mPosts) {
+                bodies.add(post.mBody);
+            }
+            return bodies;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PostBatcherTest {
+    private static final String URL = "http://127.0.0.1:1/events";
+    private static final long LONG_AGE_MILLIS = 60000;
+
+    @Test
+    public void batchIsSentOnceFull() throws Exception {
+        RecordingSender sender = new RecordingSender();
+        PostBatcher postBatcher = new PostBatcher(sender);
+
+        postBatcher.add(URL, body(1), null, null, null, false, 2, LONG_AGE_MILLIS);
+        assertEquals(0, sender.mSent.size());
+
+        postBatcher.add(URL, body(2), null, null, null, false, 2, LONG_AGE_MILLIS);
+        assertEquals(1, sender.mSent.size());
+        assertEquals(2, sender.mSent.get(0).length());
+        assertEquals(1, sender.mSent.get(0).getJSONObject(0).getInt("id"));
+        assertEquals(2, sender.mSent.get(0).getJSONObject(1).getInt("id"));
+    }
+
+    @Test
+    public void differentBatchConfigsDoNotShareABatch() throws Exception {
+        RecordingSender sender = new RecordingSender();
+        PostBatcher postBatcher = new PostBatcher(sender);
+
+        //A large batch opened first must not hold back a method batching by 2.
+        postBatcher.add(URL, body(1), null, null, null, false, 10, LONG_AGE_MILLIS);
+        postBatcher.add(URL, body(2), null, null, null, false, 2, LONG_AGE_MILLIS);
+        postBatcher.add(URL, body(3), null, null, null, false, 2, LONG_AGE_MILLIS);
+
+        assertEquals(1, sender.mSent.size());
+        assertEquals(2, sender.mSent.get(0).length());
+        assertEquals(2, sender.mSent.get(0).getJSONObject(0).getInt("id"));
+
+        //Same size, different age, separate batches too.
+        postBatcher.add(URL, body(4), null, null, null, false, 2, LONG_AGE_MILLIS + 1);
+        assertEquals(1, sender.mSent.size());
+    }
+
+    @Test
+    public void flushAllSendsOpenBatches() throws Exception {
+        RecordingSender sender = new RecordingSender();
+        PostBatcher postBatcher = new PostBatcher(sender);
+
+        postBatcher.add(URL, body(1), null, null, null, false, 10, LONG_AGE_MILLIS);
+        postBatcher.add(URL, body(2), null, null, null, true, 10, LONG_AGE_MILLIS);
+        postBatcher.flushAll();
+
+        assertEquals(2, sender.mSent.size());
+        assertEquals(1, sender.mSent.get(0).length());
+        assertEquals(1, sender.mSent.get(1).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBatchSizeIsRejected() throws Exception {
+        new PostBatcher(new RecordingSender()).add(URL, body(1), null, null, null, false, 0, LONG_AGE_MILLIS);
+    }
+
+    private static JSONObject body(int id) throws Exception {
+        return new JSONObject().put("id", id);
+    }
+
+    private static class RecordingSender implements PostBatcher.BatchSender {
+        final List<JSONArray> mSent = new ArrayList<>();
+
+        @Override
+        public synchronized void send(String url, JSONArray jsonArrayBody, Map<String, String> requestHeaders, String trackHeadersKey, String trackHeadersByGroup, boolean gzipBody) {
+            mSent.add(jsonArrayBody);
+        }
+    }
+}
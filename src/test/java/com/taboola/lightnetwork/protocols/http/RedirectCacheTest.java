@@ -0,0 +1,74 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RedirectCacheTest {
+    private static final String OLD_URL = "https://old.example.com/feed";
+    private static final String NEW_URL = "https://new.example.com/feed";
+
+    @Test
+    public void unknownUrlResolvesToItself() {
+        assertEquals(OLD_URL, new RedirectCache().resolve(OLD_URL, true, 5));
+    }
+
+    @Test
+    public void movedPermanentlyIsFollowedByGetOnly() {
+        RedirectCache redirectCache = new RedirectCache();
+        redirectCache.put(OLD_URL, NEW_URL, false);
+
+        assertEquals(NEW_URL, redirectCache.resolve(OLD_URL, true, 5));
+        assertEquals(OLD_URL, redirectCache.resolve(OLD_URL, false, 5));
+    }
+
+    @Test
+    public void permanentRedirectIsFollowedByEveryMethod() {
+        RedirectCache redirectCache = new RedirectCache();
+        redirectCache.put(OLD_URL, NEW_URL, true);
+
+        assertEquals(NEW_URL, redirectCache.resolve(OLD_URL, false, 5));
+    }
+
+    @Test
+    public void chainsAreFollowedUpToMaxHops() {
+        RedirectCache redirectCache = new RedirectCache();
+        redirectCache.put("https://a.com/", "https://b.com/", true);
+        redirectCache.put("https://b.com/", "https://c.com/", true);
+
+        assertEquals("https://c.com/", redirectCache.resolve("https://a.com/", true, 5));
+        assertEquals("https://b.com/", redirectCache.resolve("https://a.com/", true, 1));
+    }
+
+    @Test
+    public void rememberedLoopEnds() {
+        RedirectCache redirectCache = new RedirectCache();
+        redirectCache.put("https://a.com/", "https://b.com/", true);
+        redirectCache.put("https://b.com/", "https://a.com/", true);
+        redirectCache.put("https://c.com/", "https://c.com/", true); //Ignored, self redirect.
+
+        assertEquals("https://b.com/", redirectCache.resolve("https://a.com/", true, 3));
+        assertEquals("https://c.com/", redirectCache.resolve("https://c.com/", true, 3));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() {
+        RedirectCache redirectCache = new RedirectCache();
+        redirectCache.put(OLD_URL, NEW_URL, true);
+        for (int i = 0; i < 64; i++) {
+            redirectCache.put("https://example.com/" + i, "https://example.com/moved/" + i, true);
+        }
+
+        assertEquals(OLD_URL, redirectCache.resolve(OLD_URL, true, 5));
+        assertEquals("https://example.com/moved/63", redirectCache.resolve("https://example.com/63", true, 5));
+    }
+
+    @Test
+    public void httpsToHttpIsADowngrade() {
+        assertEquals(true, HttpRequest.isHttpsDowngrade("https://example.com/", "http://example.com/"));
+        assertEquals(true, HttpRequest.isHttpsDowngrade("HTTPS://example.com/", "HTTP://other.com/"));
+        assertEquals(false, HttpRequest.isHttpsDowngrade("http://example.com/", "https://example.com/"));
+        assertEquals(false, HttpRequest.isHttpsDowngrade("https://example.com/", "https://other.com/"));
+        assertEquals(false, HttpRequest.isHttpsDowngrade("http://example.com/", "http://other.com/"));
+    }
+}
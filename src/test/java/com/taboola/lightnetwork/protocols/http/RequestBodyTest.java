@@ -0,0 +1,105 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RequestBodyTest {
+    private static final byte[] CONTENT = {1, 2, 3, 4, 5};
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullBytesAreRejected() {
+        RequestBody.create("application/octet-stream", (byte[]) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeOutsideBytesIsRejected() {
+        RequestBody.create(null, CONTENT, 3, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullStringIsRejected() {
+        RequestBody.create("text/plain", (String) null);
+    }
+
+    @Test
+    public void bytesRangeIsWritten() throws Exception {
+        RequestBody requestBody = RequestBody.create("application/octet-stream", CONTENT, 1, 3);
+
+        assertEquals("application/octet-stream", requestBody.getContentType());
+        assertEquals(3, requestBody.getContentLength());
+        assertArrayEquals(new byte[] {2, 3, 4}, write(requestBody));
+    }
+
+    @Test
+    public void byteBufferIsWrittenWithoutMovingCallersPosition() throws Exception {
+        ByteBuffer direct = ByteBuffer.allocateDirect(CONTENT.length);
+        direct.put(CONTENT);
+        direct.position(2);
+
+        RequestBody requestBody = RequestBody.create(null, direct);
+
+        assertEquals(3, requestBody.getContentLength());
+        assertArrayEquals(new byte[] {3, 4, 5}, write(requestBody));
+        //Written again for a retry.
+        assertArrayEquals(new byte[] {3, 4, 5}, write(requestBody));
+        assertEquals(2, direct.position());
+    }
+
+    @Test
+    public void stringIsEncodedWithCharset() throws Exception {
+        RequestBody requestBody = RequestBody.create("text/plain; charset=utf-16be", "ab", "UTF-16BE");
+
+        assertEquals(4, requestBody.getContentLength());
+        assertArrayEquals(new byte[] {0, 'a', 0, 'b'}, write(requestBody));
+    }
+
+    @Test
+    public void fileIsWritten() throws Exception {
+        File file = File.createTempFile("body", ".bin");
+        try {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            outputStream.write(CONTENT);
+            outputStream.close();
+
+            RequestBody requestBody = RequestBody.create(null, file);
+
+            assertEquals(CONTENT.length, requestBody.getContentLength());
+            assertArrayEquals(CONTENT, write(requestBody));
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void writerIsCalledForEveryWrite() throws Exception {
+        final int[] calls = new int[1];
+        RequestBody requestBody = RequestBody.create(null, RequestBody.UNKNOWN_LENGTH, new RequestBody.Writer() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                calls[0]++;
+                outputStream.write(CONTENT);
+            }
+        });
+
+        assertEquals(RequestBody.UNKNOWN_LENGTH, requestBody.getContentLength());
+        assertArrayEquals(CONTENT, write(requestBody));
+        assertArrayEquals(CONTENT, write(requestBody));
+        assertEquals(2, calls[0]);
+    }
+
+    private static byte[] write(RequestBody requestBody) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        requestBody.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+}
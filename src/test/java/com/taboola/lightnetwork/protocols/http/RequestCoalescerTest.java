@@ -0,0 +1,153 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RequestCoalescerTest {
+    private static final String URL = "http://127.0.0.1:1/feed";
+
+    @Test
+    public void keyIgnoresHeaderOrder() {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("A", "1");
+        headers.put("B", "2");
+        Map<String, String> reversed = new LinkedHashMap<>();
+        reversed.put("B", "2");
+        reversed.put("A", "1");
+
+        assertEquals(RequestCoalescer.buildKey("GET", URL, headers, null, null, null), RequestCoalescer.buildKey("GET", URL, reversed, null, null, null));
+    }
+
+    @Test
+    public void keyCoversHeadersGroupAndTrackedHeader() {
+        String key = RequestCoalescer.buildKey("GET", URL, null, "key", "group", null);
+
+        assertFalse(key.equals(RequestCoalescer.buildKey("GET", URL, null, "otherKey", "group", null)));
+        assertFalse(key.equals(RequestCoalescer.buildKey("GET", URL, null, "key", "otherGroup", null)));
+        assertFalse(key.equals(RequestCoalescer.buildKey("GET", URL, new HashMap<String, String>() {{ put("A", "1"); }}, "key", "group", null)));
+        assertFalse(key.equals(RequestCoalescer.buildKey("POST", URL, null, "key", "group", null)));
+    }
+
+    @Test
+    public void keyCoversCachePolicy() {
+        String plain = RequestCoalescer.buildKey("GET", URL, null, null, null, null);
+
+        assertEquals(plain, RequestCoalescer.buildKey("GET", URL, null, null, null, new CachePolicy()));
+        assertFalse(plain.equals(RequestCoalescer.buildKey("GET", URL, null, null, null, new CachePolicy().setOnlyIfCached(true))));
+        assertFalse(plain.equals(RequestCoalescer.buildKey("GET", URL, null, null, null, new CachePolicy().setNoStore(true))));
+        assertFalse(plain.equals(RequestCoalescer.buildKey("GET", URL, null, null, null, new CachePolicy().setMaxAgeSeconds(0))));
+        assertFalse(plain.equals(RequestCoalescer.buildKey("GET", URL, null, null, null, new CachePolicy().setStaleWhileRevalidateSeconds(600))));
+    }
+
+    @Test
+    public void plainRequestDoesNotAttachToOnlyIfCachedLeader() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        HttpGet leader = (HttpGet) newRequest(new HeadersManager());
+        leader.mCachePolicy = new CachePolicy().setOnlyIfCached(true);
+        HttpRequest plain = newRequest(new HeadersManager());
+
+        assertFalse(coalescer.attachOrLead(leader.getCoalescingKey(), leader));
+        assertFalse(coalescer.attachOrLead(plain.getCoalescingKey(), plain));
+    }
+
+    @Test
+    public void followersAttachToLeaderUntilItCompletes() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        HttpRequest leader = newRequest(new HeadersManager());
+        HttpRequest follower = newRequest(new HeadersManager());
+
+        assertFalse(coalescer.attachOrLead("key", leader));
+        assertTrue(coalescer.attachOrLead("key", follower));
+        assertSame(leader, follower.mLeader);
+
+        List<HttpRequest> followers = coalescer.complete(leader);
+        assertEquals(1, followers.size());
+        assertSame(follower, followers.get(0));
+
+        //Leader completed, the next identical request leads a new network call.
+        assertFalse(coalescer.attachOrLead("key", newRequest(new HeadersManager())));
+    }
+
+    @Test
+    public void detachedLeaderWithFollowersKeepsRunning() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        HttpRequest leader = newRequest(new HeadersManager());
+        coalescer.attachOrLead("key", leader);
+        coalescer.attachOrLead("key", newRequest(new HeadersManager()));
+
+        assertTrue(coalescer.detach(leader));
+    }
+
+    @Test
+    public void unexpectedExceptionCompletesLeaderAndFollowers() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        HeadersManager throwingHeadersManager = new HeadersManager() {
+            @Override
+            public synchronized void setHeadersInRequest(HttpURLConnection connection, Map<String, String> requestHeaders) {
+                throw new IllegalStateException("boom");
+            }
+        };
+
+        RecordingResponse leaderResponse = new RecordingResponse();
+        RecordingResponse followerResponse = new RecordingResponse();
+        Dispatcher dispatcher = new Dispatcher();
+        HttpRequest leader = newRequest(throwingHeadersManager, dispatcher, coalescer);
+        HttpRequest follower = newRequest(throwingHeadersManager, dispatcher, coalescer);
+        dispatcher.setMaxThreads(1);
+
+        leader.performRequsetOnBackgroundThread(leaderResponse);
+        follower.performRequsetOnBackgroundThread(followerResponse);
+
+        assertEquals(HttpError.CODE_PROCESSING_FAILED, leaderResponse.awaitErrorCode());
+        assertEquals(HttpError.CODE_PROCESSING_FAILED, followerResponse.awaitErrorCode());
+
+        //Leader key was released, an identical request leads again.
+        HttpRequest next = newRequest(new HeadersManager());
+        assertFalse(coalescer.attachOrLead(next.getCoalescingKey(), next));
+        assertNotSame(leader, next);
+    }
+
+    private static HttpRequest newRequest(HeadersManager headersManager) {
+        return newRequest(headersManager, new Dispatcher(), null);
+    }
+
+    private static HttpRequest newRequest(HeadersManager headersManager, Dispatcher dispatcher, RequestCoalescer coalescer) {
+        HttpGet httpGet = new HttpGet(headersManager, new CookiesTracker(null), dispatcher, CallbackExecutors.direct(), coalescer, 1000);
+        httpGet.mUrl = URL;
+        return httpGet;
+    }
+
+    private static class RecordingResponse implements HttpManager.NetworkResponse {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile int mErrorCode;
+
+        @Override
+        public void onResponse(HttpResponse response) {
+            mDone.countDown();
+        }
+
+        @Override
+        public void onError(HttpError error) {
+            mErrorCode = error.mCode;
+            mDone.countDown();
+        }
+
+        int awaitErrorCode() throws InterruptedException {
+            assertTrue("No callback", mDone.await(2, TimeUnit.SECONDS));
+            return mErrorCode;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Buffered body reading, with Content-Length values that do not match what is sent.
+ */
+public class ResponseBodyReadTest {
+    private static final String HUGE_CONTENT_LENGTH = "10000000";
+
+    private LocalServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                //Headers only, both describe a body that is never sent.
+                String status = request.mPath.equals("/no-content") ? "204 No Content" : "200 OK";
+                outputStream.write(("HTTP/1.1 " + status + "\r\nContent-Length: " + HUGE_CONTENT_LENGTH + "\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void headResponseHasEmptyBody() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Outcome outcome = new Outcome(done);
+        new HttpHead(new HeadersManager(), new CookiesTracker(null), new Dispatcher(), CallbackExecutors.direct(), 2000)
+                .head(mServer.url("/"), null, outcome);
+
+        assertTrue("No callback", done.await(5, TimeUnit.SECONDS));
+        assertNull(outcome.mError);
+        assertEquals(200, outcome.mResponse.mCode);
+        assertEquals(0, outcome.mResponse.getBody().length);
+        assertEquals("HEAD", mServer.getRequests().get(0).mMethod);
+    }
+
+    @Test
+    public void noContentResponseHasEmptyBody() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Outcome outcome = new Outcome(done);
+        HttpManager httpManager = new HttpManager(null);
+        httpManager.setCallbackExecutor(CallbackExecutors.direct());
+        httpManager.get(mServer.url("/no-content"), outcome);
+
+        assertTrue("No callback", done.await(5, TimeUnit.SECONDS));
+        assertNull(outcome.mError);
+        assertEquals(204, outcome.mResponse.mCode);
+        assertEquals("", outcome.mResponse.getMessage());
+    }
+
+    @Test
+    public void largeBodyGrowsPastPresize() throws Exception {
+        byte[] content = bytes(100 * 1024);
+
+        assertArrayEquals(content, HttpRequest.readBody(new ByteArrayInputStream(content), content.length));
+    }
+
+    @Test
+    public void shorterBodyThanContentLength() throws Exception {
+        byte[] content = bytes(100);
+
+        assertArrayEquals(content, HttpRequest.readBody(new ByteArrayInputStream(content), Long.parseLong(HUGE_CONTENT_LENGTH)));
+        assertArrayEquals(content, HttpRequest.readBody(new ByteArrayInputStream(content), 1000));
+    }
+
+    @Test
+    public void longerBodyThanContentLength() throws Exception {
+        byte[] content = bytes(5000);
+
+        assertArrayEquals(content, HttpRequest.readBody(new ByteArrayInputStream(content), 1000));
+    }
+
+    @Test
+    public void unknownLength() throws Exception {
+        byte[] content = bytes(20000);
+
+        assertArrayEquals(content, HttpRequest.readBody(new ByteArrayInputStream(content), ResponseBody.UNKNOWN_LENGTH));
+    }
+
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    private static class Outcome implements HttpManager.NetworkResponse {
+        private final CountDownLatch mDone;
+        HttpResponse mResponse;
+        HttpError mError;
+
+        Outcome(CountDownLatch done) {
+            mDone = done;
+        }
+
+        @Override
+        public void onResponse(HttpResponse response) {
+            mResponse = response;
+            mDone.countDown();
+        }
+
+        @Override
+        public void onError(HttpError error) {
+            mError = error;
+            mDone.countDown();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void savedUpBurstIsSpentThenRetriesAreRefused() {
+        RetryBudget retryBudget = new RetryBudget();
+        retryBudget.configure(0.5, 2);
+
+        assertTrue(retryBudget.tryRetry());
+        assertTrue(retryBudget.tryRetry());
+        assertFalse(retryBudget.tryRetry());
+    }
+
+    @Test
+    public void requestsEarnRetriesAtTheConfiguredRatio() {
+        RetryBudget retryBudget = new RetryBudget();
+        retryBudget.configure(0.5, 2);
+        while (retryBudget.tryRetry()) {
+            //Spend the saved up burst.
+        }
+
+        retryBudget.onRequest();
+        assertFalse(retryBudget.tryRetry());
+
+        retryBudget.onRequest();
+        assertTrue(retryBudget.tryRetry());
+        assertFalse(retryBudget.tryRetry());
+    }
+
+    @Test
+    public void balanceNeverExceedsMaxBurst() {
+        RetryBudget retryBudget = new RetryBudget();
+        retryBudget.configure(1, 1);
+        for (int i = 0; i < 10; i++) {
+            retryBudget.onRequest();
+        }
+
+        assertTrue(retryBudget.tryRetry());
+        assertFalse(retryBudget.tryRetry());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRatioIsRejected() {
+        new RetryBudget().configure(-0.1, 10);
+    }
+}
@@ -0,0 +1,85 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+    private static final int SAMPLES = 200;
+
+    @Test
+    public void firstRetryIsJitteredBetweenBaseAndThreeTimesBase() {
+        RetryPolicy retryPolicy = new RetryPolicy().setBaseDelayMillis(100).setMaxDelayMillis(10000);
+
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            long delayMillis = retryPolicy.nextDelayMillis(0);
+            assertTrue("delay " + delayMillis, delayMillis >= 100 && delayMillis <= 300);
+            delays.add(delayMillis);
+        }
+
+        //Clients failing together must not all retry after exactly the base delay.
+        assertTrue(delays.size() > 1);
+    }
+
+    @Test
+    public void laterRetriesGrowFromPreviousDelayUpToMax() {
+        RetryPolicy retryPolicy = new RetryPolicy().setBaseDelayMillis(100).setMaxDelayMillis(1000);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            long delayMillis = retryPolicy.nextDelayMillis(200);
+            assertTrue("delay " + delayMillis, delayMillis >= 100 && delayMillis <= 600);
+
+            delayMillis = retryPolicy.nextDelayMillis(5000);
+            assertTrue("delay " + delayMillis, delayMillis >= 100 && delayMillis <= 1000);
+        }
+    }
+
+    @Test
+    public void onlyTransientErrorsAreRetried() {
+        RetryPolicy retryPolicy = new RetryPolicy().setMaxRetries(2);
+
+        assertTrue(retryPolicy.shouldRetry(new HttpError(HttpError.CODE_IO_FAILURE, ""), 0, true));
+        assertTrue(retryPolicy.shouldRetry(new HttpError(429, ""), 0, true));
+        assertTrue(retryPolicy.shouldRetry(new HttpError(HttpURLConnection.HTTP_UNAVAILABLE, ""), 1, true));
+        assertFalse(retryPolicy.shouldRetry(new HttpError(HttpURLConnection.HTTP_NOT_FOUND, ""), 0, true));
+        assertFalse(retryPolicy.shouldRetry(new HttpError(HttpError.CODE_CANCELED, ""), 0, true));
+        assertFalse(retryPolicy.shouldRetry(new HttpError(HttpURLConnection.HTTP_UNAVAILABLE, ""), 2, true));
+    }
+
+    @Test
+    public void nonIdempotentRequestsAreRetriedOnlyIfAllowed() {
+        HttpError error = new HttpError(HttpError.CODE_IO_FAILURE, "");
+
+        assertFalse(new RetryPolicy().shouldRetry(error, 0, false));
+        assertTrue(new RetryPolicy().setRetryNonIdempotent(true).shouldRetry(error, 0, false));
+    }
+
+    @Test
+    public void retryAfterSecondsAndHttpDateAreParsed() {
+        assertEquals(120000, HttpRequest.parseRetryAfterMillis("120"));
+        assertEquals(0, HttpRequest.parseRetryAfterMillis("-5"));
+
+        SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        long retryAfterMillis = HttpRequest.parseRetryAfterMillis(httpDateFormat.format(new Date(System.currentTimeMillis() + 60000)));
+        assertTrue("retry after " + retryAfterMillis, retryAfterMillis > 55000 && retryAfterMillis <= 60000);
+
+        assertEquals(HttpRequest.NO_RETRY, HttpRequest.parseRetryAfterMillis("soon"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaxRetriesIsRejected() {
+        new RetryPolicy().setMaxRetries(-1);
+    }
+}
@@ -0,0 +1,181 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingResponseTest {
+    private static final int BODY_LENGTH = 10000;
+
+    private LocalServer mServer;
+    private byte[] mBody;
+    private final CountDownLatch mDone = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("http.agent", "LightNetwork test");
+        mBody = new byte[BODY_LENGTH];
+        for (int i = 0; i < BODY_LENGTH; i++) {
+            mBody[i] = (byte) i;
+        }
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public void serve(LocalServer.Request request, OutputStream outputStream) throws IOException {
+                if (request.mPath.equals("/missing")) {
+                    outputStream.write(LocalServer.response("404 Not Found", new byte[0]));
+                } else {
+                    outputStream.write(LocalServer.response("200 OK", mBody, "Content-Type", "application/octet-stream"));
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.close();
+    }
+
+    @Test
+    public void streamingHandsWholeBodyAsStream() throws Exception {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final long[] contentLength = new long[1];
+        final HttpResponse[] response = new HttpResponse[1];
+
+        new HttpManager(null).getStreaming(mServer.url("/feed"), new HttpManager.StreamingNetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse httpResponse, ResponseBody body) throws IOException {
+                response[0] = httpResponse;
+                contentLength[0] = body.getContentLength();
+                InputStream inputStream = body.getByteStream();
+                int read;
+                while ((read = inputStream.read()) != -1) {
+                    received.write(read);
+                }
+                mDone.countDown();
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                mDone.countDown();
+            }
+        });
+
+        awaitDone();
+        assertEquals(200, response[0].mCode);
+        assertNull(response[0].getMessage());
+        assertEquals(BODY_LENGTH, contentLength[0]);
+        assertArrayEquals(mBody, received.toByteArray());
+    }
+
+    @Test
+    public void failingReadIsReportedAsIoFailure() throws Exception {
+        final HttpError[] error = new HttpError[1];
+
+        new HttpManager(null).getStreaming(mServer.url("/feed"), new HttpManager.StreamingNetworkResponse() {
+            @Override
+            public void onResponse(HttpResponse httpResponse, ResponseBody body) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public void onError(HttpError httpError) {
+                error[0] = httpError;
+                mDone.countDown();
+            }
+        });
+
+        awaitDone();
+        assertEquals(HttpError.CODE_IO_FAILURE, error[0].mCode);
+    }
+
+    @Test
+    public void chunksCoverBodyInOrder() throws Exception {
+        final List<Integer> chunkLengths = new CopyOnWriteArrayList<>();
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final HttpResponse[] completed = new HttpResponse[1];
+
+        new HttpManager(null).getChunked(mServer.url("/feed"), 4096, new HttpManager.ChunkedNetworkResponse() {
+            @Override
+            public void onChunk(byte[] chunk, int length) {
+                chunkLengths.add(length);
+                received.write(chunk, 0, length);
+            }
+
+            @Override
+            public void onComplete(HttpResponse response) {
+                completed[0] = response;
+                mDone.countDown();
+            }
+
+            @Override
+            public void onError(HttpError error) {
+                mDone.countDown();
+            }
+        });
+
+        awaitDone();
+        assertEquals(200, completed[0].mCode);
+        assertEquals(Arrays.asList(4096, 4096, BODY_LENGTH - 2 * 4096), chunkLengths);
+        assertArrayEquals(mBody, received.toByteArray());
+    }
+
+    @Test
+    public void errorStatusNeverReachesChunks() throws Exception {
+        final List<Integer> chunkLengths = new CopyOnWriteArrayList<>();
+        final HttpError[] error = new HttpError[1];
+
+        new HttpManager(null).getChunked(mServer.url("/missing"), 4096, new HttpManager.ChunkedNetworkResponse() {
+            @Override
+            public void onChunk(byte[] chunk, int length) {
+                chunkLengths.add(length);
+            }
+
+            @Override
+            public void onComplete(HttpResponse response) {
+                mDone.countDown();
+            }
+
+            @Override
+            public void onError(HttpError httpError) {
+                error[0] = httpError;
+                mDone.countDown();
+            }
+        });
+
+        awaitDone();
+        assertEquals(404, error[0].mCode);
+        assertTrue(chunkLengths.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeMustBePositive() {
+        new HttpManager(null).getChunked("http://127.0.0.1:1/", 0, null);
+    }
+
+    @Test
+    public void contentLengthParsing() {
+        assertEquals(42, ResponseBody.parseContentLength(" 42 "));
+        assertEquals(ResponseBody.UNKNOWN_LENGTH, ResponseBody.parseContentLength(null));
+        assertEquals(ResponseBody.UNKNOWN_LENGTH, ResponseBody.parseContentLength("-5"));
+        assertEquals(ResponseBody.UNKNOWN_LENGTH, ResponseBody.parseContentLength("lots"));
+    }
+
+    private void awaitDone() throws InterruptedException {
+        assertTrue("No callback", mDone.await(5, TimeUnit.SECONDS));
+    }
+}
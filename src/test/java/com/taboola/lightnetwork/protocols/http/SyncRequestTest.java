@@ -0,0 +1,56 @@
+package com.taboola.lightnetwork.protocols.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Local unit tests have no Looper, so every thread looks like the main thread and synchronous requests stop at the
+ * main thread check. The options must already be applied by then.
+ */
+public class SyncRequestTest {
+    private static final String URL = "http://127.0.0.1:1/config";
+
+    @Test
+    public void getSyncAppliesOptions() {
+        RetryPolicy retryPolicy = new RetryPolicy().setMaxRetries(2);
+        CachePolicy cachePolicy = new CachePolicy().setMaxAgeSeconds(60);
+        RequestOptions options = new RequestOptions()
+                .setPriority(RequestPriority.HIGH)
+                .setDeadlineMillis(3000)
+                .setRetryPolicy(retryPolicy)
+                .setCachePolicy(cachePolicy);
+
+        HttpGet httpGet = new HttpGet(new HeadersManager(), new CookiesTracker(null), new Dispatcher(), CallbackExecutors.direct(), null, 2000);
+        try {
+            httpGet.getSync(URL, null, null, null, options);
+            fail("Expected the main thread check");
+        } catch (IllegalStateException expected) {
+            //No Looper in local unit tests.
+        } catch (HttpException e) {
+            fail("Request should not have been sent: " + e.getError());
+        }
+
+        assertEquals(RequestPriority.HIGH, httpGet.mPriority);
+        assertEquals(3000, httpGet.mDeadlineMillis);
+        assertSame(retryPolicy, httpGet.mRetryPolicy);
+        assertSame(cachePolicy, httpGet.mCachePolicy);
+    }
+
+    @Test
+    public void postSyncAppliesOptions() {
+        HttpPost httpPost = new HttpPost(new HeadersManager(), new CookiesTracker(null), new Dispatcher(), CallbackExecutors.direct(), 2000);
+        try {
+            httpPost.postSync(URL, RequestBody.create("text/plain", "event"), null, null, null, new RequestOptions().setDeadlineMillis(1500));
+            fail("Expected the main thread check");
+        } catch (IllegalStateException expected) {
+            //No Looper in local unit tests.
+        } catch (HttpException e) {
+            fail("Request should not have been sent: " + e.getError());
+        }
+
+        assertEquals(1500, httpPost.mDeadlineMillis);
+    }
+}